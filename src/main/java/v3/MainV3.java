@@ -1,15 +1,27 @@
 package v3;
 
 import v3.analyzer.ImpactAnalyzer;
+import v3.analyzer.TraversalPolicy;
+import v3.indexer.CacheDirectory;
+import v3.model.AccessMode;
+import v3.model.AnalysisMode;
+import v3.model.BatchImpactResult;
 import v3.model.ImpactAnalysisResult;
+import v3.model.MethodKeyStrategy;
 import v3.reporter.JsonReporter;
 import v3.reporter.TextReporter;
+import v3.server.ImpactQueryServer;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,15 +34,38 @@ import java.util.logging.Logger;
  * - The complete impact chain from table to service methods
  *
  * Usage:
- *   java v3.MainV3 <monolith-root-path> <table-name> [output-format]
+ *   java v3.MainV3 <monolith-root-path> <table-name> [output-format] [options]
+ *   java v3.MainV3 <monolith-root-path> <table-name> [output-format] --column COLUMN [options]
+ *   java v3.MainV3 <monolith-root-path> [output-format] --tables T1,T2,... [options]
+ *   java v3.MainV3 <monolith-root-path> [output-format] --tables-file tables.txt [options]
+ *   java v3.MainV3 <monolith-root-path> --serve PORT [options]
+ *   java v3.MainV3 --cleanup-cache MB [--cache-dir DIR]
  *
  * Arguments:
  *   monolith-root-path: Path to the root of the Java monolith
  *   table-name: Database table name to analyze
  *   output-format: Optional. Either "json" or "text" (default: text)
  *
+ * Options:
+ *   --threads N: Number of threads used to build the call reference index and to parse mapper XMLs (default: 1)
+ *   --mapped-graph: Keep the reverse call graph in a memory-mapped file (call_graph.csr)
+ *   --max-depth N: Maximum number of callers above a repository method in a call chain
+ *   --max-chains-per-method N: Maximum number of call chains per repository method
+ *   --max-chains N: Maximum number of call chains for the whole query
+ *   --timeout-ms N: Wall-clock budget for the call chain traversal
+ *   --mode paths|reachability: Enumerate all call paths (default) or only distinct entry points
+ *   --access read|write|all: Only follow repository methods that read or write the table (default: all)
+ *   --column COLUMN: Analyze a single column of the table; only statements referencing it are followed
+ *   --tables T1,T2,...: Analyze several tables in one run (batch mode)
+ *   --tables-file FILE: Analyze the tables listed in FILE, one per line ('#' starts a comment)
+ *   --serve PORT: Keep the indices loaded and answer queries over HTTP on 127.0.0.1:PORT
+ *   --method-keys name|arity|parameter_types: Key call graph methods by name (default), by name and
+ *     parameter count, or by name and parameter types, so overloads are separate nodes
+ *   --cache-dir DIR: Directory holding one cache directory per analyzed workspace (default: .impact_cache)
+ *   --cleanup-cache MB: Delete the least recently used workspace caches until DIR uses at most MB megabytes
+ *
  * Example:
- *   java v3.MainV3 /path/to/monolith CUSTOMER_TABLE json
+ *   java v3.MainV3 /path/to/monolith CUSTOMER_TABLE json --threads 8
  */
 public class MainV3 {
     private static final Logger logger = Logger.getLogger(MainV3.class.getName());
@@ -38,15 +73,37 @@ public class MainV3 {
         logger.setLevel(Level.SEVERE); // Hide info/debug messages by default
     }
 
+    private static final Set<String> FLAG_OPTIONS = Set.of("--mapped-graph");
+
     public static void main(String[] args) {
-        if (args.length < 2) {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (FLAG_OPTIONS.contains(args[i])) {
+                options.put(args[i], "true");
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+
+        if (options.containsKey("--cleanup-cache")) {
+            cleanupCache(options);
+            return;
+        }
+
+        boolean serve = options.containsKey("--serve");
+        boolean batch = options.containsKey("--tables") || options.containsKey("--tables-file");
+        if (positional.size() < (batch || serve ? 1 : 2)) {
             printUsage();
             System.exit(1);
         }
 
-        String monolithPath = args[0];
-        String tableName = args[1];
-        String outputFormat = args.length > 2 ? args[2].toLowerCase() : "text";
+        String monolithPath = positional.get(0);
+        String tableName = batch || serve ? null : positional.get(1);
+        int formatIndex = batch ? 1 : 2;
+        String outputFormat = positional.size() > formatIndex ? positional.get(formatIndex).toLowerCase() : "text";
 
         // Validate arguments
         Path rootPath = Paths.get(monolithPath);
@@ -60,23 +117,174 @@ public class MainV3 {
             System.exit(1);
         }
 
+        if (serve) {
+            int port = intOption(options, "--serve", 0);
+            ImpactQueryServer server = new ImpactQueryServer(rootPath, () -> createAnalyzer(options));
+            try {
+                server.start(port, Runtime.getRuntime().availableProcessors());
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error starting query server: " + e.getMessage(), e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        ImpactAnalyzer analyzer = createAnalyzer(options);
+
+        int timeoutMillis = intOption(options, "--timeout-ms", 0);
+        TraversalPolicy policy = new TraversalPolicy(
+            intOption(options, "--max-depth", 0),
+            intOption(options, "--max-chains-per-method", 0),
+            intOption(options, "--max-chains", 0),
+            timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null
+        );
+
+        AnalysisMode mode = AnalysisMode.PATHS;
+        try {
+            mode = AnalysisMode.valueOf(options.getOrDefault("--mode", "paths").toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Error: Invalid mode. Use 'paths' or 'reachability'");
+            System.exit(1);
+        }
+
+        int access = AccessMode.READ_WRITE;
         try {
-            runAnalysis(rootPath, tableName, outputFormat);
+            access = AccessMode.parse(options.getOrDefault("--access", "all"));
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Error: Invalid access mode. Use 'read', 'write' or 'all'");
+            System.exit(1);
+        }
+
+        String columnName = options.get("--column");
+        if (batch && columnName != null) {
+            logger.log(Level.SEVERE, "Error: --column cannot be combined with --tables or --tables-file");
+            System.exit(1);
+        }
+
+        List<String> tableNames = null;
+        if (batch) {
+            tableNames = readTableNames(options);
+            if (tableNames.isEmpty()) {
+                logger.log(Level.SEVERE, "Error: No table names given for batch analysis");
+                System.exit(1);
+            }
+        }
+
+        try {
+            if (batch) {
+                runBatchAnalysis(analyzer, rootPath, tableNames, outputFormat, policy, mode, access);
+            } else {
+                runAnalysis(analyzer, rootPath, tableName, columnName, outputFormat, policy, mode, access);
+            }
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error during analysis: " + e.getMessage(), e);
             System.exit(1);
         }
     }
 
-    private static void runAnalysis(Path monolithPath, String tableName, String outputFormat) {
+    private static ImpactAnalyzer createAnalyzer(Map<String, String> options) {
+        ImpactAnalyzer analyzer = new ImpactAnalyzer();
+        analyzer.setIndexingThreads(intOption(options, "--threads", 1));
+        analyzer.setUseMappedCallGraph(options.containsKey("--mapped-graph"));
+        analyzer.setCacheRoot(cacheRoot(options));
+        try {
+            analyzer.setMethodKeyStrategy(MethodKeyStrategy.valueOf(options.getOrDefault("--method-keys", "name").toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Error: Invalid method keys. Use 'name', 'arity' or 'parameter_types'");
+            System.exit(1);
+        }
+        return analyzer;
+    }
+
+    private static Path cacheRoot(Map<String, String> options) {
+        return Paths.get(options.getOrDefault("--cache-dir", CacheDirectory.DEFAULT_ROOT));
+    }
+
+    /**
+     * Evicts least recently used workspace caches until the cache directory fits the --cleanup-cache budget.
+     */
+    private static void cleanupCache(Map<String, String> options) {
+        Path cacheRoot = cacheRoot(options);
+        long budgetBytes = (long) intOption(options, "--cleanup-cache", 0) << 20;
+        try {
+            long deletedBytes = 0;
+            List<CacheDirectory.Workspace> deleted = CacheDirectory.cleanup(cacheRoot, budgetBytes);
+            for (CacheDirectory.Workspace workspace : deleted) {
+                logger.log(Level.SEVERE, String.format("Deleted cache of %s (%,d bytes)",
+                    describe(workspace), workspace.getSizeBytes()));
+                deletedBytes += workspace.getSizeBytes();
+            }
+            long keptBytes = 0;
+            List<CacheDirectory.Workspace> kept = CacheDirectory.list(cacheRoot);
+            for (CacheDirectory.Workspace workspace : kept) {
+                logger.log(Level.SEVERE, String.format("Kept cache of %s (%,d bytes)",
+                    describe(workspace), workspace.getSizeBytes()));
+                keptBytes += workspace.getSizeBytes();
+            }
+            logger.log(Level.SEVERE, String.format("Cache cleanup: deleted %d workspaces (%,d bytes), kept %d (%,d bytes) in %s",
+                deleted.size(), deletedBytes, kept.size(), keptBytes, cacheRoot));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Error: Could not clean up cache directory " + cacheRoot + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static Object describe(CacheDirectory.Workspace workspace) {
+        return workspace.getMonolithRoot() != null ? workspace.getMonolithRoot() : workspace.getDirectory();
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.log(Level.SEVERE, "Error: Invalid value for " + name + ": " + value);
+            System.exit(1);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Collects the table names of a batch from --tables and --tables-file, in order.
+     */
+    private static List<String> readTableNames(Map<String, String> options) {
+        List<String> tableNames = new ArrayList<>();
+        if (options.containsKey("--tables")) {
+            for (String table : options.get("--tables").split(",")) {
+                if (!table.isBlank()) {
+                    tableNames.add(table.trim());
+                }
+            }
+        }
+        if (options.containsKey("--tables-file")) {
+            Path tablesFile = Paths.get(options.get("--tables-file"));
+            try {
+                for (String line : Files.readAllLines(tablesFile)) {
+                    int comment = line.indexOf('#');
+                    String table = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!table.isEmpty()) {
+                        tableNames.add(table);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Error: Could not read tables file " + tablesFile + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        return tableNames;
+    }
+
+    private static void runAnalysis(ImpactAnalyzer analyzer, Path monolithPath, String tableName, String columnName,
+                                    String outputFormat, TraversalPolicy policy, AnalysisMode mode, int access) {
         logger.log(Level.INFO, "=======================================================================");
         logger.log(Level.INFO, "        STATIC IMPACT ANALYSIS TOOL - Version 3.0                ");
         logger.log(Level.INFO, "=======================================================================");
         logger.log(Level.INFO, "");
 
         // Initialize the analyzer
-        ImpactAnalyzer analyzer = new ImpactAnalyzer();
-
         long startTime = System.currentTimeMillis();
         analyzer.initialize(monolithPath);
         long indexTime = System.currentTimeMillis() - startTime;
@@ -90,11 +298,14 @@ public class MainV3 {
         logger.log(Level.INFO, "");
 
         // Perform impact analysis
-        logger.log(Level.INFO, "Analyzing impact for table: " + tableName);
+        String target = columnName != null ? tableName + "." + columnName : tableName;
+        logger.log(Level.INFO, "Analyzing impact for " + (columnName != null ? "column: " : "table: ") + target);
         logger.log(Level.INFO, "-".repeat(70));
 
         startTime = System.currentTimeMillis();
-        ImpactAnalysisResult result = analyzer.analyzeTableImpact(tableName);
+        ImpactAnalysisResult result = columnName != null
+            ? analyzer.analyzeColumnImpact(tableName, columnName, policy, mode, access)
+            : analyzer.analyzeTableImpact(tableName, policy, mode, access);
         long analysisTime = System.currentTimeMillis() - startTime;
 
         logger.log(Level.INFO, "Analysis completed in " + analysisTime + " ms");
@@ -113,7 +324,34 @@ public class MainV3 {
 
         // Save report to file
         try {
-            saveReportToFile(result, tableName, outputFormat);
+            saveReportToFile(result, target, outputFormat);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Warning: Could not save report to file: " + e.getMessage());
+        }
+    }
+
+    private static void runBatchAnalysis(ImpactAnalyzer analyzer, Path monolithPath, List<String> tableNames,
+                                         String outputFormat, TraversalPolicy policy, AnalysisMode mode,
+                                         int access) {
+        long startTime = System.currentTimeMillis();
+        analyzer.initialize(monolithPath);
+        logger.log(Level.INFO, "Indexing completed in " + (System.currentTimeMillis() - startTime) + " ms");
+        displayStatistics(analyzer.getStatistics());
+
+        logger.log(Level.INFO, "Analyzing impact for " + tableNames.size() + " tables");
+        startTime = System.currentTimeMillis();
+        BatchImpactResult result = analyzer.analyzeTablesImpact(tableNames, policy, mode, access);
+        logger.log(Level.INFO, "Analysis completed in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        String content = outputFormat.equals("json")
+            ? new JsonReporter().generateBatchReport(result)
+            : new TextReporter().generateBatchReport(result);
+        logger.log(Level.INFO, content);
+
+        Path outputPath = Paths.get(String.format("impact_analysis_batch_%d.%s", System.currentTimeMillis(), outputFormat));
+        try {
+            Files.writeString(outputPath, content);
+            logger.log(Level.INFO, "Report saved to: " + outputPath.toAbsolutePath());
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Warning: Could not save report to file: " + e.getMessage());
         }
@@ -148,15 +386,34 @@ public class MainV3 {
     }
 
     private static void printUsage() {
-        logger.log(Level.INFO, "Usage: java v3.MainV3 <monolith-root-path> <table-name> [output-format]");
+        logger.log(Level.INFO, "Usage: java v3.MainV3 <monolith-root-path> <table-name> [output-format] [options]");
+        logger.log(Level.INFO, "       java v3.MainV3 <monolith-root-path> [output-format] --tables T1,T2 [options]");
         logger.log(Level.INFO, "");
         logger.log(Level.INFO, "Arguments:");
         logger.log(Level.INFO, "  monolith-root-path  : Path to the root of the Java monolith");
         logger.log(Level.INFO, "  table-name          : Database table name to analyze");
         logger.log(Level.INFO, "  output-format       : Optional. Either 'json' or 'text' (default: text)");
         logger.log(Level.INFO, "");
+        logger.log(Level.INFO, "Options:");
+        logger.log(Level.INFO, "  --threads N         : Threads used to build the call reference and mapper indexes (default: 1)");
+        logger.log(Level.INFO, "  --mapped-graph      : Keep the reverse call graph in a memory-mapped file");
+        logger.log(Level.INFO, "  --max-depth N       : Maximum callers above a repository method in a chain");
+        logger.log(Level.INFO, "  --max-chains-per-method N : Maximum call chains per repository method");
+        logger.log(Level.INFO, "  --max-chains N      : Maximum call chains for the whole query");
+        logger.log(Level.INFO, "  --timeout-ms N      : Wall-clock budget for the call chain traversal");
+        logger.log(Level.INFO, "  --mode M            : 'paths' (default) or 'reachability' (distinct entry points)");
+        logger.log(Level.INFO, "  --access A          : 'read', 'write' or 'all' (default); filters repository methods");
+        logger.log(Level.INFO, "  --column C          : Analyze column C of the table instead of the whole table");
+        logger.log(Level.INFO, "  --tables T1,T2      : Analyze several tables in one run (batch mode)");
+        logger.log(Level.INFO, "  --tables-file FILE  : Analyze the tables listed in FILE, one per line");
+        logger.log(Level.INFO, "  --serve PORT        : Keep indices loaded and serve queries on 127.0.0.1:PORT");
+        logger.log(Level.INFO, "                        (GET /impact?table=T&mode=..., POST /reload, GET /stats)");
+        logger.log(Level.INFO, "  --method-keys K     : 'name' (default), 'arity' or 'parameter_types'; keeps overloads apart");
+        logger.log(Level.INFO, "  --cache-dir DIR     : One cache directory per analyzed workspace under DIR (default: .impact_cache)");
+        logger.log(Level.INFO, "  --cleanup-cache MB  : Delete least recently used workspace caches until DIR fits in MB megabytes");
+        logger.log(Level.INFO, "");
         logger.log(Level.INFO, "Example:");
-        logger.log(Level.INFO, "  java v3.MainV3 /path/to/monolith CUSTOMER_TABLE json");
+        logger.log(Level.INFO, "  java v3.MainV3 /path/to/monolith CUSTOMER_TABLE json --threads 8");
         logger.log(Level.INFO, "");
         logger.log(Level.INFO, "Description:");
         logger.log(Level.INFO, "  Performs static impact analysis on a Java monolith to determine");
@@ -0,0 +1,732 @@
+package v3.analyzer;
+
+import v3.model.CallChain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Breadth-first enumeration of call chains over a {@link ReverseCallGraph}.
+ *
+ * Partial paths are never copied: every BFS node is a row in a set of parallel int arrays
+ * (method id, parent row, call-site line) and shares its path prefix with its parent through the
+ * parent pointer. The node arrays double as the BFS queue, cycle checks walk the parent chain, and
+ * {@link CallChain} objects are only materialized for finished chains. Method names are decoded
+ * from the graph once per instance.
+ *
+ * Without a chain limit, call chains are enumerated depth-first instead and the chains above every
+ * method that is not part of a call cycle are memoized by method id: they cannot depend on the path
+ * below the method, since no method on that path is reachable from it. Callers shared by several
+ * repository methods, or by several paths above one of them, are then expanded once per instance;
+ * the chains are sorted back into BFS order, so both strategies return the same list.
+ *
+ * Instances reuse their arrays and memoized chains between calls and are not thread-safe.
+ */
+public class CallChainTraversal {
+
+    private static final int ROOT = -1;
+    private static final byte COMPONENT_ACYCLIC = 1;
+    private static final byte COMPONENT_CYCLIC = 2;
+
+    private final ReverseCallGraph graph;
+    private int[] nodeMethod = new int[1024];
+    private int[] nodeParent = new int[1024];
+    private int[] nodeLine = new int[1024];
+    private int[] nodeDepth = new int[1024];
+    private int nodeCount;
+    private boolean depthLimited;
+    private boolean chainLimited;
+    private boolean deadlineExceeded;
+    private String[] names; // Lazily decoded method names, indexed by method id
+    private long[] visited; // Reachability mode: one bit per method id
+    private long[] reachedTables; // Batch reachability mode: one bit per table, per method id
+    private long depthLimitedTables;
+
+    // Depth-first enumeration: chains above acyclic methods, memoized for one max depth
+    private final Map<Long, Suffixes> suffixMemo = new HashMap<>();
+    private int memoMaxDepth;
+    private byte[] component; // COMPONENT_* per method id, 0 until its strongly connected component is known
+    private int[] tarjanIndex;
+    private int[] tarjanLowLink;
+    private long[] tarjanOnStack;
+    private int tarjanCounter;
+
+    /**
+     * All chains above a method as a shared DAG: chain i continues with edge {@code edges[i]} and
+     * then the chains in {@code next[i]}, or ends there if that is null. Alternatives are in
+     * ascending edge order, so walking the DAG depth-first yields the chains in lexicographic
+     * order of their edges.
+     */
+    private static final class Suffixes {
+        final int[] edges;
+        final Suffixes[] next;
+        final boolean depthLimited;
+
+        Suffixes(int[] edges, Suffixes[] next, boolean depthLimited) {
+            this.edges = edges;
+            this.next = next;
+            this.depthLimited = depthLimited;
+        }
+    }
+
+    public CallChainTraversal(ReverseCallGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Finds all call chains from the given method up to the service layer, without limits.
+     *
+     * @see #findCallChains(String, String, int, int, long)
+     */
+    public List<CallChain> findCallChains(String startMethod, String tableName) {
+        return findCallChains(startMethod, tableName, 0, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds all call chains from the given method up to the service layer.
+     * Chains end at the first service-layer caller or at a method without callers; callers already
+     * on the current path are skipped. If no chain is found, a single chain consisting of just the
+     * start method is returned.
+     *
+     * The traversal stops early once a limit is hit; see {@link #isDepthLimited()},
+     * {@link #isChainLimited()} and {@link #isDeadlineExceeded()}.
+     *
+     * @param startMethod the method to start from (repository method)
+     * @param tableName the table name for context
+     * @param maxDepth chains reaching this many callers end there instead of being extended (0: unlimited)
+     * @param maxChains the traversal stops after collecting this many chains (0: unlimited)
+     * @param deadline System.nanoTime() value after which the traversal stops
+     * @return list of all call chains found, in BFS order
+     */
+    public List<CallChain> findCallChains(String startMethod, String tableName, int maxDepth, int maxChains, long deadline) {
+        List<CallChain> chains = new ArrayList<>();
+        int startId = graph.idOf(startMethod);
+        nodeCount = 0;
+        depthLimited = false;
+        chainLimited = false;
+        deadlineExceeded = false;
+        if (startId >= 0 && maxChains == 0) {
+            // No early stop needed, so chains above shared callers can be reused
+            chains = enumerateCallChains(startId, startMethod, tableName, maxDepth, deadline);
+        } else if (startId >= 0) {
+            addNode(startId, ROOT, 0);
+        }
+
+        traverse:
+        for (int head = 0; head < nodeCount; head++) {
+            if ((head & 1023) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                deadlineExceeded = true;
+                break;
+            }
+            int method = nodeMethod[head];
+            int firstEdge = graph.callerStart(method);
+            int lastEdge = graph.callerEnd(method);
+
+            if (firstEdge == lastEdge || (maxDepth > 0 && nodeDepth[head] >= maxDepth)) {
+                // Dead end (or depth limit) - save the chain if we have any path
+                depthLimited |= firstEdge != lastEdge;
+                if (nodeParent[head] != ROOT) {
+                    chains.add(materialize(head, startMethod, tableName));
+                    if (maxChains > 0 && chains.size() >= maxChains) {
+                        chainLimited = true;
+                        break;
+                    }
+                }
+                continue;
+            }
+            for (int edge = firstEdge; edge < lastEdge; edge++) {
+                int caller = graph.callerAt(edge);
+                if (caller == startId || isOnPath(head, caller)) {
+                    continue;
+                }
+                int node = addNode(caller, head, graph.lineAt(edge));
+                if (graph.isServiceLayer(caller)) {
+                    // Reached the service layer: finish the chain and drop the node from the queue again
+                    chains.add(materialize(node, startMethod, tableName));
+                    nodeCount--;
+                    if (maxChains > 0 && chains.size() >= maxChains) {
+                        chainLimited = true;
+                        break traverse;
+                    }
+                }
+            }
+        }
+
+        if (chains.isEmpty()) {
+            chains.add(new CallChain(new ArrayList<>(), new ArrayList<>(), startMethod, tableName));
+        }
+        return chains;
+    }
+
+    /**
+     * Finds the distinct entry points reachable from the given repository methods, each with one
+     * shortest witness chain.
+     *
+     * Runs a single multi-source BFS in which every method is visited at most once, so the cost is
+     * linear in the size of the graph regardless of how many paths exist. Entry points are the
+     * service-layer methods reached and the callers that have no callers themselves; a repository
+     * method without any caller is its own entry point. Each witness chain starts at the repository
+     * method it was reached from.
+     *
+     * @param startMethods the repository methods to start from
+     * @param tableName the table name for context
+     * @param maxDepth witnesses reaching this many callers end there instead of being extended (0: unlimited)
+     * @param maxEntryPoints the traversal stops after finding this many entry points (0: unlimited)
+     * @param deadline System.nanoTime() value after which the traversal stops
+     * @return one witness chain per entry point, ordered by distance from the repository methods
+     */
+    public List<CallChain> findEntryPoints(Collection<String> startMethods, String tableName,
+                                           int maxDepth, int maxEntryPoints, long deadline) {
+        List<CallChain> chains = new ArrayList<>();
+        nodeCount = 0;
+        depthLimited = false;
+        chainLimited = false;
+        deadlineExceeded = false;
+        int words = (graph.nodeCount() + 63) >>> 6;
+        if (visited == null || visited.length < words) {
+            visited = new long[words];
+        } else {
+            Arrays.fill(visited, 0, words, 0L);
+        }
+
+        Set<String> sources = new LinkedHashSet<>(startMethods);
+        List<String> uncalledSources = new ArrayList<>();
+        for (String source : sources) {
+            int id = graph.idOf(source);
+            if (id < 0 || graph.callerStart(id) == graph.callerEnd(id)) {
+                uncalledSources.add(source);
+            } else if (markVisited(id)) {
+                addNode(id, ROOT, 0);
+            }
+        }
+        for (String source : uncalledSources) {
+            chains.add(new CallChain(new ArrayList<>(), new ArrayList<>(), source, tableName));
+        }
+
+        traverse:
+        for (int head = 0; head < nodeCount; head++) {
+            if ((head & 1023) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                deadlineExceeded = true;
+                break;
+            }
+            if (maxEntryPoints > 0 && chains.size() >= maxEntryPoints) {
+                chainLimited = true;
+                break;
+            }
+            int method = nodeMethod[head];
+            int firstEdge = graph.callerStart(method);
+            int lastEdge = graph.callerEnd(method);
+
+            if (firstEdge == lastEdge || (maxDepth > 0 && nodeDepth[head] >= maxDepth)) {
+                depthLimited |= firstEdge != lastEdge;
+                if (nodeParent[head] != ROOT) {
+                    chains.add(materialize(head, null, tableName));
+                }
+                continue;
+            }
+            for (int edge = firstEdge; edge < lastEdge; edge++) {
+                int caller = graph.callerAt(edge);
+                if (!markVisited(caller)) {
+                    continue;
+                }
+                int node = addNode(caller, head, graph.lineAt(edge));
+                if (graph.isServiceLayer(caller)) {
+                    chains.add(materialize(node, null, tableName));
+                    nodeCount--;
+                    if (maxEntryPoints > 0 && chains.size() >= maxEntryPoints) {
+                        chainLimited = true;
+                        break traverse;
+                    }
+                }
+            }
+        }
+
+        if (chains.isEmpty()) {
+            for (String source : sources) {
+                chains.add(new CallChain(new ArrayList<>(), new ArrayList<>(), source, tableName));
+            }
+        }
+        return chains;
+    }
+
+    /**
+     * Finds the distinct entry points of several tables in one multi-source BFS, with the same
+     * results per table as {@link #findEntryPoints(Collection, String, int, int, long)} on its own
+     * repository methods, up to the choice among equally short witnesses.
+     *
+     * Every BFS node carries the set of tables it was reached for as a bit mask, and a method is only
+     * expanded again when it is reached for tables it was not reached for before. Callers shared by
+     * the repository methods of several tables are therefore expanded once for all of them.
+     *
+     * @param startMethods per table, the repository methods to start from; at most 64 tables
+     * @param tableNames the table names for context, in the same order
+     * @param maxDepth witnesses reaching this many callers end there instead of being extended (0: unlimited)
+     * @param deadline System.nanoTime() value after which the traversal stops
+     * @return per table, one witness chain per entry point, ordered by distance from its repository methods
+     * @see #getDepthLimitedTables()
+     */
+    public List<List<CallChain>> findEntryPoints(List<? extends Collection<String>> startMethods, List<String> tableNames,
+                                                 int maxDepth, long deadline) {
+        if (startMethods.size() > Long.SIZE || startMethods.size() != tableNames.size()) {
+            throw new IllegalArgumentException("Expected at most 64 tables with one name each, got "
+                + startMethods.size() + " and " + tableNames.size());
+        }
+        int tables = startMethods.size();
+        List<List<CallChain>> chains = new ArrayList<>(tables);
+        for (int t = 0; t < tables; t++) {
+            chains.add(new ArrayList<>());
+        }
+        nodeCount = 0;
+        depthLimited = false;
+        chainLimited = false;
+        deadlineExceeded = false;
+        depthLimitedTables = 0;
+        if (reachedTables == null || reachedTables.length < graph.nodeCount()) {
+            reachedTables = new long[graph.nodeCount()];
+        } else {
+            Arrays.fill(reachedTables, 0, graph.nodeCount(), 0L);
+        }
+
+        long[] tableMasks = new long[nodeMethod.length]; // Tables each BFS node was reached for
+        Map<Integer, Integer> sourceNodes = new HashMap<>();
+        for (int t = 0; t < tables; t++) {
+            long table = 1L << t;
+            for (String source : new LinkedHashSet<>(startMethods.get(t))) {
+                int id = graph.idOf(source);
+                if (id < 0 || graph.callerStart(id) == graph.callerEnd(id)) {
+                    chains.get(t).add(new CallChain(new ArrayList<>(), new ArrayList<>(), source, tableNames.get(t)));
+                    continue;
+                }
+                reachedTables[id] |= table;
+                Integer node = sourceNodes.get(id);
+                if (node == null) {
+                    node = addNode(id, ROOT, 0);
+                    sourceNodes.put(id, node);
+                    if (tableMasks.length < nodeMethod.length) {
+                        tableMasks = Arrays.copyOf(tableMasks, nodeMethod.length);
+                    }
+                }
+                tableMasks[node] |= table;
+            }
+        }
+
+        for (int head = 0; head < nodeCount; head++) {
+            if ((head & 1023) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                deadlineExceeded = true;
+                break;
+            }
+            int method = nodeMethod[head];
+            long headTables = tableMasks[head];
+            int firstEdge = graph.callerStart(method);
+            int lastEdge = graph.callerEnd(method);
+
+            if (firstEdge == lastEdge || (maxDepth > 0 && nodeDepth[head] >= maxDepth)) {
+                if (firstEdge != lastEdge) {
+                    depthLimitedTables |= headTables;
+                }
+                if (nodeParent[head] != ROOT) {
+                    addWitnesses(chains, head, headTables, tableNames);
+                }
+                continue;
+            }
+            for (int edge = firstEdge; edge < lastEdge; edge++) {
+                int caller = graph.callerAt(edge);
+                long newTables = headTables & ~reachedTables[caller];
+                if (newTables == 0) {
+                    continue;
+                }
+                reachedTables[caller] |= newTables;
+                int node = addNode(caller, head, graph.lineAt(edge));
+                if (tableMasks.length < nodeMethod.length) {
+                    tableMasks = Arrays.copyOf(tableMasks, nodeMethod.length);
+                }
+                tableMasks[node] = newTables;
+                if (graph.isServiceLayer(caller)) {
+                    addWitnesses(chains, node, newTables, tableNames);
+                    nodeCount--;
+                }
+            }
+        }
+
+        for (int t = 0; t < tables; t++) {
+            if (chains.get(t).isEmpty()) {
+                for (String source : new LinkedHashSet<>(startMethods.get(t))) {
+                    chains.get(t).add(new CallChain(new ArrayList<>(), new ArrayList<>(), source, tableNames.get(t)));
+                }
+            }
+        }
+        depthLimited = depthLimitedTables != 0;
+        return chains;
+    }
+
+    private void addWitnesses(List<List<CallChain>> chains, int node, long tables, List<String> tableNames) {
+        for (long remaining = tables; remaining != 0; remaining &= remaining - 1) {
+            int t = Long.numberOfTrailingZeros(remaining);
+            chains.get(t).add(materialize(node, null, tableNames.get(t)));
+        }
+    }
+
+    /**
+     * Bit mask of the tables whose witness chains the last multi-table traversal cut at the maximum
+     * depth; bit i stands for the i-th table.
+     */
+    public long getDepthLimitedTables() {
+        return depthLimitedTables;
+    }
+
+    /**
+     * Enumerates the call chains above the start method depth-first, reusing the memoized chains
+     * above acyclic callers, and returns them in the order of the BFS.
+     */
+    private List<CallChain> enumerateCallChains(int startId, String startMethod, String tableName, int maxDepth,
+                                                long deadline) {
+        if (maxDepth != memoMaxDepth) {
+            suffixMemo.clear();
+            memoMaxDepth = maxDepth;
+        }
+        findComponents(startId);
+        long[] onPath = new long[(graph.nodeCount() + 63) >>> 6];
+        // Explicit stack of frames: method, depth, next edge to follow, edge leading to the frame, chains found
+        int[] frameMethod = new int[16];
+        int[] frameDepth = new int[16];
+        int[] frameEdge = new int[16];
+        int[] frameEntryEdge = new int[16];
+        Frame[] frames = new Frame[16];
+        int top = 0;
+        frameMethod[0] = startId;
+        frameEdge[0] = graph.callerStart(startId);
+        frames[0] = new Frame();
+        onPath[startId >>> 6] |= 1L << startId;
+        long steps = 0;
+        Suffixes root = null;
+
+        while (root == null) {
+            if ((++steps & 1023) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                // Keep the chains found so far; unfinished frames are not memoized
+                deadlineExceeded = true;
+                while (top > 0) {
+                    Suffixes partial = frames[top].toSuffixes();
+                    frames[top - 1].add(frameEntryEdge[top], partial);
+                    top--;
+                }
+                root = frames[0].toSuffixes();
+                break;
+            }
+            int method = frameMethod[top];
+            if (frameEdge[top] == graph.callerEnd(method)) {
+                // All callers done: hand the chains to the frame below
+                onPath[method >>> 6] &= ~(1L << method);
+                Suffixes suffixes = frames[top].toSuffixes();
+                if (top == 0) {
+                    root = suffixes;
+                    break;
+                }
+                if (component[method] == COMPONENT_ACYCLIC) {
+                    suffixMemo.put(memoKey(method, frameDepth[top]), suffixes);
+                }
+                frames[top - 1].add(frameEntryEdge[top], suffixes);
+                top--;
+                continue;
+            }
+            int edge = frameEdge[top]++;
+            int caller = graph.callerAt(edge);
+            if ((onPath[caller >>> 6] & (1L << caller)) != 0) {
+                continue;
+            }
+            int depth = frameDepth[top] + 1;
+            boolean hasCallers = graph.callerStart(caller) != graph.callerEnd(caller);
+            if (graph.isServiceLayer(caller) || !hasCallers || (maxDepth > 0 && depth >= maxDepth)) {
+                frames[top].addEnd(edge, hasCallers && !graph.isServiceLayer(caller));
+                continue;
+            }
+            Suffixes memo = component[caller] == COMPONENT_ACYCLIC ? suffixMemo.get(memoKey(caller, depth)) : null;
+            if (memo != null) {
+                frames[top].add(edge, memo);
+                continue;
+            }
+            if (++top == frameMethod.length) {
+                int capacity = frameMethod.length * 2;
+                frameMethod = Arrays.copyOf(frameMethod, capacity);
+                frameDepth = Arrays.copyOf(frameDepth, capacity);
+                frameEdge = Arrays.copyOf(frameEdge, capacity);
+                frameEntryEdge = Arrays.copyOf(frameEntryEdge, capacity);
+                frames = Arrays.copyOf(frames, capacity);
+            }
+            frameMethod[top] = caller;
+            frameDepth[top] = depth;
+            frameEdge[top] = graph.callerStart(caller);
+            frameEntryEdge[top] = edge;
+            frames[top] = new Frame();
+            onPath[caller >>> 6] |= 1L << caller;
+        }
+        depthLimited = root.depthLimited;
+        return materializeInBfsOrder(root, startMethod, tableName);
+    }
+
+    /**
+     * The chains found so far above one method on the enumeration stack.
+     */
+    private static final class Frame {
+        int[] edges = new int[4];
+        Suffixes[] next = new Suffixes[4];
+        int size;
+        boolean depthLimited;
+
+        void addEnd(int edge, boolean cutAtMaxDepth) {
+            append(edge, null);
+            depthLimited |= cutAtMaxDepth;
+        }
+
+        void add(int edge, Suffixes suffixes) {
+            // A caller whose own callers are all on the path contributes no chain
+            if (suffixes.edges.length > 0) {
+                append(edge, suffixes);
+            }
+            depthLimited |= suffixes.depthLimited;
+        }
+
+        private void append(int edge, Suffixes suffixes) {
+            if (size == edges.length) {
+                edges = Arrays.copyOf(edges, size * 2);
+                next = Arrays.copyOf(next, size * 2);
+            }
+            edges[size] = edge;
+            next[size++] = suffixes;
+        }
+
+        Suffixes toSuffixes() {
+            return new Suffixes(Arrays.copyOf(edges, size), Arrays.copyOf(next, size), depthLimited);
+        }
+    }
+
+    private long memoKey(int method, int depth) {
+        // Without a depth limit the chains above a method do not depend on its depth
+        return memoMaxDepth == 0 ? method : ((long) method << 32) | depth;
+    }
+
+    /**
+     * Materializes the chains of the DAG in BFS order. The BFS finishes a chain ending at a
+     * service-layer caller when it expands the method below that caller, and any other chain when
+     * it dequeues its last method; methods of one depth are dequeued in lexicographic order of
+     * their edges. So the BFS order is the lexicographic order of the depth-first walk, stably
+     * sorted by the number of methods expanded.
+     */
+    private List<CallChain> materializeInBfsOrder(Suffixes root, String startMethod, String tableName) {
+        List<List<CallChain>> byExpandedDepth = new ArrayList<>();
+        Suffixes[] stack = new Suffixes[16];
+        int[] position = new int[16];
+        int[] edges = new int[16];
+        int top = 0;
+        stack[0] = root;
+        while (top >= 0) {
+            Suffixes suffixes = stack[top];
+            if (position[top] == suffixes.edges.length) {
+                top--;
+                continue;
+            }
+            int i = position[top]++;
+            edges[top] = suffixes.edges[i];
+            if (suffixes.next[i] != null) {
+                if (++top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                    position = Arrays.copyOf(position, top * 2);
+                    edges = Arrays.copyOf(edges, top * 2);
+                }
+                stack[top] = suffixes.next[i];
+                position[top] = 0;
+                continue;
+            }
+            int length = top + 1;
+            int expanded = graph.isServiceLayer(graph.callerAt(edges[top])) ? length - 1 : length;
+            while (byExpandedDepth.size() <= expanded) {
+                byExpandedDepth.add(new ArrayList<>());
+            }
+            List<String> path = new ArrayList<>(length);
+            List<Integer> lineNumbers = new ArrayList<>(length);
+            for (int e = top; e >= 0; e--) {
+                path.add(nameOf(graph.callerAt(edges[e])));
+                lineNumbers.add(graph.lineAt(edges[e]));
+            }
+            byExpandedDepth.get(expanded).add(new CallChain(path, lineNumbers, startMethod, tableName));
+        }
+        List<CallChain> chains = new ArrayList<>();
+        for (List<CallChain> bucket : byExpandedDepth) {
+            chains.addAll(bucket);
+        }
+        return chains;
+    }
+
+    /**
+     * Classifies every method above the start method as acyclic or part of a call cycle, with an
+     * iterative Tarjan search over caller edges. Components found by earlier calls are kept.
+     */
+    private void findComponents(int startId) {
+        if (component == null) {
+            component = new byte[graph.nodeCount()];
+            tarjanIndex = new int[graph.nodeCount()];
+            tarjanLowLink = new int[graph.nodeCount()];
+            tarjanOnStack = new long[(graph.nodeCount() + 63) >>> 6];
+        }
+        if (component[startId] != 0) {
+            return;
+        }
+        int[] work = new int[16];
+        int[] workEdge = new int[16];
+        int[] stack = new int[16];
+        int workTop = 0;
+        int stackTop = 0;
+        work[0] = startId;
+        workEdge[0] = graph.callerStart(startId);
+        tarjanIndex[startId] = tarjanLowLink[startId] = ++tarjanCounter;
+        stack[stackTop++] = startId;
+        tarjanOnStack[startId >>> 6] |= 1L << startId;
+        while (workTop >= 0) {
+            int v = work[workTop];
+            if (workEdge[workTop] < graph.callerEnd(v)) {
+                int w = graph.callerAt(workEdge[workTop]++);
+                if (tarjanIndex[w] == 0) {
+                    if (++workTop == work.length) {
+                        work = Arrays.copyOf(work, work.length * 2);
+                        workEdge = Arrays.copyOf(workEdge, workEdge.length * 2);
+                    }
+                    work[workTop] = w;
+                    workEdge[workTop] = graph.callerStart(w);
+                    tarjanIndex[w] = tarjanLowLink[w] = ++tarjanCounter;
+                    if (stackTop == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[stackTop++] = w;
+                    tarjanOnStack[w >>> 6] |= 1L << w;
+                } else if ((tarjanOnStack[w >>> 6] & (1L << w)) != 0) {
+                    tarjanLowLink[v] = Math.min(tarjanLowLink[v], tarjanIndex[w]);
+                }
+                continue;
+            }
+            workTop--;
+            if (workTop >= 0) {
+                int u = work[workTop];
+                tarjanLowLink[u] = Math.min(tarjanLowLink[u], tarjanLowLink[v]);
+            }
+            if (tarjanLowLink[v] == tarjanIndex[v]) {
+                int size = 0;
+                int w;
+                do {
+                    w = stack[--stackTop];
+                    tarjanOnStack[w >>> 6] &= ~(1L << w);
+                    size++;
+                } while (w != v);
+                byte kind = size > 1 || callsItself(v) ? COMPONENT_CYCLIC : COMPONENT_ACYCLIC;
+                for (int i = stackTop; i < stackTop + size; i++) {
+                    component[stack[i]] = kind;
+                }
+            }
+        }
+    }
+
+    private boolean callsItself(int method) {
+        for (int edge = graph.callerStart(method); edge < graph.callerEnd(method); edge++) {
+            if (graph.callerAt(edge) == method) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the last traversal cut chains short at the maximum depth.
+     */
+    public boolean isDepthLimited() {
+        return depthLimited;
+    }
+
+    /**
+     * Whether the last traversal stopped because it collected the maximum number of chains.
+     */
+    public boolean isChainLimited() {
+        return chainLimited;
+    }
+
+    /**
+     * Whether the last traversal stopped because its deadline passed.
+     */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * Number of BFS nodes created by the last traversal.
+     */
+    public int getLastNodeCount() {
+        return nodeCount;
+    }
+
+    private String nameOf(int method) {
+        if (names == null) {
+            names = new String[graph.nodeCount()];
+        }
+        String name = names[method];
+        if (name == null) {
+            name = graph.nameOf(method);
+            names[method] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Marks the method as visited, returning false if it already was.
+     */
+    private boolean markVisited(int method) {
+        long bit = 1L << method;
+        int word = method >>> 6;
+        if ((visited[word] & bit) != 0) {
+            return false;
+        }
+        visited[word] |= bit;
+        return true;
+    }
+
+    private boolean isOnPath(int node, int method) {
+        for (int n = node; n != ROOT; n = nodeParent[n]) {
+            if (nodeMethod[n] == method) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int addNode(int method, int parent, int line) {
+        if (nodeCount == nodeMethod.length) {
+            int capacity = nodeMethod.length * 2;
+            nodeMethod = Arrays.copyOf(nodeMethod, capacity);
+            nodeParent = Arrays.copyOf(nodeParent, capacity);
+            nodeLine = Arrays.copyOf(nodeLine, capacity);
+            nodeDepth = Arrays.copyOf(nodeDepth, capacity);
+        }
+        nodeMethod[nodeCount] = method;
+        nodeParent[nodeCount] = parent;
+        nodeLine[nodeCount] = line;
+        nodeDepth[nodeCount] = parent == ROOT ? 0 : nodeDepth[parent] + 1;
+        return nodeCount++;
+    }
+
+    /**
+     * Builds the chain from the given node (top of the call stack) down to, but excluding, the start method.
+     * A null start method is taken from the root of the node's path.
+     */
+    private CallChain materialize(int node, String startMethod, String tableName) {
+        List<String> path = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        int n = node;
+        for (; nodeParent[n] != ROOT; n = nodeParent[n]) {
+            path.add(nameOf(nodeMethod[n]));
+            lineNumbers.add(nodeLine[n]);
+        }
+        return new CallChain(path, lineNumbers, startMethod != null ? startMethod : nameOf(nodeMethod[n]), tableName);
+    }
+}
@@ -1,11 +1,16 @@
 package v3.analyzer;
 
+import v3.indexer.CacheDirectory;
+import v3.indexer.CacheFile;
 import v3.indexer.CallReference;
 import v3.indexer.CalleeMethodIndexer;
+import v3.indexer.CompilationUnitCache;
 import v3.indexer.TableToXmlIndexer;
+import v3.indexer.TypeResolver;
 import v3.model.*;
 import v3.scanner.ModuleScanner;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.logging.Logger;
@@ -20,11 +25,23 @@ public class ImpactAnalyzer {
     private final TableToXmlIndexer tableIndexer;
     private final CalleeMethodIndexer referenceFinder;
     private final XmlToRepositoryMapper xmlRepoMapper;
+    private final CompilationUnitCache parseCache;
 
     // Cached indices
     private Map<String, List<TableXmlMapping>> tableIndex;
+    private Map<String, List<TableXmlMapping>> columnIndex;
     private Map<String, List<CallReference>> mapperToServiceIndex;
+    private ReverseCallGraph callGraph;
     private Set<String> mapperNamespaces;
+    private boolean useMappedCallGraph = false;
+    private Path cacheRoot = Path.of(CacheDirectory.DEFAULT_ROOT);
+    private CacheDirectory cacheDirectory = CacheDirectory.WORKING_DIRECTORY;
+    private MethodKeyStrategy methodKeys = MethodKeyStrategy.NAME;
+
+    private static final String CALL_GRAPH_FILE = "call_graph.csr";
+    // Large enough to keep the DbCmd files parsed by the repository mapping until the call indexer
+    // reaches them; the soft references still let the GC reclaim ASTs under memory pressure
+    private static final int SHARED_PARSE_CACHE_SIZE = 20_000;
 
     private static final Logger logger = Logger.getLogger(ImpactAnalyzer.class.getName());
     static {
@@ -36,8 +53,51 @@ public class ImpactAnalyzer {
     public ImpactAnalyzer() {
         this.moduleScanner = new ModuleScanner();
         this.tableIndexer = new TableToXmlIndexer();
-        this.referenceFinder = new CalleeMethodIndexer();
+        this.parseCache = new CompilationUnitCache(SHARED_PARSE_CACHE_SIZE, true);
+        this.referenceFinder = new CalleeMethodIndexer(parseCache);
         this.xmlRepoMapper = new XmlToRepositoryMapper();
+        // Every Java file is parsed once per run, whichever phase needs it first
+        this.xmlRepoMapper.setCompilationUnits(referenceFinder::compile);
+    }
+
+    /**
+     * Sets the number of threads used to build the call reference index, the parse and
+     * extraction stages of the table -> mapper index and the table -> repository mapping.
+     *
+     * @param threads worker count; 1 keeps single-threaded call reference indexing
+     */
+    public void setIndexingThreads(int threads) {
+        referenceFinder.setThreads(threads);
+        tableIndexer.setThreads(threads);
+        xmlRepoMapper.setThreads(threads);
+    }
+
+    /**
+     * Enables the memory-mapped call graph backend. The reverse call graph is written to disk once
+     * and mapped on later runs, so the call reference index does not have to be loaded into the heap
+     * as long as no Java source changed.
+     */
+    public void setUseMappedCallGraph(boolean useMappedCallGraph) {
+        this.useMappedCallGraph = useMappedCallGraph;
+    }
+
+    /**
+     * Sets how methods are keyed in the call graph, see {@link MethodKeyStrategy}. Keying by arity or
+     * parameter types keeps overloads apart, so impact paths only run through the overloads a caller
+     * can actually invoke. Indexes built with each strategy are cached in separate directories.
+     */
+    public void setMethodKeyStrategy(MethodKeyStrategy methodKeys) {
+        this.methodKeys = methodKeys;
+        referenceFinder.setMethodKeyStrategy(methodKeys);
+        xmlRepoMapper.setMethodKeyStrategy(methodKeys);
+    }
+
+    /**
+     * Sets the directory under which every analyzed workspace gets its own cache directory,
+     * see {@link CacheDirectory}; null keeps the cache files in the working directory.
+     */
+    public void setCacheRoot(Path cacheRoot) {
+        this.cacheRoot = cacheRoot;
     }
 
     /**
@@ -59,22 +119,96 @@ public class ImpactAnalyzer {
             }
         }
 
+        openCacheDirectory(monolithRootPath, filteredModules);
+
         logger.log(Level.SEVERE, "Building table -> mapper index...");
         tableIndex = tableIndexer.buildTableToMapperIndex(filteredModules);
         logger.log(Level.SEVERE, "Indexed " + tableIndex.size() + " tables");
+        for (String stage : tableIndexer.getStageStatistics()) {
+            logger.log(Level.SEVERE, "  " + stage);
+        }
+        columnIndex = tableIndexer.buildColumnIndex(tableIndex);
+        logger.log(Level.SEVERE, "Indexed " + columnIndex.size() + " columns");
 
         logger.log(Level.SEVERE, "Building table -> repository mapping...");
-        repoMappings = xmlRepoMapper.mapXmlToRepository(tableIndex, filteredModules);
+        repoMappings = xmlRepoMapper.mapXmlToRepository(tableIndex, filteredModules, tableIndexer.getChangedTables());
         logger.log(Level.SEVERE, "Wrote " + repoMappings.size() + " table-repository mappings");
 
         logger.log(Level.SEVERE, "Building mapper -> service index...");
 
-        mapperToServiceIndex = referenceFinder.findReferences(repoMappings, filteredModules);
-        logger.log(Level.SEVERE, "Indexed " + mapperToServiceIndex.size() + " mapper method references");
+        callGraph = useMappedCallGraph ? mapCurrentCallGraph(filteredModules) : null;
+        if (callGraph == null) {
+            mapperToServiceIndex = referenceFinder.findReferences(repoMappings, filteredModules);
+            callGraph = useMappedCallGraph ? writeAndMapCallGraph(mapperToServiceIndex) : null;
+            if (callGraph == null) {
+                callGraph = ReverseCallGraph.build(mapperToServiceIndex, this::isServiceLayer);
+            }
+        }
+        logger.log(Level.SEVERE, "Indexed " + callGraph.calleeCount() + " mapper method references");
+        logger.log(Level.SEVERE, "Parsed " + parseCache.getParseCount() + " Java files ("
+            + parseCache.getReparseCount() + " parsed again after eviction, " + parseCache.getHitCount() + " cache hits)");
+        TypeResolver types = referenceFinder.getTypeResolver();
+        logger.log(Level.SEVERE, String.format("Resolved %d type references in %d ms (%.1f%% cache hits, %d unresolved)",
+            types.getLookupCount(), types.getResolveNanos() / 1_000_000, types.getHitRate() * 100, types.getUnresolvedCount()));
 
         logger.log(Level.SEVERE, "Initialization complete!");
     }
 
+    private void openCacheDirectory(Path monolithRootPath, List<MavenModule> modules) {
+        cacheDirectory = CacheDirectory.WORKING_DIRECTORY;
+        if (cacheRoot != null) {
+            try {
+                List<String> options = methodKeys == MethodKeyStrategy.NAME
+                    ? List.of() : List.of("methodKeys=" + methodKeys);
+                cacheDirectory = CacheDirectory.open(cacheRoot, monolithRootPath, modules, options);
+                logger.log(Level.SEVERE, "Cache directory: " + cacheDirectory.getDirectory());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to open cache directory under " + cacheRoot
+                    + ", using the working directory: " + e.getMessage());
+            }
+        }
+        tableIndexer.setCacheDirectory(cacheDirectory);
+        xmlRepoMapper.setCacheDirectory(cacheDirectory);
+        referenceFinder.setCacheDirectory(cacheDirectory);
+    }
+
+    /**
+     * Maps the on-disk call graph if it was completely written, is newer than the call reference
+     * index and that index is current.
+     *
+     * @return the mapped graph, or null if it has to be rebuilt
+     */
+    private ReverseCallGraph mapCurrentCallGraph(List<MavenModule> modules) {
+        java.io.File graphFile = cacheDirectory.resolve(CALL_GRAPH_FILE).toFile();
+        if (!CacheFile.isComplete(graphFile.toPath()) || graphFile.lastModified() < referenceFinder.lastIndexUpdate()
+                || !referenceFinder.isIndexCurrent(modules)) {
+            return null;
+        }
+        try {
+            ReverseCallGraph graph = ReverseCallGraph.map(graphFile.toPath());
+            logger.log(Level.INFO, "Mapped call graph from " + CALL_GRAPH_FILE);
+            return graph;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to map call graph, rebuilding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Streams the call graph of the index to disk and maps it, without building it on the heap.
+     *
+     * @return the mapped graph, or null if it could not be written and has to be kept on the heap
+     */
+    private ReverseCallGraph writeAndMapCallGraph(Map<String, List<CallReference>> index) {
+        try {
+            ReverseCallGraph.write(index, this::isServiceLayer, cacheDirectory.resolve(CALL_GRAPH_FILE));
+            return ReverseCallGraph.map(cacheDirectory.resolve(CALL_GRAPH_FILE));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write call graph, keeping it on the heap: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Analyzes the impact of a database table change.
      *
@@ -82,120 +216,414 @@ public class ImpactAnalyzer {
      * @return complete impact analysis result
      */
     public ImpactAnalysisResult analyzeTableImpact(String tableName) {
-        List<TableImpact> impacts = new ArrayList<>();
-        List<CallChain> callChains = new ArrayList<>();
-        List<String> warnings = new ArrayList<>();
-        List<String> unresolvedRefs = new ArrayList<>();
+        return analyzeTableImpact(tableName, TraversalPolicy.UNLIMITED);
+    }
+
+    /**
+     * Analyzes the impact of a database table change, bounding the call chain traversal.
+     * Any truncation caused by the policy is reported in the result's warnings.
+     *
+     * @param tableName the database table name to analyze
+     * @param policy depth, chain count and time limits for the traversal
+     * @return complete impact analysis result
+     */
+    public ImpactAnalysisResult analyzeTableImpact(String tableName, TraversalPolicy policy) {
+        return analyzeTableImpact(tableName, policy, AnalysisMode.PATHS);
+    }
+
+    /**
+     * Analyzes the impact of a database table change in the given mode.
+     * In {@link AnalysisMode#REACHABILITY} mode the result holds one shortest witness chain per
+     * distinct impacted entry point instead of every call path; the policy's total chain limit
+     * then caps the number of entry points.
+     *
+     * @param tableName the database table name to analyze
+     * @param policy depth, chain count and time limits for the traversal
+     * @param mode whether to enumerate all paths or only distinct entry points
+     * @return complete impact analysis result
+     */
+    public ImpactAnalysisResult analyzeTableImpact(String tableName, TraversalPolicy policy, AnalysisMode mode) {
+        return analyzeTableImpact(tableName, policy, mode, AccessMode.READ_WRITE);
+    }
 
+    /**
+     * Analyzes the impact of a database table change, considering only repository methods whose
+     * statements use the table in one of the given access modes. Pruning happens before the
+     * traversal, so e.g. a write-only query never walks the callers of pure readers.
+     *
+     * @param tableName the database table name to analyze
+     * @param policy depth, chain count and time limits for the traversal
+     * @param mode whether to enumerate all paths or only distinct entry points
+     * @param accessFilter {@link AccessMode} flags; a repository method is kept if it shares any of them
+     * @return complete impact analysis result
+     */
+    public ImpactAnalysisResult analyzeTableImpact(String tableName, TraversalPolicy policy, AnalysisMode mode,
+                                                   int accessFilter) {
         // Step 1: Find all repository methods that interact with this table
-        List<String> repositoryMethods = findRepositoryMethodsForTable(tableName);
+        List<String> repositoryMethods = findRepositoryMethodsForTable(tableName, accessFilter);
+        if (repositoryMethods.isEmpty()) {
+            return emptyResult(tableName, mode, noRepositoryMethodsWarning(tableName, accessFilter));
+        }
+        return analyzeRepositoryMethods(tableName, repositoryMethods, policy, mode);
+    }
 
+    /**
+     * Analyzes the impact of a change to a single column. Only repository methods whose statements
+     * reference the column, or every column of the table, are traversed, which for wide tables is a
+     * small fraction of the methods {@link #analyzeTableImpact(String, TraversalPolicy, AnalysisMode, int)}
+     * starts from. Chains and the result are labelled TABLE.COLUMN.
+     *
+     * @param tableName the database table name
+     * @param columnName the column name within the table
+     * @param policy depth, chain count and time limits for the traversal
+     * @param mode whether to enumerate all paths or only distinct entry points
+     * @param accessFilter {@link AccessMode} flags; a repository method is kept if it shares any of them
+     * @return complete impact analysis result
+     */
+    public ImpactAnalysisResult analyzeColumnImpact(String tableName, String columnName, TraversalPolicy policy,
+                                                    AnalysisMode mode, int accessFilter) {
+        String target = tableName.toUpperCase() + "." + columnName.toUpperCase();
+        List<String> repositoryMethods = findRepositoryMethodsForColumn(tableName, columnName, accessFilter);
         if (repositoryMethods.isEmpty()) {
-            warnings.add("No repository methods found for table: " + tableName);
-            return new ImpactAnalysisResult(tableName, impacts, callChains, unresolvedRefs, warnings);
+            String warning = accessFilter == AccessMode.READ_WRITE
+                ? "No repository methods found for column: " + target
+                : "No repository methods with " + AccessMode.toString(accessFilter) + " access found for column: " + target;
+            return emptyResult(target, mode, warning);
         }
+        return analyzeRepositoryMethods(target, repositoryMethods, policy, mode);
+    }
+
+    private static ImpactAnalysisResult emptyResult(String tableName, AnalysisMode mode, String warning) {
+        List<String> warnings = new ArrayList<>();
+        warnings.add(warning);
+        return new ImpactAnalysisResult(tableName, mode, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), warnings);
+    }
+
+    /**
+     * Finds the call chains or entry points above the given repository methods.
+     */
+    private ImpactAnalysisResult analyzeRepositoryMethods(String tableName, List<String> repositoryMethods,
+                                                          TraversalPolicy policy, AnalysisMode mode) {
+        List<TableImpact> impacts = new ArrayList<>();
+        List<CallChain> callChains = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        List<String> unresolvedRefs = new ArrayList<>();
 
         logger.log(Level.INFO, "Found " + repositoryMethods.size() + " repository methods for table: " + tableName);
 
+        if (mode == AnalysisMode.REACHABILITY) {
+            CallChainTraversal traversal = new CallChainTraversal(callGraph);
+            callChains.addAll(traversal.findEntryPoints(repositoryMethods, tableName, policy.getMaxDepth(),
+                policy.getMaxTotalChains(), policy.deadlineFromNow()));
+            if (traversal.isDepthLimited()) {
+                warnings.add("Witness chains truncated at max depth " + policy.getMaxDepth());
+            }
+            if (traversal.isChainLimited()) {
+                warnings.add("Entry points truncated after " + callChains.size() + " entries");
+            }
+            if (traversal.isDeadlineExceeded()) {
+                warnings.add("Analysis timeout of " + policy.getTimeout().toMillis() + " ms exceeded; entry points may be incomplete");
+            }
+            logger.log(Level.INFO, "Found " + callChains.size() + " impacted entry points for table: " + tableName);
+            return new ImpactAnalysisResult(tableName, mode, impacts, callChains, unresolvedRefs, warnings);
+        }
+
         // Step 2: For each repository method, find all call chains (until service layer)
-        for (String repoMethod : repositoryMethods) {
-            List<CallChain> chains = findCallChainsToServiceLayer(repoMethod, tableName);
+        CallChainTraversal traversal = new CallChainTraversal(callGraph);
+        long deadline = policy.deadlineFromNow();
+        for (int i = 0; i < repositoryMethods.size(); i++) {
+            String repoMethod = repositoryMethods.get(i);
+            int remaining = policy.getMaxTotalChains() - callChains.size();
+            if (policy.getMaxTotalChains() > 0 && remaining <= 0) {
+                warnings.add("Total call chain limit of " + policy.getMaxTotalChains() + " reached; skipped "
+                    + (repositoryMethods.size() - i) + " repository methods");
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                warnings.add("Analysis timeout of " + policy.getTimeout().toMillis() + " ms exceeded; skipped "
+                    + (repositoryMethods.size() - i) + " repository methods");
+                break;
+            }
+            int maxChains = policy.getMaxChainsPerRepositoryMethod();
+            if (policy.getMaxTotalChains() > 0) {
+                maxChains = maxChains > 0 ? Math.min(maxChains, remaining) : remaining;
+            }
+            List<CallChain> chains = traversal.findCallChains(repoMethod, tableName, policy.getMaxDepth(), maxChains, deadline);
             callChains.addAll(chains);
 
             if (chains.isEmpty()) {
                 warnings.add("No callers found for repository method: " + repoMethod);
             }
+            if (traversal.isDepthLimited()) {
+                warnings.add("Call chains for " + repoMethod + " truncated at max depth " + policy.getMaxDepth());
+            }
+            if (traversal.isChainLimited()) {
+                warnings.add("Call chains for " + repoMethod + " truncated after " + chains.size() + " chains");
+            }
+            if (traversal.isDeadlineExceeded()) {
+                warnings.add("Call chains for " + repoMethod + " truncated: analysis timeout of "
+                    + policy.getTimeout().toMillis() + " ms exceeded");
+            }
         }
 
         logger.log(Level.INFO, "Found " + callChains.size() + " call chains for table: " + tableName);
 
-        return new ImpactAnalysisResult(tableName, impacts, callChains, unresolvedRefs, warnings);
+        return new ImpactAnalysisResult(tableName, mode, impacts, callChains, unresolvedRefs, warnings);
     }
 
     /**
-     * Finds all repository methods that interact with the given table.
+     * Analyzes the impact of several table changes in one pass over the call graph.
+     *
+     * In {@link AnalysisMode#REACHABILITY} mode the entry points of up to 64 tables are found by a
+     * single multi-source BFS over all of their repository methods, in which every method is expanded
+     * at most once per table and callers shared by several tables are expanded together. In
+     * {@link AnalysisMode#PATHS} mode call chains are cached per repository method for the whole
+     * batch and, without a per-method chain limit, the traversal reuses the chains above shared
+     * upstream callers, so a repository method shared by several tables - and the callers above it -
+     * is traversed only once. The policy
+     * applies to each table separately, as for {@link #analyzeTableImpact(String, TraversalPolicy, AnalysisMode)};
+     * results cut short by the timeout are not cached, and chains cut short by a chain limit are only
+     * reused under the same limit.
+     *
+     * @param tableNames the database table names to analyze; duplicates are analyzed once
+     * @param policy depth, chain count and time limits, applied per table
+     * @param mode whether to enumerate all paths or only distinct entry points
+     * @return per-table results plus the combined entry points
      */
-    private List<String> findRepositoryMethodsForTable(String tableName) {
-        List<String> repositoryMethods = new ArrayList<>();
+    public BatchImpactResult analyzeTablesImpact(Collection<String> tableNames, TraversalPolicy policy, AnalysisMode mode) {
+        return analyzeTablesImpact(tableNames, policy, mode, AccessMode.READ_WRITE);
+    }
 
-        for (TableRepositoryMapping mapping : repoMappings) {
-            if (mapping.getTableName().equalsIgnoreCase(tableName)) {
-                repositoryMethods.addAll(mapping.getRepositoryMethods());
+    /**
+     * Analyzes the impact of several table changes in one pass over the call graph, considering only
+     * repository methods that use each table in one of the given access modes.
+     *
+     * @see #analyzeTablesImpact(Collection, TraversalPolicy, AnalysisMode)
+     * @see #analyzeTableImpact(String, TraversalPolicy, AnalysisMode, int)
+     */
+    public BatchImpactResult analyzeTablesImpact(Collection<String> tableNames, TraversalPolicy policy, AnalysisMode mode,
+                                                 int accessFilter) {
+        CallChainTraversal traversal = new CallChainTraversal(callGraph);
+        List<String> tables = new ArrayList<>(new LinkedHashSet<>(tableNames));
+        List<List<String>> repositoryMethods = new ArrayList<>();
+        Set<String> distinctRepositoryMethods = new HashSet<>();
+        int lookups = 0;
+        for (String tableName : tables) {
+            List<String> methods = findRepositoryMethodsForTable(tableName, accessFilter);
+            repositoryMethods.add(methods);
+            distinctRepositoryMethods.addAll(methods);
+            lookups += methods.size();
+        }
+
+        List<ImpactAnalysisResult> results;
+        int traversed;
+        if (mode == AnalysisMode.REACHABILITY) {
+            results = analyzeBatchReachability(tables, repositoryMethods, accessFilter, policy, traversal);
+            traversed = distinctRepositoryMethods.size();
+        } else {
+            Map<String, RepositoryMethodChains> chainCache = new HashMap<>();
+            results = new ArrayList<>();
+            for (int t = 0; t < tables.size(); t++) {
+                results.add(analyzeBatchTable(tables.get(t), repositoryMethods.get(t), accessFilter, policy,
+                    traversal, chainCache));
             }
+            traversed = chainCache.size();
         }
 
-        return repositoryMethods;
+        logger.log(Level.INFO, "Analyzed " + results.size() + " tables, traversed " + traversed
+            + " repository methods for " + lookups + " lookups");
+        return new BatchImpactResult(mode, results, traversed, lookups - traversed);
     }
 
     /**
-     * Finds all call chains for a given method using BFS traversal.
-     * Stops when reaching service layer (class name contains "Service").
-     *
-     * @param startMethod the method to start from (repository method)
-     * @param tableName the table name for context
-     * @return list of all call chains found
+     * Finds the entry points of each table, running one multi-table traversal per 64 tables that
+     * have repository methods.
      */
-    private List<CallChain> findCallChainsToServiceLayer(String startMethod, String tableName) {
-        List<CallChain> allChains = new ArrayList<>();
+    private List<ImpactAnalysisResult> analyzeBatchReachability(List<String> tableNames, List<List<String>> repositoryMethods,
+                                                                int accessFilter, TraversalPolicy policy,
+                                                                CallChainTraversal traversal) {
+        ImpactAnalysisResult[] results = new ImpactAnalysisResult[tableNames.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int t = 0; t < tableNames.size(); t++) {
+            if (repositoryMethods.get(t).isEmpty()) {
+                List<String> warnings = new ArrayList<>();
+                warnings.add(noRepositoryMethodsWarning(tableNames.get(t), accessFilter));
+                results[t] = new ImpactAnalysisResult(tableNames.get(t), AnalysisMode.REACHABILITY, new ArrayList<>(),
+                    new ArrayList<>(), new ArrayList<>(), warnings);
+            } else {
+                pending.add(t);
+            }
+        }
 
-        // BFS queue: each entry is (current method, path to reach it, line numbers, visited set)
-        Queue<CallChainNode> queue = new LinkedList<>();
-        queue.offer(new CallChainNode(startMethod, new ArrayList<>(), new ArrayList<>(), new HashSet<>()));
+        for (int from = 0; from < pending.size(); from += Long.SIZE) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + Long.SIZE, pending.size()));
+            List<String> chunkTables = new ArrayList<>();
+            List<List<String>> chunkMethods = new ArrayList<>();
+            for (int t : chunk) {
+                chunkTables.add(tableNames.get(t));
+                chunkMethods.add(repositoryMethods.get(t));
+            }
+            List<List<CallChain>> entryPoints = traversal.findEntryPoints(chunkMethods, chunkTables,
+                policy.getMaxDepth(), policy.deadlineFromNow(chunk.size()));
+
+            for (int i = 0; i < chunk.size(); i++) {
+                List<CallChain> callChains = entryPoints.get(i);
+                List<String> warnings = new ArrayList<>();
+                callChains.sort(Comparator.comparingInt(CallChain::getDepth));
+                if ((traversal.getDepthLimitedTables() & (1L << i)) != 0) {
+                    warnings.add("Witness chains truncated at max depth " + policy.getMaxDepth());
+                }
+                if (policy.getMaxTotalChains() > 0 && callChains.size() > policy.getMaxTotalChains()) {
+                    callChains = new ArrayList<>(callChains.subList(0, policy.getMaxTotalChains()));
+                    warnings.add("Entry points truncated after " + callChains.size() + " entries");
+                }
+                if (traversal.isDeadlineExceeded()) {
+                    warnings.add("Analysis timeout of " + policy.getTimeout().toMillis() + " ms exceeded; entry points may be incomplete");
+                }
+                results[chunk.get(i)] = new ImpactAnalysisResult(chunkTables.get(i), AnalysisMode.REACHABILITY,
+                    new ArrayList<>(), callChains, new ArrayList<>(), warnings);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
 
-        while (!queue.isEmpty()) {
-            CallChainNode current = queue.poll();
+    private ImpactAnalysisResult analyzeBatchTable(String tableName, List<String> repositoryMethods, int accessFilter,
+                                                   TraversalPolicy policy, CallChainTraversal traversal,
+                                                   Map<String, RepositoryMethodChains> chainCache) {
+        List<CallChain> callChains = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
 
-            // Find all methods that call the current method
-            List<CallReference> callers = mapperToServiceIndex.getOrDefault(current.method, new ArrayList<>());
+        if (repositoryMethods.isEmpty()) {
+            warnings.add(noRepositoryMethodsWarning(tableName, accessFilter));
+            return new ImpactAnalysisResult(tableName, AnalysisMode.PATHS, new ArrayList<>(), callChains, new ArrayList<>(), warnings);
+        }
 
-            if (callers.isEmpty()) {
-                // Dead end - save the chain if we have any path
-                if (!current.path.isEmpty()) {
-                    CallChain chain = new CallChain(current.path, current.lineNumbers, startMethod, tableName);
-                    allChains.add(chain);
+        long deadline = policy.deadlineFromNow();
+        for (int i = 0; i < repositoryMethods.size(); i++) {
+            String repoMethod = repositoryMethods.get(i);
+            int remaining = policy.getMaxTotalChains() - callChains.size();
+            if (policy.getMaxTotalChains() > 0 && remaining <= 0) {
+                warnings.add("Total call chain limit of " + policy.getMaxTotalChains() + " reached; skipped "
+                    + (repositoryMethods.size() - i) + " repository methods");
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                warnings.add("Analysis timeout of " + policy.getTimeout().toMillis() + " ms exceeded; skipped "
+                    + (repositoryMethods.size() - i) + " repository methods");
+                break;
+            }
+
+            int maxChains = policy.getMaxChainsPerRepositoryMethod();
+            if (policy.getMaxTotalChains() > 0) {
+                maxChains = maxChains > 0 ? Math.min(maxChains, remaining) : remaining;
+            }
+            RepositoryMethodChains cached = chainCache.get(repoMethod);
+            if (cached == null || !cached.answers(maxChains)) {
+                List<CallChain> chains = traversal.findCallChains(repoMethod, tableName, policy.getMaxDepth(), maxChains, deadline);
+                cached = new RepositoryMethodChains(chains, maxChains, traversal.isDepthLimited(), traversal.isChainLimited());
+                if (traversal.isDeadlineExceeded()) {
+                    warnings.add("Call chains for " + repoMethod + " truncated: analysis timeout of "
+                        + policy.getTimeout().toMillis() + " ms exceeded");
+                } else {
+                    chainCache.put(repoMethod, cached);
                 }
-            } else {
-                // Continue traversing
-                for (CallReference caller : callers) {
-                    String callerMethod = caller.getSourceMethod();
-                    int lineNumber = caller.getLine(); // Get the actual line number from source code
-
-                    // Avoid cycles - don't revisit methods already in this path
-                    if (current.visited.contains(callerMethod) || callerMethod.equals(startMethod)) {
-                        continue;
-                    }
+            }
 
-                    // Create new path with this caller
-                    List<String> newPath = new ArrayList<>(current.path);
-                    newPath.add(0, callerMethod); // Add at the beginning (top of call stack)
-
-                    // Create new line numbers list
-                    List<Integer> newLineNumbers = new ArrayList<>(current.lineNumbers);
-                    newLineNumbers.add(0, lineNumber); // Add line number at the beginning
-
-                    // Create new visited set
-                    Set<String> newVisited = new HashSet<>(current.visited);
-                    newVisited.add(callerMethod);
-
-                    // Check if we reached service layer
-                    if (isServiceLayer(callerMethod)) {
-                        // We reached service layer - save this chain and don't traverse further
-                        CallChain chain = new CallChain(newPath, newLineNumbers, startMethod, tableName);
-                        allChains.add(chain);
-                    } else {
-                        // Not service layer yet - continue traversing
-                        queue.offer(new CallChainNode(callerMethod, newPath, newLineNumbers, newVisited));
+            for (CallChain chain : cached.chains) {
+                callChains.add(withTable(chain, tableName));
+            }
+            if (cached.depthLimited) {
+                warnings.add("Call chains for " + repoMethod + " truncated at max depth " + policy.getMaxDepth());
+            }
+            if (cached.chainLimited) {
+                warnings.add("Call chains for " + repoMethod + " truncated after " + cached.chains.size() + " chains");
+            }
+        }
+
+        return new ImpactAnalysisResult(tableName, AnalysisMode.PATHS, new ArrayList<>(), callChains, new ArrayList<>(), warnings);
+    }
+
+    private static CallChain withTable(CallChain chain, String tableName) {
+        if (chain.getTableName().equals(tableName)) {
+            return chain;
+        }
+        return new CallChain(chain.getCallPath(), chain.getLineNumbers(), chain.getRepositoryMethod(), tableName);
+    }
+
+    /**
+     * Call chains of one repository method, cached for the duration of a batch.
+     */
+    private static final class RepositoryMethodChains {
+        final List<CallChain> chains;
+        final int maxChains; // The chain limit of the traversal (0: unlimited)
+        final boolean depthLimited;
+        final boolean chainLimited;
+
+        RepositoryMethodChains(List<CallChain> chains, int maxChains, boolean depthLimited, boolean chainLimited) {
+            this.chains = chains;
+            this.maxChains = maxChains;
+            this.depthLimited = depthLimited;
+            this.chainLimited = chainLimited;
+        }
+
+        /**
+         * Whether a traversal with the given chain limit would return exactly these chains: a traversal
+         * stopped by its limit only answers the same limit, a complete one every limit it stayed below.
+         */
+        boolean answers(int limit) {
+            return chainLimited ? limit == maxChains : limit == 0 || chains.size() < limit;
+        }
+    }
+
+    /**
+     * Finds all repository methods that interact with the given table in one of the given access modes.
+     */
+    private List<String> findRepositoryMethodsForTable(String tableName, int accessFilter) {
+        List<String> repositoryMethods = new ArrayList<>();
+
+        for (TableRepositoryMapping mapping : repoMappings) {
+            if (mapping.getTableName().equalsIgnoreCase(tableName)) {
+                for (String repositoryMethod : mapping.getRepositoryMethods()) {
+                    if ((mapping.getAccessMode(repositoryMethod) & accessFilter) != 0) {
+                        repositoryMethods.add(repositoryMethod);
                     }
                 }
             }
         }
 
-        // If no chains found at all, create one with just the repository method
-        if (allChains.isEmpty()) {
-            allChains.add(new CallChain(new ArrayList<>(), new ArrayList<>(), startMethod, tableName));
+        return repositoryMethods;
+    }
+
+    /**
+     * Finds the repository methods whose statements reference the given column of the table, or
+     * all of its columns, in one of the given access modes.
+     */
+    private List<String> findRepositoryMethodsForColumn(String tableName, String columnName, int accessFilter) {
+        String table = tableName.toUpperCase();
+        List<TableXmlMapping> statements = new ArrayList<>(
+            columnIndex.getOrDefault(table + "." + columnName.toUpperCase(), List.of()));
+        statements.addAll(columnIndex.getOrDefault(table + ".*", List.of()));
+        List<String> repositoryMethods = new ArrayList<>();
+        if (statements.isEmpty()) {
+            return repositoryMethods;
+        }
+
+        for (String repositoryMethod : findRepositoryMethodsForTable(tableName, accessFilter)) {
+            for (TableXmlMapping statement : statements) {
+                if (XmlToRepositoryMapper.isRepositoryMethodFor(repositoryMethod, statement)) {
+                    repositoryMethods.add(repositoryMethod);
+                    break;
+                }
+            }
         }
+        return repositoryMethods;
+    }
 
-        return allChains;
+    private static String noRepositoryMethodsWarning(String tableName, int accessFilter) {
+        if (accessFilter == AccessMode.READ_WRITE) {
+            return "No repository methods found for table: " + tableName;
+        }
+        return "No repository methods with " + AccessMode.toString(accessFilter) + " access found for table: " + tableName;
     }
 
     /**
@@ -262,8 +690,9 @@ public class ImpactAnalyzer {
         Map<String, Integer> stats = new LinkedHashMap<>();
 
         stats.put("Tables indexed", tableIndex != null ? tableIndex.size() : 0);
+        stats.put("Columns indexed", columnIndex != null ? columnIndex.size() : 0);
         stats.put("Repository mappings", repoMappings != null ? repoMappings.size() : 0);
-        stats.put("Method references", mapperToServiceIndex != null ? mapperToServiceIndex.size() : 0);
+        stats.put("Method references", callGraph != null ? callGraph.calleeCount() : 0);
 
         // Calculate total repository methods
         int totalRepoMethods = 0;
@@ -274,34 +703,14 @@ public class ImpactAnalyzer {
         }
         stats.put("Repository methods", totalRepoMethods);
 
-        // Calculate total call references
-        int totalCallRefs = 0;
-        if (mapperToServiceIndex != null) {
-            for (List<CallReference> refs : mapperToServiceIndex.values()) {
-                totalCallRefs += refs.size();
-            }
-        }
-        stats.put("Total call references", totalCallRefs);
+        stats.put("Total call references", callGraph != null ? callGraph.edgeCount() : 0);
+        stats.put("Java files parsed", (int) parseCache.getParseCount());
+        stats.put("Java files re-parsed", (int) parseCache.getReparseCount());
+        TypeResolver types = referenceFinder.getTypeResolver();
+        stats.put("Type references resolved", (int) types.getLookupCount());
+        stats.put("Type resolution cache hits", (int) types.getHitCount());
+        stats.put("Type resolution time (ms)", (int) (types.getResolveNanos() / 1_000_000));
 
         return stats;
     }
-
-    /**
-     * Helper class for BFS traversal
-     */
-    private static class CallChainNode {
-        String method;
-        List<String> path;
-        List<Integer> lineNumbers; // Track line numbers for each method in path
-        Set<String> visited; // Track visited methods to avoid cycles
-
-        CallChainNode(String method, List<String> path, List<Integer> lineNumbers, Set<String> visited) {
-            this.method = method;
-            this.path = path;
-            this.lineNumbers = lineNumbers;
-            this.visited = visited;
-        }
-    }
-
-
 }
@@ -0,0 +1,377 @@
+package v3.analyzer;
+
+import v3.indexer.CacheFile;
+import v3.indexer.CallReference;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Callee-to-caller adjacency in compressed sparse row (CSR) form.
+ *
+ * Every method name (callee or caller) is interned to an int id; ids are assigned in unsigned
+ * UTF-8 byte order so names can be looked up by binary search directly in the encoded name table.
+ * The callers of method {@code id} are the edges {@code [callerStart(id), callerEnd(id))}.
+ *
+ * The graph is held in {@link ByteBuffer} segments of at most 1 GB, either on the heap or
+ * memory-mapped from a file, and is read in place: traversals never deserialize it or allocate per
+ * edge. {@link #write(Map, Predicate, Path)} streams the sections straight to the file, so a mapped
+ * graph needs no heap copy and is only limited by the address space. Node and edge ids are ints,
+ * so a graph holds fewer than 2^31 methods and call sites, and less than 2 GB of method names.
+ *
+ * File layout (big-endian ints):
+ * <pre>
+ *   magic "ICRG", version, nodeCount, edgeCount, nameBytesLength
+ *   int[nodeCount + 1]  edge offsets per callee
+ *   int[edgeCount]      caller id per edge
+ *   int[edgeCount]      call-site line per edge
+ *   int[nodeCount + 1]  name offsets into the name bytes
+ *   byte[nodeCount]     flags per node (bit 0: service layer), padded to 4 bytes
+ *   byte[]              UTF-8 name bytes
+ * </pre>
+ */
+public final class ReverseCallGraph {
+
+    private static final int MAGIC = 0x49435247; // "ICRG"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final byte FLAG_SERVICE_LAYER = 1;
+    // Every int is 4-aligned, so none straddles two segments
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+
+    private final ByteBuffer[] segments;
+    private final int nodeCount;
+    private final int edgeCount;
+    private final Layout layout;
+
+    /**
+     * Section positions of a graph, in bytes from the start of the file.
+     */
+    private static final class Layout {
+        final long offsetsPos;
+        final long callersPos;
+        final long linesPos;
+        final long nameOffsetsPos;
+        final long flagsPos;
+        final long namesPos;
+        final long size;
+
+        Layout(int nodeCount, int edgeCount, int nameBytes) {
+            long offsetBytes = Math.multiplyExact(4L, Math.addExact(nodeCount, 1L));
+            long edgeBytes = Math.multiplyExact(4L, edgeCount);
+            this.offsetsPos = HEADER_BYTES;
+            this.callersPos = Math.addExact(offsetsPos, offsetBytes);
+            this.linesPos = Math.addExact(callersPos, edgeBytes);
+            this.nameOffsetsPos = Math.addExact(linesPos, edgeBytes);
+            this.flagsPos = Math.addExact(nameOffsetsPos, offsetBytes);
+            this.namesPos = Math.addExact(flagsPos, pad4(nodeCount));
+            this.size = Math.addExact(namesPos, nameBytes);
+        }
+    }
+
+    private ReverseCallGraph(ByteBuffer[] segments, long size) throws IOException {
+        this.segments = segments;
+        if (size < HEADER_BYTES || getInt(0) != MAGIC) {
+            throw new IOException("Not a call graph file");
+        }
+        if (getInt(4) != VERSION) {
+            throw new IOException("Unsupported call graph version " + getInt(4));
+        }
+        this.nodeCount = getInt(8);
+        this.edgeCount = getInt(12);
+        int nameBytes = getInt(16);
+        if (nodeCount < 0 || edgeCount < 0 || nameBytes < 0) {
+            throw new IOException("Corrupt call graph header");
+        }
+        this.layout = new Layout(nodeCount, edgeCount, nameBytes);
+        if (layout.size > size) {
+            throw new IOException("Truncated call graph file");
+        }
+    }
+
+    /**
+     * Method names of a callee -> call references index in id order, and the section sizes.
+     */
+    private static final class Names {
+        final byte[][] names;
+        final Map<String, Integer> ids;
+        final int edges;
+        final int nameBytes;
+
+        Names(Map<String, List<CallReference>> index) {
+            Set<String> nameSet = new HashSet<>(index.keySet());
+            long edgeTotal = 0;
+            for (List<CallReference> refs : index.values()) {
+                for (CallReference ref : refs) {
+                    nameSet.add(ref.getSourceMethod());
+                }
+                edgeTotal += refs.size();
+            }
+            names = new byte[nameSet.size()][];
+            int i = 0;
+            for (String name : nameSet) {
+                names[i++] = name.getBytes(StandardCharsets.UTF_8);
+            }
+            Arrays.sort(names, Arrays::compareUnsigned);
+            ids = new HashMap<>(names.length * 2);
+            long byteTotal = 0;
+            for (int id = 0; id < names.length; id++) {
+                ids.put(new String(names[id], StandardCharsets.UTF_8), id);
+                byteTotal += names[id].length;
+            }
+            try {
+                edges = Math.toIntExact(edgeTotal);
+                nameBytes = Math.toIntExact(byteTotal);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Call graph too large: " + edgeTotal + " edges, "
+                    + byteTotal + " name bytes", e);
+            }
+        }
+    }
+
+    /**
+     * Builds a heap-backed graph from the callee -> call references index.
+     * Callers of each callee keep the order of the index's reference lists.
+     *
+     * @param index callee method -> references to its call sites
+     * @param serviceLayer classifies methods at which call chains stop
+     */
+    public static ReverseCallGraph build(Map<String, List<CallReference>> index, Predicate<String> serviceLayer) {
+        Names names = new Names(index);
+        long size = new Layout(names.names.length, names.edges, names.nameBytes).size;
+        ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocate((int) Math.min(SEGMENT_BYTES, size - ((long) i << SEGMENT_SHIFT)));
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new OutputStream() {
+                private long position;
+
+                @Override
+                public void write(int b) {
+                    segments[(int) (position >>> SEGMENT_SHIFT)].put((int) (position & SEGMENT_MASK), (byte) b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    while (len > 0) {
+                        ByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+                        int at = (int) (position & SEGMENT_MASK);
+                        int n = Math.min(len, segment.capacity() - at);
+                        segment.put(at, b, off, n);
+                        position += n;
+                        off += n;
+                        len -= n;
+                    }
+                }
+            }, 1 << 16));
+            writeSections(index, serviceLayer, names, out);
+            out.flush();
+            return new ReverseCallGraph(segments, size);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the graph of a callee -> call references index to disk, section by section, without
+     * building it on the heap; atomically replaces any existing file, see {@link CacheFile}.
+     */
+    public static void write(Map<String, List<CallReference>> index, Predicate<String> serviceLayer, Path file)
+            throws IOException {
+        Names names = new Names(index);
+        CacheFile.write(file, out -> {
+            DataOutputStream data = new DataOutputStream(out);
+            writeSections(index, serviceLayer, names, data);
+            data.flush();
+        });
+    }
+
+    private static void writeSections(Map<String, List<CallReference>> index, Predicate<String> serviceLayer,
+                                      Names names, DataOutputStream out) throws IOException {
+        int n = names.names.length;
+        List<List<CallReference>> callers = new ArrayList<>(n);
+        for (byte[] name : names.names) {
+            callers.add(index.getOrDefault(new String(name, StandardCharsets.UTF_8), List.of()));
+        }
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(n);
+        out.writeInt(names.edges);
+        out.writeInt(names.nameBytes);
+        int edge = 0;
+        for (List<CallReference> refs : callers) {
+            out.writeInt(edge);
+            edge += refs.size();
+        }
+        out.writeInt(edge);
+        for (List<CallReference> refs : callers) {
+            for (CallReference ref : refs) {
+                out.writeInt(names.ids.get(ref.getSourceMethod()));
+            }
+        }
+        for (List<CallReference> refs : callers) {
+            for (CallReference ref : refs) {
+                out.writeInt(ref.getLine());
+            }
+        }
+        int nameOffset = 0;
+        for (byte[] name : names.names) {
+            out.writeInt(nameOffset);
+            nameOffset += name.length;
+        }
+        out.writeInt(nameOffset);
+        for (byte[] name : names.names) {
+            out.writeByte(serviceLayer.test(new String(name, StandardCharsets.UTF_8)) ? FLAG_SERVICE_LAYER : 0);
+        }
+        for (long pad = n; pad < pad4(n); pad++) {
+            out.writeByte(0);
+        }
+        for (byte[] name : names.names) {
+            out.write(name);
+        }
+    }
+
+    /**
+     * Memory-maps a graph previously written with {@link #write(Path)} or
+     * {@link #write(Map, Predicate, Path)}, in segments of at most 1 GB.
+     */
+    public static ReverseCallGraph map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) Math.max(1, (size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_BYTES, size - position));
+            }
+            return new ReverseCallGraph(segments, size);
+        }
+    }
+
+    /**
+     * Writes the graph to disk, atomically replacing any existing file; see {@link CacheFile}.
+     */
+    public void write(Path file) throws IOException {
+        CacheFile.write(file, out -> {
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (ByteBuffer segment : segments) {
+                ByteBuffer view = segment.duplicate();
+                view.clear();
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+        });
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the id of the given method, or -1 if it does not appear in the graph.
+     */
+    public int idOf(String method) {
+        byte[] key = method.getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = nodeCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareName(mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public String nameOf(int id) {
+        long start = layout.namesPos + getInt(layout.nameOffsetsPos + 4L * id);
+        byte[] bytes = new byte[getInt(layout.nameOffsetsPos + 4L * (id + 1)) - getInt(layout.nameOffsetsPos + 4L * id)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = getByte(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int callerStart(int id) {
+        return getInt(layout.offsetsPos + 4L * id);
+    }
+
+    public int callerEnd(int id) {
+        return getInt(layout.offsetsPos + 4L * (id + 1));
+    }
+
+    public int callerAt(int edge) {
+        return getInt(layout.callersPos + 4L * edge);
+    }
+
+    public int lineAt(int edge) {
+        return getInt(layout.linesPos + 4L * edge);
+    }
+
+    public boolean isServiceLayer(int id) {
+        return (getByte(layout.flagsPos + id) & FLAG_SERVICE_LAYER) != 0;
+    }
+
+    /**
+     * Number of methods that have at least one caller.
+     */
+    public int calleeCount() {
+        int count = 0;
+        for (int id = 0; id < nodeCount; id++) {
+            if (callerEnd(id) > callerStart(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int compareName(int id, byte[] key) {
+        int offset = getInt(layout.nameOffsetsPos + 4L * id);
+        long start = layout.namesPos + offset;
+        int length = getInt(layout.nameOffsetsPos + 4L * (id + 1)) - offset;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Byte.compareUnsigned(getByte(start + i), key[i]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    private byte getByte(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private static long pad4(int n) {
+        return ((long) n + 3) & ~3L;
+    }
+}
@@ -0,0 +1,76 @@
+package v3.analyzer;
+
+import java.time.Duration;
+
+/**
+ * Limits applied while enumerating call chains for an impact query.
+ * A limit of 0 (or a null timeout) means unlimited.
+ */
+public final class TraversalPolicy {
+
+    public static final TraversalPolicy UNLIMITED = new TraversalPolicy(0, 0, 0, null);
+
+    private final int maxDepth;
+    private final int maxChainsPerRepositoryMethod;
+    private final int maxTotalChains;
+    private final Duration timeout;
+
+    /**
+     * @param maxDepth maximum number of callers above the repository method in a chain
+     * @param maxChainsPerRepositoryMethod maximum number of chains collected per repository method
+     * @param maxTotalChains maximum number of chains collected for the whole query
+     * @param timeout wall-clock budget for the whole query
+     */
+    public TraversalPolicy(int maxDepth, int maxChainsPerRepositoryMethod, int maxTotalChains, Duration timeout) {
+        this.maxDepth = Math.max(0, maxDepth);
+        this.maxChainsPerRepositoryMethod = Math.max(0, maxChainsPerRepositoryMethod);
+        this.maxTotalChains = Math.max(0, maxTotalChains);
+        this.timeout = timeout;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxChainsPerRepositoryMethod() {
+        return maxChainsPerRepositoryMethod;
+    }
+
+    public int getMaxTotalChains() {
+        return maxTotalChains;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the System.nanoTime() value at which a query started now must stop, or Long.MAX_VALUE.
+     */
+    long deadlineFromNow() {
+        return timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * Returns the deadline for one traversal answering the given number of queries at once, each
+     * with its own timeout, or Long.MAX_VALUE.
+     */
+    long deadlineFromNow(int queries) {
+        if (timeout == null) {
+            return Long.MAX_VALUE;
+        }
+        long nanos = timeout.toNanos();
+        return queries > 0 && nanos > (Long.MAX_VALUE - System.nanoTime()) / queries
+            ? Long.MAX_VALUE : System.nanoTime() + nanos * queries;
+    }
+
+    @Override
+    public String toString() {
+        return "TraversalPolicy{" +
+               "maxDepth=" + maxDepth +
+               ", maxChainsPerRepositoryMethod=" + maxChainsPerRepositoryMethod +
+               ", maxTotalChains=" + maxTotalChains +
+               ", timeout=" + timeout +
+               '}';
+    }
+}
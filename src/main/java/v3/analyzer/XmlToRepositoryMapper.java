@@ -4,135 +4,423 @@ import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.google.gson.Gson;
-import java.io.FileWriter;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import v3.indexer.CacheDirectory;
+import v3.indexer.CacheFile;
+import v3.indexer.FileManifest;
+import v3.indexer.SegmentLog;
+import v3.model.MethodKeyStrategy;
 import v3.model.TableRepositoryMapping;
 import v3.model.TableXmlMapping;
 import v3.model.MavenModule;
+import v3.parser.JavaDeclarationScanner;
 
 /**
  * Refactored XmlToRepositoryMapper to use already indexed MapperMethod objects from tableIndex and use JavaParser for method extraction.
+ *
+ * Tables are mapped on {@link #setThreads(int)} worker threads. Every DbCmd Java file is read once
+ * per run with the {@link JavaDeclarationScanner}, which only needs its package and method names;
+ * files the scanner cannot read with certainty are parsed through {@link #setCompilationUnits(Function)}.
+ * Pointing that at {@link v3.indexer.CalleeMethodIndexer#compile(Path)} shares the parsed files with
+ * the call indexer.
  */
 public class XmlToRepositoryMapper {
 
     private static final Logger logger = Logger.getLogger(XmlToRepositoryMapper.class.getName());
-    private final JavaParser javaParser = new JavaParser();
+    private final ThreadLocal<JavaParser> javaParser = ThreadLocal.withInitial(JavaParser::new);
     private static final String TABLE_REPO_MAPPING_FILE = "table_repo_mapping.json";
+    private static final String TABLE_REPO_MANIFEST_FILE = "table_repo_mapping.manifest.json";
+    private static final String TABLE_REPO_CHECKPOINT_LOG = "table_repo_mapping.checkpoint";
+    private static final int SEGMENT_TABLES = 1000;
     private final Gson gson = new Gson();
+    private CacheDirectory cacheDirectory = CacheDirectory.WORKING_DIRECTORY;
+    private Function<Path, CompilationUnit> compilationUnits = this::parse;
+    private int threads = 1;
+    private MethodKeyStrategy methodKeys = MethodKeyStrategy.NAME;
 
-    private String getFQCN(Path javaFile) {
+    /**
+     * Sets the directory the cache files are written to; by default the working directory.
+     */
+    public void setCacheDirectory(CacheDirectory cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets the number of threads tables are mapped on.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets where DbCmd Java files are parsed, e.g. a parse cache shared with other phases. The
+     * function must be thread-safe and return null for a file that cannot be parsed.
+     */
+    public void setCompilationUnits(Function<Path, CompilationUnit> compilationUnits) {
+        this.compilationUnits = compilationUnits;
+    }
+
+    /**
+     * Sets how repository methods are keyed; must match the call indexer's strategy. Keyed by
+     * signature, a statement maps to every overload of its DbCmd method.
+     */
+    public void setMethodKeyStrategy(MethodKeyStrategy methodKeys) {
+        this.methodKeys = methodKeys;
+    }
+
+    private CompilationUnit parse(Path javaFile) {
         try {
-            CompilationUnit cu = javaParser.parse(javaFile).getResult().orElse(null);
-            if (cu != null) {
-                String pkg = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
-                String className = javaFile.getFileName().toString().replaceFirst("\\.java$", "");
-                return pkg.isEmpty() ? className : pkg + "." + className;
-            }
+            return javaParser.get().parse(javaFile).getResult().orElse(null);
         } catch (Exception e) {
-            logger.log(Level.WARNING, "Error extracting FQCN from Java file: " + javaFile + ", " + e.getMessage());
+            logger.log(Level.WARNING, "Error parsing Java file with JavaParser: " + javaFile + ", " + e.getMessage());
+            return null;
         }
-        return javaFile.getFileName().toString().replaceFirst("\\.java$", "");
     }
 
     /**
      * For each table, map XMLs and repository classes/methods.
+     * A cached mapping is reused; only tables missing from it or affected by changed DbCmd files are re-mapped.
      * Returns a list of TableRepositoryMapping.
      */
     public List<TableRepositoryMapping> mapXmlToRepository(Map<String, List<TableXmlMapping>> tableIndex, List<MavenModule> modules) {
-        // If the mapping file exists, load and return it
-        java.io.File file = new java.io.File(TABLE_REPO_MAPPING_FILE);
-        if (file.exists()) {
-            try (java.io.FileReader reader = new java.io.FileReader(file)) {
-                TableRepositoryMapping[] arr = gson.fromJson(reader, TableRepositoryMapping[].class);
+        return mapXmlToRepository(tableIndex, modules, Set.of());
+    }
+
+    /**
+     * For each table, map XMLs and repository classes/methods.
+     * If a cached mapping exists, only the given changed tables, tables missing from the cache and
+     * tables whose DbCmd Java files changed since the last run are re-mapped.
+     *
+     * @param changedTables tables whose mapper methods changed, or null to rebuild every mapping
+     */
+    public List<TableRepositoryMapping> mapXmlToRepository(Map<String, List<TableXmlMapping>> tableIndex,
+                                                          List<MavenModule> modules, Set<String> changedTables) {
+        FileManifest manifest = new FileManifest(cacheDirectory.resolve(TABLE_REPO_MANIFEST_FILE));
+        boolean hasManifest = manifest.load() && !manifest.isEmpty();
+        Map<Path, Set<String>> dbCmdFileTables = collectDbCmdFiles(tableIndex);
+
+        // If a complete mapping file exists, load it and re-map only what changed
+        Path file = cacheDirectory.resolve(TABLE_REPO_MAPPING_FILE);
+        if (CacheFile.isComplete(file) && changedTables != null) {
+            try {
+                TableRepositoryMapping[] arr = CacheFile.readJson(file, gson, TableRepositoryMapping[].class);
                 if (arr != null) {
-                    return new ArrayList<>(java.util.Arrays.asList(arr));
+                    List<TableRepositoryMapping> loaded = new ArrayList<>(java.util.Arrays.asList(arr));
+                    FileManifest.Diff diff = manifest.scan(dbCmdFileTables.keySet());
+                    Set<String> affectedTables = new HashSet<>(changedTables);
+                    if (hasManifest) {
+                        for (Path dbCmdFile : diff.getFilesToParse()) {
+                            affectedTables.addAll(dbCmdFileTables.getOrDefault(dbCmdFile, Set.of()));
+                        }
+                        for (Path dbCmdFile : diff.getDeleted()) {
+                            affectedTables.addAll(dbCmdFileTables.getOrDefault(dbCmdFile, Set.of()));
+                        }
+                    }
+                    List<TableRepositoryMapping> patched = patchMappings(loaded, tableIndex, affectedTables);
+                    manifest.commit();
+                    new SegmentLog<MappedTable>(cacheDirectory.resolve(TABLE_REPO_CHECKPOINT_LOG), MappedTable.class).delete();
+                    return patched;
                 }
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Failed to load table-repository mapping from disk: " + e.getMessage());
             }
         }
+        // Full mapping, checkpointed to an append-only log so an interrupted run can resume
+        SegmentLog<MappedTable> checkpoints = new SegmentLog<>(cacheDirectory.resolve(TABLE_REPO_CHECKPOINT_LOG), MappedTable.class);
+        Map<String, MappedTable> resumed = new HashMap<>();
+        if (checkpoints.exists()) {
+            for (MappedTable mapped : checkpoints.load()) {
+                resumed.put(mapped.mapping.getTableName(), mapped);
+            }
+        }
+        List<MappedTable> checkpointed = new ArrayList<>(resumed.values());
+        List<MappedTable> segment = new ArrayList<>();
         List<TableRepositoryMapping> mappings = new ArrayList<>();
-        Map<String, Set<String>> dbCmdClassToMethods = new HashMap<>();
-        int batchSize = 1000;
-        int count = 0;
-        for (Map.Entry<String, List<TableXmlMapping>> entry : tableIndex.entrySet()) {
-            String tableName = entry.getKey();
-            List<TableXmlMapping> methods = entry.getValue();
-            Set<String> xmlFiles = new HashSet<>();
-            Set<String> repoClasses = new HashSet<>();
-            List<String> repoMethods = new ArrayList<>();
-            for (TableXmlMapping m : methods) {
-                xmlFiles.add(m.getMapperXmlPath());
-                Path xmlPath = Path.of(m.getMapperXmlPath());
-                String xmlFileName = xmlPath.getFileName().toString();
-                String baseName = xmlFileName.replaceFirst("\\.xml$", "");
-                Path parentDir = xmlPath.getParent() != null ? xmlPath.getParent().getParent() : null;
-                if (parentDir == null) {
-                    repoMethods.add("[N/A]-" + baseName);
+        Map<Path, DbCmdClass> dbCmdClasses = new ConcurrentHashMap<>();
+        int reused = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<TableRepositoryMapping>> futures = new ArrayList<>();
+            List<String> statementsKeys = new ArrayList<>();
+            for (Map.Entry<String, List<TableXmlMapping>> entry : tableIndex.entrySet()) {
+                String statementsKey = statementsKey(entry.getKey(), entry.getValue());
+                MappedTable mapped = resumed.get(entry.getKey());
+                if (mapped != null && mapped.statementsKey.equals(statementsKey)) {
+                    futures.add(CompletableFuture.completedFuture(mapped.mapping));
+                    statementsKeys.add(null);
+                    reused++;
                     continue;
                 }
-                Path dbCmdPath = parentDir.resolve(baseName + ".java");
-                String fqcn = getFQCN(dbCmdPath);
-                if (!Files.exists(dbCmdPath)) {
-                    repoMethods.add("[N/A]-" + fqcn);
+                futures.add(pool.submit(() -> mapTable(entry.getKey(), entry.getValue(), dbCmdClasses)));
+                statementsKeys.add(statementsKey);
+            }
+            // Collect in table order, checkpointing while the workers map the following tables
+            for (int i = 0; i < futures.size(); i++) {
+                TableRepositoryMapping mapping = await(futures.get(i));
+                mappings.add(mapping);
+                if (statementsKeys.get(i) == null) {
                     continue;
                 }
-                repoClasses.add(fqcn);
-                Set<String> repoClassMethods = dbCmdClassToMethods.computeIfAbsent(dbCmdPath.toString(), k -> parseJavaMethods(dbCmdPath));
-                boolean found = false;
-                for (String repoMethod : repoClassMethods) {
-                    if (repoMethod.equals(m.getStatementId())) {
-                        repoMethods.add(fqcn + "." + repoMethod);
-                        found = true;
-                        break;
+                segment.add(new MappedTable(statementsKeys.get(i), mapping));
+                if (segment.size() >= SEGMENT_TABLES && checkpoints.append(segment)) {
+                    checkpointed.addAll(segment);
+                    segment.clear();
+                    if (checkpoints.shouldCompact()) {
+                        checkpoints.compact(checkpointed);
                     }
                 }
-                if (!found) {
-                    repoMethods.add("[N/A]-" + fqcn + "." + m.getStatementId());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.log(Level.INFO, "Mapped " + (mappings.size() - reused) + " tables to " + dbCmdClasses.size() + " DbCmd files");
+        if (reused > 0) {
+            logger.log(Level.INFO, "Resumed " + reused + " table-repository mappings from " + TABLE_REPO_CHECKPOINT_LOG);
+        }
+        writeTableRepoMappingBatch(mappings);
+        manifest.scan(dbCmdFileTables.keySet());
+        manifest.commit();
+        checkpoints.delete();
+        return mappings;
+    }
+
+    /**
+     * A table mapping checkpointed during a full mapping run, with a key of the mapper statements
+     * it was derived from; it is only resumed if the table's statements are still the same.
+     */
+    private static final class MappedTable {
+        private final String statementsKey;
+        private final TableRepositoryMapping mapping;
+
+        MappedTable(String statementsKey, TableRepositoryMapping mapping) {
+            this.statementsKey = statementsKey;
+            this.mapping = mapping;
+        }
+    }
+
+    private static String statementsKey(String tableName, List<TableXmlMapping> methods) {
+        List<String> statements = new ArrayList<>();
+        for (TableXmlMapping m : methods) {
+            statements.add(m.getMapperXmlPath() + "#" + m.getStatementId() + "#" + m.getAccessMode(tableName));
+        }
+        java.util.Collections.sort(statements);
+        return statements.size() + ":" + Integer.toHexString(statements.hashCode());
+    }
+
+    /**
+     * Re-maps the affected tables and tables missing from the cache, drops tables that left the index
+     * and keeps every other cached mapping as is.
+     */
+    private List<TableRepositoryMapping> patchMappings(List<TableRepositoryMapping> loaded,
+                                                       Map<String, List<TableXmlMapping>> tableIndex,
+                                                       Set<String> affectedTables) {
+        Map<String, TableRepositoryMapping> byTable = new LinkedHashMap<>();
+        for (TableRepositoryMapping mapping : loaded) {
+            byTable.put(mapping.getTableName(), mapping);
+        }
+        byTable.keySet().retainAll(tableIndex.keySet());
+        Map<Path, DbCmdClass> dbCmdClasses = new ConcurrentHashMap<>();
+        Map<String, Future<TableRepositoryMapping>> remapping = new LinkedHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Map.Entry<String, List<TableXmlMapping>> entry : tableIndex.entrySet()) {
+                String tableName = entry.getKey();
+                if (affectedTables.contains(tableName) || !byTable.containsKey(tableName)) {
+                    remapping.put(tableName, pool.submit(() -> mapTable(tableName, entry.getValue(), dbCmdClasses)));
                 }
             }
-            mappings.add(new TableRepositoryMapping(
-                tableName,
-                new ArrayList<>(xmlFiles),
-                new ArrayList<>(repoClasses),
-                repoMethods
-            ));
-            count++;
-            if (count % batchSize == 0) {
-                writeTableRepoMappingBatch(mappings);
+            for (Map.Entry<String, Future<TableRepositoryMapping>> entry : remapping.entrySet()) {
+                byTable.put(entry.getKey(), await(entry.getValue()));
             }
+        } finally {
+            pool.shutdownNow();
+        }
+        int remapped = remapping.size();
+        List<TableRepositoryMapping> mappings = new ArrayList<>(byTable.values());
+        if (remapped > 0 || mappings.size() != loaded.size()) {
+            logger.log(Level.INFO, "Re-mapped " + remapped + " tables, kept " + (mappings.size() - remapped) + " cached mappings");
+            writeTableRepoMappingBatch(mappings);
         }
-        // Final write for any remaining mappings
-        writeTableRepoMappingBatch(mappings);
         return mappings;
     }
 
-    private Set<String> parseJavaMethods(Path javaFile) {
-        Set<String> methodNames = new HashSet<>();
+    /**
+     * Maps the DbCmd Java file expected next to each mapper XML to the tables its statements touch.
+     * Only files that currently exist are returned, so a DbCmd that appears or disappears shows up
+     * as added or deleted in the manifest.
+     */
+    private Map<Path, Set<String>> collectDbCmdFiles(Map<String, List<TableXmlMapping>> tableIndex) {
+        Map<Path, Set<String>> dbCmdFileTables = new HashMap<>();
+        for (Map.Entry<String, List<TableXmlMapping>> entry : tableIndex.entrySet()) {
+            for (TableXmlMapping m : entry.getValue()) {
+                Path dbCmdPath = dbCmdPathFor(Path.of(m.getMapperXmlPath()));
+                if (dbCmdPath != null) {
+                    dbCmdFileTables.computeIfAbsent(dbCmdPath, k -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+        }
+        dbCmdFileTables.keySet().removeIf(p -> !Files.exists(p));
+        return dbCmdFileTables;
+    }
+
+    private Path dbCmdPathFor(Path xmlPath) {
+        String baseName = xmlPath.getFileName().toString().replaceFirst("\\.xml$", "");
+        Path parentDir = xmlPath.getParent() != null ? xmlPath.getParent().getParent() : null;
+        return parentDir != null ? parentDir.resolve(baseName + ".java") : null;
+    }
+
+    private static <T> T await(Future<T> future) {
         try {
-            CompilationUnit cu = javaParser.parse(javaFile).getResult().orElse(null);
-            if (cu != null) {
-                cu.findAll(MethodDeclaration.class).forEach(md -> methodNames.add(md.getNameAsString()));
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Table-repository mapping was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                : new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+
+    private TableRepositoryMapping mapTable(String tableName, List<TableXmlMapping> methods,
+                                            Map<Path, DbCmdClass> dbCmdClasses) {
+        Set<String> xmlFiles = new HashSet<>();
+        Set<String> repoClasses = new HashSet<>();
+        List<String> repoMethods = new ArrayList<>();
+        Map<String, Integer> accessModes = new HashMap<>();
+        for (TableXmlMapping m : methods) {
+            xmlFiles.add(m.getMapperXmlPath());
+            for (String repoMethod : repositoryMethodsFor(m, repoClasses, dbCmdClasses)) {
+                repoMethods.add(repoMethod);
+                accessModes.merge(repoMethod, m.getAccessMode(tableName), (a, b) -> a | b);
             }
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error parsing Java file with JavaParser: " + javaFile + ", " + e.getMessage());
         }
-        return methodNames;
+        return new TableRepositoryMapping(
+            tableName,
+            new ArrayList<>(xmlFiles),
+            new ArrayList<>(repoClasses),
+            repoMethods,
+            accessModes
+        );
+    }
+
+    /**
+     * Resolves the DbCmd methods implementing a mapper statement, keyed like the call indexer keys
+     * them: one key per overload, or an "[N/A]-" placeholder if the DbCmd file or method does not
+     * exist. The DbCmd class is added to repoClasses when found.
+     */
+    private List<String> repositoryMethodsFor(TableXmlMapping m, Set<String> repoClasses,
+                                              Map<Path, DbCmdClass> dbCmdClasses) {
+        Path xmlPath = Path.of(m.getMapperXmlPath());
+        String xmlFileName = xmlPath.getFileName().toString();
+        String baseName = xmlFileName.replaceFirst("\\.xml$", "");
+        Path dbCmdPath = dbCmdPathFor(xmlPath);
+        if (dbCmdPath == null) {
+            return List.of("[N/A]-" + baseName);
+        }
+        DbCmdClass dbCmdClass = dbCmdClasses.computeIfAbsent(dbCmdPath, this::readDbCmdClass);
+        if (dbCmdClass.methods == null) {
+            return List.of("[N/A]-" + dbCmdClass.fqcn);
+        }
+        repoClasses.add(dbCmdClass.fqcn);
+        String method = dbCmdClass.fqcn + "." + m.getStatementId();
+        List<List<String>> overloads = dbCmdClass.methods.get(m.getStatementId());
+        if (overloads == null) {
+            return List.of("[N/A]-" + method);
+        }
+        if (methodKeys == MethodKeyStrategy.NAME) {
+            return List.of(method);
+        }
+        List<String> keys = new ArrayList<>(overloads.size());
+        for (List<String> parameterTypes : overloads) {
+            String key = methodKeys.key(method, parameterTypes);
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * FQCN and methods of a DbCmd Java file, read from one parse.
+     */
+    private static final class DbCmdClass {
+        private final String fqcn;
+        // Parameter types as written of every overload by method name; null if the file does not exist
+        private final Map<String, List<List<String>>> methods;
+
+        DbCmdClass(String fqcn, Map<String, List<List<String>>> methods) {
+            this.fqcn = fqcn;
+            this.methods = methods;
+        }
+    }
+
+    private DbCmdClass readDbCmdClass(Path javaFile) {
+        String className = javaFile.getFileName().toString().replaceFirst("\\.java$", "");
+        if (!Files.exists(javaFile)) {
+            return new DbCmdClass(className, null);
+        }
+        try {
+            JavaDeclarationScanner.Declarations declarations = JavaDeclarationScanner.scan(javaFile);
+            if (declarations != null) {
+                String pkg = declarations.getPackageName();
+                Map<String, List<List<String>>> methods = new HashMap<>();
+                declarations.getMethods().forEach(method -> methods.computeIfAbsent(method.getName(), k -> new ArrayList<>())
+                    .add(method.getParameterTypes()));
+                return new DbCmdClass(pkg.isEmpty() ? className : pkg + "." + className, methods);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error reading Java file: " + javaFile + ", " + e.getMessage());
+        }
+        CompilationUnit cu = compilationUnits.apply(javaFile);
+        if (cu == null) {
+            return new DbCmdClass(className, Map.of());
+        }
+        String pkg = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+        Map<String, List<List<String>>> methods = new HashMap<>();
+        cu.findAll(MethodDeclaration.class).forEach(md -> {
+            List<String> parameterTypes = new ArrayList<>();
+            md.getParameters().forEach(p -> parameterTypes.add(p.getType().asString() + (p.isVarArgs() ? "..." : "")));
+            methods.computeIfAbsent(md.getNameAsString(), k -> new ArrayList<>()).add(parameterTypes);
+        });
+        return new DbCmdClass(pkg.isEmpty() ? className : pkg + "." + className, methods);
+    }
+
+    /**
+     * Returns whether a repository method produced by this mapper implements the given statement,
+     * i.e. it belongs to the DbCmd class named after the statement's mapper XML and is named after
+     * the statement id, whatever its signature. Placeholders for missing DbCmd methods match as well.
+     */
+    public static boolean isRepositoryMethodFor(String repositoryMethod, TableXmlMapping statement) {
+        String baseName = Path.of(statement.getMapperXmlPath()).getFileName().toString().replaceFirst("\\.xml$", "");
+        String suffix = baseName + "." + statement.getStatementId();
+        String method = MethodKeyStrategy.methodOf(
+            repositoryMethod.startsWith("[N/A]-") ? repositoryMethod.substring("[N/A]-".length()) : repositoryMethod);
+        return method.equals(suffix) || method.endsWith("." + suffix);
     }
 
     private void writeTableRepoMappingBatch(List<TableRepositoryMapping> repoMappings) {
-        try (FileWriter writer = new FileWriter(TABLE_REPO_MAPPING_FILE)) {
-            gson.toJson(repoMappings, writer);
+        try {
+            CacheFile.writeJson(cacheDirectory.resolve(TABLE_REPO_MAPPING_FILE), gson, repoMappings);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to write table-repository mapping to disk: " + e.getMessage());
         }
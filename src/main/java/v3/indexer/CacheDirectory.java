@@ -0,0 +1,235 @@
+package v3.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import v3.model.MavenModule;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Directory holding the cache files of one indexed workspace.
+ *
+ * Every workspace gets its own subdirectory of a shared cache root, named after a fingerprint of
+ * the monolith root path, its module list, the options the indexes are built with and
+ * {@link #CACHE_VERSION}, so several repositories, or
+ * checkouts of several branches, can be analyzed from the same working directory without reusing
+ * each other's indexes. A {@code workspace.json} descriptor in the subdirectory records what was
+ * fingerprinted; its modification time is the workspace's last use, which {@link #cleanup(Path, long)}
+ * evicts the least recently used workspaces by when the cache root outgrows its disk budget.
+ */
+public final class CacheDirectory {
+    private static final Logger logger = Logger.getLogger(CacheDirectory.class.getName());
+    static {
+        logger.setLevel(Level.SEVERE); // Hide info/debug messages by default
+    }
+
+    /**
+     * Version of the cache formats; changing it gives every workspace a new cache directory.
+     */
+    public static final String CACHE_VERSION = "3.0-1";
+    public static final String DEFAULT_ROOT = ".impact_cache";
+    private static final String DESCRIPTOR_FILE = "workspace.json";
+
+    /**
+     * The working directory itself, where caches used to be written; used when no workspace was opened.
+     */
+    public static final CacheDirectory WORKING_DIRECTORY = new CacheDirectory(Path.of(""));
+
+    private final Path directory;
+
+    private CacheDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Describes a workspace directory, as written to its descriptor.
+     */
+    public static final class Workspace {
+        private String fingerprint;
+        private String monolithRoot;
+        private List<String> modules;
+        private List<String> options;
+        private String version;
+        private transient Path directory;
+        private transient long lastUsed;
+        private transient long sizeBytes;
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getMonolithRoot() {
+            return monolithRoot;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+    }
+
+    /**
+     * Opens, creating it if needed, the cache directory of a workspace and records its use.
+     *
+     * @param cacheRoot directory holding the workspace directories
+     * @param monolithRoot root path of the Java monolith
+     * @param modules modules that are indexed
+     */
+    public static CacheDirectory open(Path cacheRoot, Path monolithRoot, List<MavenModule> modules) throws IOException {
+        return open(cacheRoot, monolithRoot, modules, List.of());
+    }
+
+    /**
+     * Opens, creating it if needed, the cache directory of a workspace indexed with non-default
+     * options, e.g. "methodKeys=ARITY", which change what the cache files hold.
+     *
+     * @param options options the indexes are built with; none gives the default directory
+     */
+    public static CacheDirectory open(Path cacheRoot, Path monolithRoot, List<MavenModule> modules,
+                                      List<String> options) throws IOException {
+        Workspace workspace = new Workspace();
+        workspace.monolithRoot = monolithRoot.toAbsolutePath().normalize().toString();
+        workspace.modules = new ArrayList<>();
+        for (MavenModule module : modules) {
+            workspace.modules.add(module.getModuleName() + "=" + module.getRootPath().toAbsolutePath().normalize());
+        }
+        Collections.sort(workspace.modules);
+        workspace.options = options.isEmpty() ? null : new ArrayList<>(options);
+        workspace.version = CACHE_VERSION;
+        workspace.fingerprint = fingerprint(workspace);
+
+        Path directory = Files.createDirectories(cacheRoot.resolve(workspace.fingerprint));
+        Path descriptor = directory.resolve(DESCRIPTOR_FILE);
+        if (Files.exists(descriptor)) {
+            Files.setLastModifiedTime(descriptor, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            CacheFile.writeJson(descriptor, new GsonBuilder().setPrettyPrinting().create(), workspace);
+        }
+        logger.log(Level.INFO, "Using cache directory " + directory + " for " + workspace.monolithRoot);
+        return new CacheDirectory(directory);
+    }
+
+    /**
+     * Returns the path of a cache file in this directory.
+     */
+    public Path resolve(String fileName) {
+        return directory.resolve(fileName);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Lists the workspace directories under the cache root, least recently used first.
+     */
+    public static List<Workspace> list(Path cacheRoot) throws IOException {
+        List<Workspace> workspaces = new ArrayList<>();
+        if (!Files.isDirectory(cacheRoot)) {
+            return workspaces;
+        }
+        Gson gson = new Gson();
+        try (Stream<Path> directories = Files.list(cacheRoot)) {
+            for (Path directory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                Path descriptor = directory.resolve(DESCRIPTOR_FILE);
+                Workspace workspace;
+                try {
+                    workspace = CacheFile.readJson(descriptor, gson, Workspace.class);
+                } catch (IOException e) {
+                    workspace = null;
+                }
+                if (workspace == null) {
+                    // Interrupted before the descriptor was written: oldest possible, evicted first
+                    workspace = new Workspace();
+                    workspace.fingerprint = directory.getFileName().toString();
+                } else {
+                    workspace.lastUsed = Files.getLastModifiedTime(descriptor).toMillis();
+                }
+                workspace.directory = directory;
+                workspace.sizeBytes = sizeOf(directory);
+                workspaces.add(workspace);
+            }
+        }
+        workspaces.sort(Comparator.comparingLong(Workspace::getLastUsed));
+        return workspaces;
+    }
+
+    /**
+     * Deletes the least recently used workspace directories until the cache root uses at most the
+     * given number of bytes.
+     *
+     * @return the deleted workspaces
+     */
+    public static List<Workspace> cleanup(Path cacheRoot, long budgetBytes) throws IOException {
+        List<Workspace> workspaces = list(cacheRoot);
+        long total = 0;
+        for (Workspace workspace : workspaces) {
+            total += workspace.sizeBytes;
+        }
+        List<Workspace> deleted = new ArrayList<>();
+        for (Workspace workspace : workspaces) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            deleteRecursively(workspace.directory);
+            total -= workspace.sizeBytes;
+            deleted.add(workspace);
+            logger.log(Level.INFO, "Evicted cache directory " + workspace.directory + " (" + workspace.sizeBytes + " bytes)");
+        }
+        return deleted;
+    }
+
+    private static String fingerprint(Workspace workspace) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(workspace.version.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(workspace.monolithRoot.getBytes(StandardCharsets.UTF_8));
+        for (String module : workspace.modules) {
+            digest.update((byte) 0);
+            digest.update(module.getBytes(StandardCharsets.UTF_8));
+        }
+        if (workspace.options != null) {
+            for (String option : workspace.options) {
+                digest.update((byte) 1);
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
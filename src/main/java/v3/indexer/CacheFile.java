@@ -0,0 +1,218 @@
+package v3.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Crash-safe persistence of the cache files in a workspace's {@link CacheDirectory}.
+ *
+ * A cache file is written to a temporary file in the same directory, forced to disk and renamed
+ * over the old one, so a reader never sees a half-written file. Once it is in place, a
+ * {@code <file>.complete} marker with its length and CRC-32 is written the same way; a cache file
+ * without a matching marker was not completely written and must be rebuilt.
+ *
+ * {@link #isComplete(Path)} only compares the length, which is enough for a file that is
+ * memory-mapped or decoded with its own format checks. {@link #read(Path, Body)} also verifies the
+ * checksum while the file is streamed, so a reader can reject a damaged cache before using any of it.
+ * Files that are appended to over time (the incremental JSONL index) are {@link #invalidate(Path)}d
+ * before the first append and {@link #markComplete(Path)}ed after the last one.
+ */
+public final class CacheFile {
+    private static final String MARKER_SUFFIX = ".complete";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Gson gson = new Gson();
+
+    private CacheFile() {
+    }
+
+    /**
+     * Writes the content of a cache file.
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads the content of a cache file.
+     */
+    public interface Body<T> {
+        T readFrom(InputStream in) throws IOException;
+    }
+
+    /**
+     * Atomically replaces the file with the given content and marks it complete.
+     */
+    public static void write(Path file, Content content) throws IOException {
+        Path temp = sibling(file, TEMP_SUFFIX);
+        CRC32 crc = new CRC32();
+        long length;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(new CheckedOutputStream(
+                Channels.newOutputStream(channel), crc), 1 << 16);
+            content.writeTo(out);
+            out.flush();
+            length = channel.size();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        // Without the marker the old file must not be trusted for the new content
+        invalidate(file);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeMarker(file, length, crc.getValue());
+    }
+
+    /**
+     * Atomically replaces the file with the JSON form of the given value.
+     */
+    public static void writeJson(Path file, Gson gson, Object value) throws IOException {
+        write(file, out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            gson.toJson(value, writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Reads a complete cache file, verifying its length and checksum after the body has read it.
+     *
+     * @throws IOException if the file is missing, was not completely written or is damaged
+     */
+    public static <T> T read(Path file, Body<T> body) throws IOException {
+        Marker marker = readMarker(file);
+        if (marker == null || !Files.exists(file) || Files.size(file) != marker.length) {
+            throw new IOException("Cache file " + file + " was not completely written");
+        }
+        try (CheckedInputStream in = new CheckedInputStream(Files.newInputStream(file), new CRC32())) {
+            T value = body.readFrom(new BufferedInputStream(in, 1 << 16));
+            in.skip(Long.MAX_VALUE); // Checksum the bytes the body did not need
+            if (in.getChecksum().getValue() != marker.crc32) {
+                throw new IOException("Checksum mismatch in cache file " + file);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            // Gson's JsonSyntaxException and friends: a damaged file is an unreadable cache
+            throw new IOException("Corrupted cache file " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Reads a complete JSON cache file.
+     *
+     * @return the value, which may be null for a file containing "null"
+     * @throws IOException if the file is missing, was not completely written or is damaged
+     */
+    public static <T> T readJson(Path file, Gson gson, Type type) throws IOException {
+        return read(file, in -> {
+            Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+            return gson.fromJson(reader, type);
+        });
+    }
+
+    /**
+     * Returns whether the file exists and has the length recorded by its completeness marker.
+     * Does not read the file.
+     */
+    public static boolean isComplete(Path file) {
+        try {
+            Marker marker = readMarker(file);
+            return marker != null && Files.exists(file) && Files.size(file) == marker.length;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes the completeness marker before a file is modified in place.
+     */
+    public static void invalidate(Path file) throws IOException {
+        Files.deleteIfExists(sibling(file, MARKER_SUFFIX));
+    }
+
+    /**
+     * Marks a file that was written in place, e.g. by appending, as complete, after forcing it to disk.
+     */
+    public static void markComplete(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             InputStream in = Channels.newInputStream(channel)) {
+            channel.force(true);
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+                length += read;
+            }
+        }
+        writeMarker(file, length, crc.getValue());
+    }
+
+    /**
+     * Deletes the file and its marker.
+     */
+    public static void delete(Path file) throws IOException {
+        invalidate(file);
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(sibling(file, TEMP_SUFFIX));
+    }
+
+    private static final class Marker {
+        private long length;
+        private long crc32;
+    }
+
+    private static void writeMarker(Path file, long length, long crc32) throws IOException {
+        JsonObject marker = new JsonObject();
+        marker.addProperty("length", length);
+        marker.addProperty("crc32", crc32);
+        Path target = sibling(file, MARKER_SUFFIX);
+        Path temp = sibling(target, TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(StandardCharsets.UTF_8.encode(marker.toString()));
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Marker readMarker(Path file) throws IOException {
+        Path markerFile = sibling(file, MARKER_SUFFIX);
+        if (!Files.exists(markerFile)) {
+            return null;
+        }
+        try {
+            return gson.fromJson(JsonParser.parseString(Files.readString(markerFile)), Marker.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+}
@@ -1,5 +1,7 @@
 package v3.indexer;
 
+import java.util.Objects;
+
 public class CallReference {
     private String filePath;
     private int line;
@@ -23,6 +25,21 @@ public class CallReference {
         return sourceMethod;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CallReference that = (CallReference) o;
+        return line == that.line &&
+               Objects.equals(filePath, that.filePath) &&
+               Objects.equals(sourceMethod, that.sourceMethod);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, line, sourceMethod);
+    }
+
     @Override
     public String toString() {
         return filePath + ":" + line + ":" + sourceMethod;
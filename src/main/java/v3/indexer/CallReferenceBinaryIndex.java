@@ -0,0 +1,159 @@
+package v3.indexer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of the call reference index.
+ *
+ * Layout (all counts and ids are unsigned LEB128 varints, lines are zig-zag encoded):
+ * <pre>
+ *   int    magic "ICRB"
+ *   int    format version
+ *   varint string count, then per string: varint byte length + UTF-8 bytes
+ *   varint callee count, then per callee:
+ *          varint calleeId, varint reference count,
+ *          per reference: varint fileId, varint line, varint sourceMethodId
+ * </pre>
+ * Every file path, callee and source method is stored once in the string dictionary, so a
+ * reference costs a handful of bytes instead of a JSON object repeating all three strings.
+ * Loading memory-maps the file and decodes it in a single pass; the resulting
+ * {@link CallReference}s share the dictionary's string instances.
+ */
+public final class CallReferenceBinaryIndex {
+
+    private static final int MAGIC = 0x49435242; // "ICRB"
+    private static final int VERSION = 1;
+
+    private CallReferenceBinaryIndex() {
+    }
+
+    /**
+     * Writes the given index to disk, atomically replacing any existing file; see {@link CacheFile}.
+     */
+    public static void write(Map<String, List<CallReference>> index, Path file) throws IOException {
+        Map<String, Integer> ids = new LinkedHashMap<>();
+        for (Map.Entry<String, List<CallReference>> entry : index.entrySet()) {
+            intern(ids, entry.getKey());
+            for (CallReference ref : entry.getValue()) {
+                intern(ids, ref.getFilePath());
+                intern(ids, ref.getSourceMethod());
+            }
+        }
+
+        CacheFile.write(file, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarInt(out, ids.size());
+            for (String s : ids.keySet()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, bytes.length);
+                out.write(bytes);
+            }
+            writeVarInt(out, index.size());
+            for (Map.Entry<String, List<CallReference>> entry : index.entrySet()) {
+                writeVarInt(out, ids.get(entry.getKey()));
+                writeVarInt(out, entry.getValue().size());
+                for (CallReference ref : entry.getValue()) {
+                    writeVarInt(out, ids.get(ref.getFilePath()));
+                    writeVarInt(out, (ref.getLine() << 1) ^ (ref.getLine() >> 31));
+                    writeVarInt(out, ids.get(ref.getSourceMethod()));
+                }
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Memory-maps and decodes an index written by {@link #write(Map, Path)}.
+     *
+     * @throws IOException if the file cannot be read or is not a supported index file
+     */
+    public static Map<String, List<CallReference>> load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Binary index too large to map: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decode(buffer, file);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends: treat a truncated or garbled file as unreadable
+            throw new IOException("Corrupted binary index " + file + ": " + e, e);
+        }
+    }
+
+    private static Map<String, List<CallReference>> decode(ByteBuffer in, Path file) throws IOException {
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            throw new IOException("Not a binary call reference index: " + file);
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary index version " + version + " in " + file);
+        }
+
+        String[] strings = new String[readVarInt(in)];
+        byte[] scratch = new byte[256];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readVarInt(in);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            in.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int calleeCount = readVarInt(in);
+        Map<String, List<CallReference>> index = new HashMap<>(Math.max(16, (int) (calleeCount / 0.75f) + 1));
+        for (int c = 0; c < calleeCount; c++) {
+            String callee = strings[readVarInt(in)];
+            int refCount = readVarInt(in);
+            List<CallReference> refs = new ArrayList<>(refCount);
+            for (int r = 0; r < refCount; r++) {
+                String filePath = strings[readVarInt(in)];
+                int zigzag = readVarInt(in);
+                int line = (zigzag >>> 1) ^ -(zigzag & 1);
+                String sourceMethod = strings[readVarInt(in)];
+                refs.add(new CallReference(filePath, line, sourceMethod));
+            }
+            index.put(callee, refs);
+        }
+        return index;
+    }
+
+    private static void intern(Map<String, Integer> ids, String s) {
+        ids.putIfAbsent(s, ids.size());
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -1,24 +1,26 @@
 package v3.indexer;
 
 import v3.model.MavenModule;
+import v3.model.MethodKeyStrategy;
 import v3.model.ServiceMethod;
 import v3.model.TableRepositoryMapping;
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.google.gson.Gson;
-import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 import com.github.javaparser.ast.expr.Expression;
+import v3.parser.JavaDeclarationScanner;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,52 +32,377 @@ public class CalleeMethodIndexer {
     private static final String REPO_METHOD_REFERENCES_FILE = "repo_method_references.json";
     private static final String CALL_EXPRESSION_CACHE_FILE = "call_expression_cache.json";
     private static final String CALL_EXPRESSION_CACHE_INCREMENTAL_FILE = "call_expression_cache_incremental.jsonl";
+    private static final String CALL_EXPRESSION_CACHE_BINARY_FILE = "call_expression_cache.bin";
+    private static final String CALL_EXPRESSION_MANIFEST_FILE = "call_expression_cache.manifest.json";
+    private static final String CALL_EXPRESSION_DECLARATIONS_FILE = "call_expression_cache.declarations.json";
+    private static final String NULL_ARGUMENT = "null";
+    private static final Map<String, String> BOXED_TYPES = Map.of(
+        "int", "Integer", "long", "Long", "boolean", "Boolean", "char", "Character",
+        "double", "Double", "float", "Float", "short", "Short", "byte", "Byte");
+    private static final int PARALLEL_SPLIT_THRESHOLD = 64;
+    private static final int PARSED_FILE_CACHE_SIZE = 2000;
     private final Gson gson = new Gson();
-    private final JavaParser javaParser = new JavaParser();
-    private final Map<Path, CompilationUnit> parsedFileCache = new HashMap<>();
+    private final ThreadLocal<JavaParser> workerParser = ThreadLocal.withInitial(this::createParser);
+    private final CompilationUnitCache parsedFileCache;
     private final Map<String, List<CallReference>> callExpressionCache = new HashMap<>();
     private static final Set<String> EXCLUDED_METHODS = Set.of("toString", "hashCode", "equals", "wait", "notify", "notifyAll", "getClass");
-    private final CombinedTypeSolver typeSolver;
-    private final JavaSymbolSolver symbolSolver;
+    private final TypeResolver typeResolver = new TypeResolver();
     private int incrementalWriteCounter = 0;
     private Map<String, List<CallReference>> callReferenceTree = new HashMap<>();
+    private int threads = 1;
+    private CacheDirectory cacheDirectory = CacheDirectory.WORKING_DIRECTORY;
+    private MethodKeyStrategy methodKeys = MethodKeyStrategy.NAME;
+    // Declared overloads by class FQCN and method name, for keying calls by arity or parameter types
+    private Map<String, Map<String, List<DeclaredMethod>>> declaredMethods = Map.of();
 
     public CalleeMethodIndexer() {
-        this.typeSolver = new CombinedTypeSolver();
-        this.typeSolver.add(new ReflectionTypeSolver());
-        // Add your project source root for full type resolution
-        this.typeSolver.add(new JavaParserTypeSolver(new java.io.File("src/main/java")));
-        this.symbolSolver = new JavaSymbolSolver(typeSolver);
-        com.github.javaparser.StaticJavaParser.getConfiguration().setSymbolResolver(symbolSolver);
+        this(new CompilationUnitCache(PARSED_FILE_CACHE_SIZE, true));
     }
 
-    private CompilationUnit compile(Path javaFile) {
-        if(parsedFileCache.containsKey(javaFile)) {
-            return  parsedFileCache.get(javaFile);
+    /**
+     * @param parsedFileCache cache of parsed Java files, which may be shared with other phases
+     *                        that parse through {@link #compile(Path)}
+     */
+    public CalleeMethodIndexer(CompilationUnitCache parsedFileCache) {
+        this.parsedFileCache = parsedFileCache;
+    }
+
+    /**
+     * Sets the number of worker threads used to build the call reference index.
+     * A value of 1 (the default) keeps the original single-threaded indexing.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Creates a parser for one indexing worker; JavaParser is not thread-safe. Types are resolved
+     * by the shared {@link TypeResolver}, not by a symbol solver attached to the parser.
+     */
+    private JavaParser createParser() {
+        return new JavaParser(new ParserConfiguration());
+    }
+
+    /**
+     * Returns the parsed Java file from the parsed file cache, parsing it with this thread's parser
+     * if it is not cached. Safe to call from several threads.
+     *
+     * @return the compilation unit, or null if the file cannot be parsed
+     */
+    public CompilationUnit compile(Path javaFile) {
+        return parsedFileCache.getOrParse(javaFile, file -> parse(workerParser.get(), file));
+    }
+
+    public CompilationUnitCache getParsedFileCache() {
+        return parsedFileCache;
+    }
+
+    /**
+     * Returns the resolver of field, parameter and local variable types, with its lookup statistics.
+     */
+    public TypeResolver getTypeResolver() {
+        return typeResolver;
+    }
+
+    /**
+     * Sets the directory the cache files are written to; by default the working directory.
+     */
+    public void setCacheDirectory(CacheDirectory cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets how callers and callees are keyed; by default by class and method name. A cached index
+     * built with another strategy is rebuilt.
+     */
+    public void setMethodKeyStrategy(MethodKeyStrategy methodKeys) {
+        this.methodKeys = methodKeys;
+    }
+
+    public Map<String, List<CallReference>> findReferences(List<TableRepositoryMapping> repoMappings, List<MavenModule> filteredModules) {
+        var allJavaFiles = listAllJavaFiles(filteredModules);
+        typeResolver.registerSourceFiles(filteredModules, allJavaFiles);
+        // Declarations are only collected when call references will be indexed
+        String declarationsHash = null;
+        FileManifest manifest = new FileManifest(cacheDirectory.resolve(CALL_EXPRESSION_MANIFEST_FILE));
+        boolean hasManifest = manifest.load() && !manifest.isEmpty();
+        if (loadIndex()) {
+            FileManifest.Diff diff = manifest.scan(allJavaFiles);
+            String indexedHash = readDeclarationsHash();
+            boolean patch = hasManifest && !diff.isEmpty();
+            if (patch) {
+                declarationsHash = indexDeclarations(allJavaFiles);
+            }
+            if (!isKeyedBy(indexedHash, methodKeys)) {
+                logger.log(Level.INFO, "Call references were not keyed by " + methodKeys + ", re-indexing all call references.");
+                callExpressionCache.clear();
+            } else if (patch && !declarationsHash.equals(indexedHash)) {
+                // Calls in unchanged files may now be keyed to other overloads
+                logger.log(Level.INFO, "Method declarations changed since last index, re-indexing all call references.");
+                callExpressionCache.clear();
+            } else {
+                if (!hasManifest) {
+                    // Cache predates the manifest: trust it and start tracking changes from now on
+                    logger.log(Level.INFO, "No manifest for " + CALL_EXPRESSION_CACHE_INCREMENTAL_FILE + ", recording current file state.");
+                } else if (!diff.isEmpty()) {
+                    logger.log(Level.INFO, "Java sources changed since last index (" + diff + "), patching call references.");
+                    applyChanges(diff);
+                    writeCallExpressionCacheBinary();
+                }
+                if (!Files.exists(cacheDirectory.resolve(CALL_EXPRESSION_CACHE_BINARY_FILE))) {
+                    writeCallExpressionCacheBinary();
+                }
+                manifest.commit();
+                return callExpressionCache;
+            }
+        }
+        if (declarationsHash == null) {
+            declarationsHash = indexDeclarations(allJavaFiles);
+        }
+        resetIncrementalCache();
+        indexFiles(allJavaFiles);
+        markIncrementalCacheComplete();
+        logger.log(Level.INFO, "Parsed file cache: " + parsedFileCache);
+        logger.log(Level.INFO, "Type resolution: " + typeResolver);
+        writeCallExpressionCacheBinary();
+        writeDeclarationsHash(declarationsHash);
+        manifest.scan(allJavaFiles);
+        manifest.commit();
+        return callExpressionCache;
+    }
+
+    /**
+     * A declared method: the simple names of its erased parameter types, see
+     * {@link MethodKeyStrategy#simpleTypeName(String)}.
+     */
+    private static final class DeclaredMethod {
+        private final List<String> parameterTypes;
+        private final boolean varArgs;
+
+        DeclaredMethod(List<String> writtenTypes) {
+            this.parameterTypes = new ArrayList<>(writtenTypes.size());
+            for (String type : writtenTypes) {
+                parameterTypes.add(MethodKeyStrategy.simpleTypeName(type));
+            }
+            this.varArgs = !writtenTypes.isEmpty() && writtenTypes.get(writtenTypes.size() - 1).endsWith("...");
+        }
+
+        boolean accepts(int argumentCount) {
+            return argumentCount == parameterTypes.size() || varArgs && argumentCount >= parameterTypes.size() - 1;
+        }
+
+        /**
+         * Returns whether the arguments whose types are known could be passed to this method.
+         */
+        boolean acceptsTypes(List<String> argumentTypes) {
+            for (int i = 0; i < argumentTypes.size(); i++) {
+                String argument = argumentTypes.get(i);
+                if (argument == null) {
+                    continue;
+                }
+                int last = parameterTypes.size() - 1;
+                String parameter = parameterTypes.get(Math.min(i, last));
+                boolean compatible = isCompatible(parameter, argument);
+                if (!compatible && varArgs && i >= last) {
+                    compatible = isCompatible(parameter.substring(0, parameter.length() - 2), argument);
+                }
+                if (!compatible) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isCompatible(String parameter, String argument) {
+            if (argument.equals(NULL_ARGUMENT)) {
+                return !BOXED_TYPES.containsKey(parameter);
+            }
+            return parameter.equals(argument) || argument.equals(BOXED_TYPES.get(parameter))
+                || parameter.equals(BOXED_TYPES.get(argument));
+        }
+    }
+
+    /**
+     * Collects the declared overloads of every method with the declaration scanner, parsing only the
+     * files it hands back. Nothing is collected when methods are keyed by name.
+     *
+     * @return the method key strategy and a hash of all declarations, to detect strategy and
+     *         signature changes between runs
+     */
+    private String indexDeclarations(List<Path> javaFiles) {
+        declaredMethods = new HashMap<>();
+        if (methodKeys == MethodKeyStrategy.NAME) {
+            return methodKeys.name();
+        }
+        for (Path javaFile : javaFiles) {
+            JavaDeclarationScanner.Declarations declarations = null;
+            try {
+                declarations = JavaDeclarationScanner.scan(javaFile);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to read " + javaFile + ": " + e.getMessage());
+                continue;
+            }
+            if (declarations != null) {
+                String prefix = declarations.getPackageName().isEmpty() ? "" : declarations.getPackageName() + ".";
+                for (JavaDeclarationScanner.MethodSignature method : declarations.getMethods()) {
+                    if (method.getDeclaringType() != null) {
+                        declareMethod(prefix + method.getDeclaringType(), method.getName(), method.getParameterTypes());
+                    }
+                }
+                continue;
+            }
+            CompilationUnit cu = compile(javaFile);
+            if (cu == null) {
+                continue;
+            }
+            TypeResolver.Scope scope = typeResolver.scopeOf(cu);
+            String prefix = cu.getPackageDeclaration().map(pd -> pd.getNameAsString() + ".").orElse("");
+            for (MethodDeclaration methodDecl : cu.findAll(MethodDeclaration.class)) {
+                var typeDecl = methodDecl.getParentNode()
+                    .filter(parent -> parent instanceof com.github.javaparser.ast.body.TypeDeclaration)
+                    .map(parent -> (com.github.javaparser.ast.body.TypeDeclaration<?>) parent);
+                if (typeDecl.isEmpty()) {
+                    continue; // Anonymous class or enum constant body
+                }
+                String typeName = typeDecl.get().getNameAsString();
+                String classFQCN = scope.declaredType(typeName) != null ? scope.declaredType(typeName) : prefix + typeName;
+                declareMethod(classFQCN, methodDecl.getNameAsString(), parameterTypes(methodDecl));
+            }
+        }
+        List<String> signatures = new ArrayList<>();
+        declaredMethods.forEach((classFQCN, methods) -> methods.forEach((name, overloads) -> {
+            for (DeclaredMethod overload : overloads) {
+                signatures.add(MethodKeyStrategy.PARAMETER_TYPES.key(classFQCN + "." + name, overload.parameterTypes));
+            }
+        }));
+        Collections.sort(signatures);
+        logger.log(Level.INFO, "Indexed " + signatures.size() + " method declarations in " + declaredMethods.size() + " classes");
+        return methodKeys + ":" + signatures.size() + ":" + Integer.toHexString(signatures.hashCode());
+    }
+
+    private void declareMethod(String classFQCN, String name, List<String> parameterTypes) {
+        declaredMethods.computeIfAbsent(classFQCN, k -> new HashMap<>())
+            .computeIfAbsent(name, k -> new ArrayList<>())
+            .add(new DeclaredMethod(parameterTypes));
+    }
+
+    /**
+     * Returns the parameter types of a method as written, varargs as "T...".
+     */
+    private static List<String> parameterTypes(MethodDeclaration methodDecl) {
+        List<String> types = new ArrayList<>();
+        for (var param : methodDecl.getParameters()) {
+            types.add(param.getType().asString() + (param.isVarArgs() ? "..." : ""));
+        }
+        return types;
+    }
+
+    private String readDeclarationsHash() {
+        Path file = cacheDirectory.resolve(CALL_EXPRESSION_DECLARATIONS_FILE);
+        if (!Files.exists(file)) {
+            return MethodKeyStrategy.NAME.name(); // Older versions only keyed by name and wrote no hash for it
         }
         try {
-            Optional<CompilationUnit> cuOpt = javaParser.parse(javaFile).getResult();
-            if (cuOpt.isPresent()) {
-                CompilationUnit cu = cuOpt.get();
-                parsedFileCache.put(javaFile, cu);
-                return cu;
-            } else {
-                logger.log(Level.WARNING, "Parsing failed for " + javaFile);
-                return null;
+            String hash = CacheFile.readJson(file, gson, String.class);
+            return hash != null ? hash : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Returns whether a declarations hash was written for an index built with the given strategy.
+     */
+    private static boolean isKeyedBy(String declarationsHash, MethodKeyStrategy methodKeys) {
+        return declarationsHash.equals(methodKeys.name()) || declarationsHash.startsWith(methodKeys.name() + ":");
+    }
+
+    private void writeDeclarationsHash(String hash) {
+        try {
+            CacheFile.writeJson(cacheDirectory.resolve(CALL_EXPRESSION_DECLARATIONS_FILE), gson, hash);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write " + CALL_EXPRESSION_DECLARATIONS_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks, without loading it, whether a cached index built with the current method key strategy
+     * exists and no Java source file was added, changed or deleted since it was written.
+     */
+    public boolean isIndexCurrent(List<MavenModule> filteredModules) {
+        if (lastIndexUpdate() == 0) {
+            return false;
+        }
+        FileManifest manifest = new FileManifest(cacheDirectory.resolve(CALL_EXPRESSION_MANIFEST_FILE));
+        return isKeyedBy(readDeclarationsHash(), methodKeys)
+            && manifest.load() && !manifest.isEmpty() && manifest.scan(listAllJavaFiles(filteredModules)).isEmpty();
+    }
+
+    /**
+     * Returns the last modification time of the completely written on-disk index, or 0 if none exists.
+     */
+    public long lastIndexUpdate() {
+        return Math.max(completeLastModified(cacheDirectory.resolve(CALL_EXPRESSION_CACHE_BINARY_FILE)),
+                        completeLastModified(cacheDirectory.resolve(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE)));
+    }
+
+    private static long completeLastModified(Path file) {
+        return CacheFile.isComplete(file) ? file.toFile().lastModified() : 0;
+    }
+
+    private void indexFiles(List<Path> javaFiles) {
+        if (threads > 1) {
+            populateCalleeMethodListParallel(javaFiles);
+        } else {
+            populateCalleeMethodList(javaFiles);
+        }
+    }
+
+    /**
+     * Patches the loaded call reference index: drops every reference that originates from a
+     * changed or deleted file, rewrites the cache file and re-indexes only changed and added files.
+     */
+    private void applyChanges(FileManifest.Diff diff) {
+        Set<String> stalePaths = diff.getStalePaths();
+        Iterator<Map.Entry<String, List<CallReference>>> it = callExpressionCache.entrySet().iterator();
+        while (it.hasNext()) {
+            List<CallReference> refs = it.next().getValue();
+            refs.removeIf(ref -> stalePaths.contains(ref.getFilePath()));
+            if (refs.isEmpty()) {
+                it.remove();
             }
+        }
+        for (String stalePath : stalePaths) {
+            parsedFileCache.invalidate(Path.of(stalePath));
+        }
+        resetIncrementalCache();
+        appendRecords(callExpressionCache);
+        indexFiles(diff.getFilesToParse());
+        markIncrementalCacheComplete();
+    }
+
+    /**
+     * Deletes the incremental cache file and its completeness marker before it is rewritten, so
+     * the appends of an interrupted run are never loaded.
+     */
+    private void resetIncrementalCache() {
+        try {
+            CacheFile.delete(cacheDirectory.resolve(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE));
         } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to parse " + javaFile + ": " + e.getMessage());
-            return null;
+            logger.log(Level.SEVERE, "Failed to reset " + CALL_EXPRESSION_CACHE_INCREMENTAL_FILE + ": " + e.getMessage());
         }
     }
 
-    public Map<String, List<CallReference>> findReferences(List<TableRepositoryMapping> repoMappings, List<MavenModule> filteredModules) {
-        if (loadIndex()) {
-            return callExpressionCache;
+    private void markIncrementalCacheComplete() {
+        Path file = cacheDirectory.resolve(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE);
+        if (!Files.exists(file)) {
+            return; // No call references at all
+        }
+        try {
+            CacheFile.markComplete(file);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to mark " + CALL_EXPRESSION_CACHE_INCREMENTAL_FILE + " complete: " + e.getMessage());
         }
-        var allJavaFiles = listAllJavaFiles(filteredModules);
-        populateCalleeMethodList(allJavaFiles);
-        return callExpressionCache;
     }
 
     private List<Path> listAllJavaFiles(List<MavenModule> filteredModules) {
@@ -100,33 +427,20 @@ public class CalleeMethodIndexer {
         for (Path javaFile : allJavaFiles) {
             CompilationUnit cu = compile(javaFile);
             if (cu == null) continue;
-            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDecl -> {
-                String className = classDecl.getNameAsString();
-                String classFQCN = resolveFQCN(cu, className);
-                classDecl.findAll(MethodDeclaration.class).forEach(methodDecl -> {
-                    String sourceMethodFQCN = classFQCN + "." + methodDecl.getNameAsString();
-                    methodDecl.findAll(MethodCallExpr.class).forEach(call -> {
-                        String calleeMethod = populateCalleeMethod(call);
-                        if (EXCLUDED_METHODS.contains(calleeMethod)) return;
-                        String calleeClass = populateCalleeClass(call, classFQCN, cu);
-                        String fullName = calleeClass + "." + calleeMethod;
-                        int line = call.getBegin().map(p -> p.line).orElse(-1);
-                        CallReference ref = new CallReference(javaFile.toString(), line, sourceMethodFQCN);
-                        if (callExpressionCache.containsKey(fullName)) {
-                            callExpressionCache.get(fullName).add(ref);
-                        } else {
-                            LinkedList<CallReference> refs = new LinkedList<>();
-                            refs.add(ref);
-                            callExpressionCache.put(fullName, refs);
-                        }
-                        incrementalBuffer.add(Map.entry(fullName, ref));
-                        incrementalWriteCounter++;
-                        if (incrementalWriteCounter % 1000 == 0) {
-                            writeCallExpressionCacheIncremental(incrementalBuffer);
-                            incrementalBuffer.clear();
-                        }
-                    });
-                });
+            indexCompilationUnit(javaFile, cu, (fullName, ref) -> {
+                if (callExpressionCache.containsKey(fullName)) {
+                    callExpressionCache.get(fullName).add(ref);
+                } else {
+                    LinkedList<CallReference> refs = new LinkedList<>();
+                    refs.add(ref);
+                    callExpressionCache.put(fullName, refs);
+                }
+                incrementalBuffer.add(Map.entry(fullName, ref));
+                incrementalWriteCounter++;
+                if (incrementalWriteCounter % 1000 == 0) {
+                    writeCallExpressionCacheIncremental(incrementalBuffer);
+                    incrementalBuffer.clear();
+                }
             });
         }
         // Write any remaining buffered entries
@@ -135,6 +449,208 @@ public class CalleeMethodIndexer {
         }
     }
 
+    /**
+     * Parallel variant of {@link #populateCalleeMethodList(List)}.
+     * The file list is split recursively on a work-stealing pool; every leaf indexes its slice
+     * into a private map and sibling results are merged left-to-right while joining, so no
+     * shared map is ever locked and each callee's reference list keeps the serial file order.
+     */
+    private void populateCalleeMethodListParallel(List<Path> allJavaFiles) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Map<String, List<CallReference>> merged;
+        try {
+            merged = pool.invoke(new IndexSliceTask(allJavaFiles, 0, allJavaFiles.size()));
+        } finally {
+            pool.shutdown();
+        }
+        merged.forEach((callee, refs) ->
+            callExpressionCache.computeIfAbsent(callee, k -> new ArrayList<>()).addAll(refs));
+        appendRecords(merged);
+    }
+
+    /**
+     * Appends every reference of the given index to the incremental cache file, 1000 records per write.
+     */
+    private void appendRecords(Map<String, List<CallReference>> references) {
+        List<Map.Entry<String, CallReference>> buffer = new ArrayList<>();
+        for (Map.Entry<String, List<CallReference>> entry : references.entrySet()) {
+            for (CallReference ref : entry.getValue()) {
+                buffer.add(Map.entry(entry.getKey(), ref));
+                if (buffer.size() == 1000) {
+                    writeCallExpressionCacheIncremental(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        if (!buffer.isEmpty()) {
+            writeCallExpressionCacheIncremental(buffer);
+        }
+    }
+
+    /**
+     * Walks every method body of a parsed file and reports each call site as
+     * (callee "Class.method", reference) to the given sink, both keyed by the
+     * {@link MethodKeyStrategy}. The file's declarations are collected into a {@link SymbolTable}
+     * first, so resolving a call's scope does not scan them again.
+     */
+    void indexCompilationUnit(Path javaFile, CompilationUnit cu, BiConsumer<String, CallReference> sink) {
+        TypeResolver.Scope scope = typeResolver.scopeOf(cu);
+        SymbolTable symbols = new SymbolTable(cu);
+        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(classDecl -> {
+            String className = classDecl.getNameAsString();
+            // Member types are keyed as Outer.Inner, as their callers resolve them
+            String declaredFQCN = scope.declaredType(className);
+            String classFQCN = declaredFQCN != null ? declaredFQCN : resolveFQCN(cu, className);
+            classDecl.findAll(MethodDeclaration.class).forEach(methodDecl -> {
+                String sourceMethodFQCN = methodKeys.key(classFQCN + "." + methodDecl.getNameAsString(),
+                    parameterTypes(methodDecl));
+                methodDecl.findAll(MethodCallExpr.class).forEach(call -> {
+                    String calleeMethod = populateCalleeMethod(call);
+                    if (EXCLUDED_METHODS.contains(calleeMethod)) return;
+                    String calleeClass = populateCalleeClass(call, classFQCN, cu, scope, symbols);
+                    int line = call.getBegin().map(p -> p.line).orElse(-1);
+                    CallReference reference = new CallReference(javaFile.toString(), line, sourceMethodFQCN);
+                    for (String fullName : calleeKeys(call, calleeClass + "." + calleeMethod, symbols)) {
+                        sink.accept(fullName, reference);
+                    }
+                });
+            });
+        });
+    }
+
+    /**
+     * Returns the keys of the methods a call can invoke: the declared overloads of the callee that
+     * accept its number of arguments and, when keying by parameter types, the types of those
+     * arguments that are evident from the call site. A call to a method without a matching
+     * declaration, a library method for instance, is keyed by its arity.
+     */
+    private List<String> calleeKeys(MethodCallExpr call, String classAndMethod, SymbolTable symbols) {
+        if (methodKeys == MethodKeyStrategy.NAME) {
+            return List.of(classAndMethod);
+        }
+        int argumentCount = call.getArguments().size();
+        int dot = classAndMethod.lastIndexOf('.');
+        List<DeclaredMethod> overloads = declaredMethods
+            .getOrDefault(classAndMethod.substring(0, Math.max(dot, 0)), Map.of())
+            .getOrDefault(classAndMethod.substring(dot + 1), List.of());
+        List<DeclaredMethod> candidates = new ArrayList<>();
+        for (DeclaredMethod overload : overloads) {
+            if (overload.accepts(argumentCount)) {
+                candidates.add(overload);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return List.of(MethodKeyStrategy.arityKey(classAndMethod, argumentCount));
+        }
+        if (methodKeys == MethodKeyStrategy.PARAMETER_TYPES && candidates.size() > 1) {
+            List<String> argumentTypes = new ArrayList<>(argumentCount);
+            for (Expression argument : call.getArguments()) {
+                argumentTypes.add(argumentType(call, argument, symbols));
+            }
+            List<DeclaredMethod> matching = new ArrayList<>();
+            for (DeclaredMethod candidate : candidates) {
+                if (candidate.acceptsTypes(argumentTypes)) {
+                    matching.add(candidate);
+                }
+            }
+            if (!matching.isEmpty()) {
+                candidates = matching;
+            }
+        }
+        List<String> keys = new ArrayList<>(candidates.size());
+        for (DeclaredMethod candidate : candidates) {
+            String key = methodKeys == MethodKeyStrategy.ARITY
+                ? MethodKeyStrategy.arityKey(classAndMethod, candidate.parameterTypes.size())
+                : MethodKeyStrategy.PARAMETER_TYPES.key(classAndMethod, candidate.parameterTypes);
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the simple type name of a call argument when it is evident without resolving
+     * expressions: literals, object creations, casts and variables. Null if it is not.
+     */
+    private static String argumentType(MethodCallExpr call, Expression argument, SymbolTable symbols) {
+        if (argument.isStringLiteralExpr() || argument.isTextBlockLiteralExpr()) return "String";
+        if (argument.isIntegerLiteralExpr()) return "int";
+        if (argument.isLongLiteralExpr()) return "long";
+        if (argument.isBooleanLiteralExpr()) return "boolean";
+        if (argument.isCharLiteralExpr()) return "char";
+        if (argument.isDoubleLiteralExpr()) {
+            String value = argument.asDoubleLiteralExpr().getValue();
+            return value.endsWith("f") || value.endsWith("F") ? "float" : "double";
+        }
+        if (argument.isNullLiteralExpr()) return NULL_ARGUMENT;
+        if (argument.isObjectCreationExpr()) {
+            return MethodKeyStrategy.simpleTypeName(argument.asObjectCreationExpr().getType().asString());
+        }
+        if (argument.isCastExpr()) {
+            return MethodKeyStrategy.simpleTypeName(argument.asCastExpr().getType().asString());
+        }
+        if (argument.isNameExpr()) {
+            var type = symbols.lookup(call, argument.asNameExpr().getNameAsString());
+            if (type != null && !type.isVarType()) {
+                return MethodKeyStrategy.simpleTypeName(type.asString());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fork/join task indexing the half-open slice [from, to) of the Java file list.
+     */
+    private class IndexSliceTask extends RecursiveTask<Map<String, List<CallReference>>> {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        IndexSliceTask(List<Path> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, List<CallReference>> compute() {
+            if (to - from <= PARALLEL_SPLIT_THRESHOLD) {
+                Map<String, List<CallReference>> local = new LinkedHashMap<>();
+                for (int i = from; i < to; i++) {
+                    Path javaFile = files.get(i);
+                    CompilationUnit cu = compile(javaFile);
+                    if (cu == null) continue;
+                    indexCompilationUnit(javaFile, cu,
+                        (fullName, ref) -> local.computeIfAbsent(fullName, k -> new ArrayList<>()).add(ref));
+                }
+                return local;
+            }
+            int mid = (from + to) >>> 1;
+            IndexSliceTask left = new IndexSliceTask(files, from, mid);
+            IndexSliceTask right = new IndexSliceTask(files, mid, to);
+            left.fork();
+            Map<String, List<CallReference>> rightResult = right.compute();
+            Map<String, List<CallReference>> leftResult = left.join();
+            rightResult.forEach((callee, refs) ->
+                leftResult.computeIfAbsent(callee, k -> new ArrayList<>()).addAll(refs));
+            return leftResult;
+        }
+    }
+
+    private CompilationUnit parse(JavaParser parser, Path javaFile) {
+        try {
+            Optional<CompilationUnit> cuOpt = parser.parse(javaFile).getResult();
+            if (cuOpt.isEmpty()) {
+                logger.log(Level.WARNING, "Parsing failed for " + javaFile);
+            }
+            return cuOpt.orElse(null);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to parse " + javaFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Enhanced FQCN resolver for method call scopes.
      * Handles:
@@ -178,8 +694,8 @@ public class CalleeMethodIndexer {
     }
 
     private void writeRepoMethodReferences(Map<String, List<Map<String, Object>>> data) {
-        try (java.io.FileWriter writer = new java.io.FileWriter(REPO_METHOD_REFERENCES_FILE)) {
-            gson.toJson(data, writer);
+        try {
+            CacheFile.writeJson(cacheDirectory.resolve(REPO_METHOD_REFERENCES_FILE), gson, data);
             logger.log(Level.INFO, "Wrote repo method references to " + REPO_METHOD_REFERENCES_FILE);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to write repo method references: " + e.getMessage());
@@ -187,8 +703,8 @@ public class CalleeMethodIndexer {
     }
 
     private void writeCallExpressionCache() {
-        try (java.io.FileWriter writer = new java.io.FileWriter(CALL_EXPRESSION_CACHE_FILE)) {
-            gson.toJson(callExpressionCache, writer);
+        try {
+            CacheFile.writeJson(cacheDirectory.resolve(CALL_EXPRESSION_CACHE_FILE), gson, callExpressionCache);
             logger.log(Level.INFO, "Wrote call expression cache to " + CALL_EXPRESSION_CACHE_FILE);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to write call expression cache: " + e.getMessage());
@@ -196,7 +712,8 @@ public class CalleeMethodIndexer {
     }
 
     private void writeCallExpressionCacheIncremental(List<Map.Entry<String, CallReference>> buffer) {
-        try (java.io.FileWriter writer = new java.io.FileWriter(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE, true)) {
+        java.io.File file = cacheDirectory.resolve(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE).toFile();
+        try (java.io.FileWriter writer = new java.io.FileWriter(file, java.nio.charset.StandardCharsets.UTF_8, true)) {
             for (Map.Entry<String, CallReference> entry : buffer) {
                 CallReferenceRecord record = new CallReferenceRecord(entry.getKey(), entry.getValue());
                 writer.write(gson.toJson(record));
@@ -208,14 +725,24 @@ public class CalleeMethodIndexer {
         }
     }
 
+    private void writeCallExpressionCacheBinary() {
+        try {
+            CallReferenceBinaryIndex.write(callExpressionCache, cacheDirectory.resolve(CALL_EXPRESSION_CACHE_BINARY_FILE));
+            logger.log(Level.INFO, "Wrote binary call reference index to " + CALL_EXPRESSION_CACHE_BINARY_FILE);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write binary call reference index: " + e.getMessage());
+        }
+    }
+
     /**
      * Returns the callee class for a method call.
      * - If scope is empty, returns the current class name.
      * - If scope is "this", returns the current class name.
-     * - If scope is a variable name, attempts to resolve FQCN using imports and package.
+     * - If scope is a variable name, resolves the FQCN of its declared type, or of the name as written using imports and package.
      * - If scope is a chained call, returns the rightmost identifier.
      */
-    private String populateCalleeClass(MethodCallExpr call, String currentClassFQCN, CompilationUnit cu) {
+    private String populateCalleeClass(MethodCallExpr call, String currentClassFQCN, CompilationUnit cu,
+                                       TypeResolver.Scope scope, SymbolTable symbols) {
         if (call.getScope().isEmpty()) {
             return currentClassFQCN;
         }
@@ -223,8 +750,7 @@ public class CalleeMethodIndexer {
         if(scopeExpr.isThisExpr()) {
             return currentClassFQCN;
         }
-        var className = extractFromContext(call, cu);
-        return resolveFQCN(cu, className);
+        return extractFromContext(call, cu, scope, symbols);
     }
 
     /**
@@ -239,85 +765,67 @@ public class CalleeMethodIndexer {
 
     /**
      * Attempts to resolve the FQCN of a variable used as the scope in a method call.
-     * Checks field variables, local variables, and method parameters.
-     * Uses JavaParser SymbolSolver for type resolution.
+     * Looks the variable up in the file's {@link SymbolTable}: fields, then parameters, then
+     * local variables. The type is resolved with the {@link TypeResolver}; an unresolved type, or a
+     * scope that is no variable, is qualified with the imports and package by
+     * {@link #resolveFQCN(CompilationUnit, String)}.
      */
-    private String extractFromContext(MethodCallExpr call, CompilationUnit cu) {
+    private String extractFromContext(MethodCallExpr call, CompilationUnit cu, TypeResolver.Scope scope,
+                                      SymbolTable symbols) {
         if (call.getScope().isEmpty()) return "";
-        String scopeName = call.getScope().get().toString();
-        if (scopeName.contains(".")) {
-            String[] parts = scopeName.split("\\.");
-            scopeName = parts[0];
-        }
-        // 1. Check field variables
-        for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
-            for (var field : classDecl.getFields()) {
-                for (var varDecl : field.getVariables()) {
-                    if (varDecl.getNameAsString().equals(scopeName)) {
-                        var type = varDecl.getType();
-                        try {
-                            var resolvedType = type.resolve();
-                            return resolvedType.describe();
-                        } catch (Exception e) {
-                            logger.log(Level.FINE, "Failed to resolve field type for '" + scopeName + "': " + e.getMessage());
-                            return type.asString();
-                        }
-                    }
-                }
-            }
-        }
-        // 2. Check local variables and parameters in enclosing method
-        var methodOpt = call.findAncestor(MethodDeclaration.class);
-        if (methodOpt.isPresent()) {
-            MethodDeclaration methodDecl = methodOpt.get();
-            // Parameters
-            for (var param : methodDecl.getParameters()) {
-                if (param.getNameAsString().equals(scopeName)) {
-                    var type = param.getType();
-                    try {
-                        var resolvedType = type.resolve();
-                        return resolvedType.describe();
-                    } catch (Exception e) {
-                        logger.log(Level.FINE, "Failed to resolve parameter type for '" + scopeName + "': " + e.getMessage());
-                        return type.asString();
-                    }
-                }
-            }
-            // Local variables
-            for (var localVar : methodDecl.findAll(com.github.javaparser.ast.body.VariableDeclarator.class)) {
-                if (localVar.getNameAsString().equals(scopeName)) {
-                    var type = localVar.getType();
-                    try {
-                        var resolvedType = type.resolve();
-                        return resolvedType.describe();
-                    } catch (Exception e) {
-                        logger.log(Level.FINE, "Failed to resolve local variable type for '" + scopeName + "': " + e.getMessage());
-                        return type.asString();
-                    }
-                }
-            }
+        String scopeName = SymbolTable.leftmostName(call.getScope().get());
+        var type = symbols.lookup(call, scopeName);
+        if (type != null) {
+            return symbols.resolve(type, t -> resolveType(cu, scope, t));
         }
         // Fallback: return scope name
-        return scopeName;
+        return resolveFQCN(cu, scopeName);
+    }
+
+    private String resolveType(CompilationUnit cu, TypeResolver.Scope scope, com.github.javaparser.ast.type.Type type) {
+        String fqcn = typeResolver.resolve(scope, type);
+        return fqcn != null ? fqcn : resolveFQCN(cu, type.asString());
     }
 
 
     /**
-     * Loads the call reference tree from the incremental JSONL file if it exists.
+     * Loads the call reference tree from the binary index if it is at least as recent as the
+     * incremental JSONL file, otherwise from the incremental JSONL file. Only completely written
+     * files are loaded, and the tree is left untouched unless one of them loads without errors.
      * Returns true if loaded, false otherwise.
      */
     public boolean loadIndex() {
-        Path filePath = Path.of(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE);
-        if (!filePath.toFile().exists()) {
-            logger.log(Level.INFO, CALL_EXPRESSION_CACHE_INCREMENTAL_FILE + " does not exist, skipping load.");
+        Path binaryPath = cacheDirectory.resolve(CALL_EXPRESSION_CACHE_BINARY_FILE);
+        Path filePath = cacheDirectory.resolve(CALL_EXPRESSION_CACHE_INCREMENTAL_FILE);
+        boolean jsonlComplete = CacheFile.isComplete(filePath);
+        if (CacheFile.isComplete(binaryPath)
+                && (!jsonlComplete || binaryPath.toFile().lastModified() >= filePath.toFile().lastModified())) {
+            try {
+                callExpressionCache.putAll(CallReferenceBinaryIndex.load(binaryPath));
+                logger.log(Level.INFO, "Loaded call reference tree from " + CALL_EXPRESSION_CACHE_BINARY_FILE);
+                return true;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to load binary call reference index, falling back to JSONL: " + e.getMessage());
+                callExpressionCache.clear();
+            }
+        }
+        if (!jsonlComplete) {
+            logger.log(Level.INFO, CALL_EXPRESSION_CACHE_INCREMENTAL_FILE + " does not exist or is incomplete, skipping load.");
             return false;
         }
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.FileReader(filePath.toFile()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                CallReferenceRecord record = gson.fromJson(line, CallReferenceRecord.class);
-                callExpressionCache.computeIfAbsent(record.callee, k -> new ArrayList<>()).add(record.reference);
-            }
+        try {
+            Map<String, List<CallReference>> loaded = CacheFile.read(filePath, in -> {
+                Map<String, List<CallReference>> records = new HashMap<>();
+                java.io.BufferedReader reader = new java.io.BufferedReader(
+                    new java.io.InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    CallReferenceRecord record = gson.fromJson(line, CallReferenceRecord.class);
+                    records.computeIfAbsent(record.callee, k -> new ArrayList<>()).add(record.reference);
+                }
+                return records;
+            });
+            callExpressionCache.putAll(loaded);
             logger.log(Level.INFO, "Loaded call reference tree from " + CALL_EXPRESSION_CACHE_INCREMENTAL_FILE);
             return true;
         } catch (Exception e) {
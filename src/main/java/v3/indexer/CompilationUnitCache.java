@@ -0,0 +1,199 @@
+package v3.indexer;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Size-bounded LRU cache of parsed compilation units.
+ *
+ * Entries beyond {@code maxEntries} are evicted in least-recently-used order. When soft values
+ * are enabled the ASTs are additionally held through {@link SoftReference}s, so the garbage
+ * collector can reclaim them under memory pressure before the size bound is reached.
+ * All operations are thread-safe.
+ *
+ * One cache can be shared by every phase that reads Java sources: {@link #getOrParse(Path, Function)}
+ * parses a file only if no other caller has it cached or is parsing it already, and the parse
+ * counters show whether any file had to be parsed again after its AST was evicted.
+ */
+public class CompilationUnitCache {
+
+    private final int maxEntries;
+    private final boolean softValues;
+    private final LinkedHashMap<Path, Object> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong parses = new AtomicLong();
+    private final AtomicLong reparses = new AtomicLong();
+    private final Set<Path> parsedFiles = ConcurrentHashMap.newKeySet();
+    private final Map<Path, CompletableFuture<CompilationUnit>> parsing = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxEntries maximum number of compilation units kept in memory
+     * @param softValues whether to hold the compilation units through soft references
+     */
+    public CompilationUnitCache(int maxEntries, boolean softValues) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.softValues = softValues;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Object> eldest) {
+                if (size() > CompilationUnitCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached compilation unit for the given file, or null if it is absent
+     * or was reclaimed by the garbage collector.
+     */
+    public CompilationUnit get(Path javaFile) {
+        synchronized (entries) {
+            Object value = entries.get(javaFile);
+            CompilationUnit cu = unwrap(value);
+            if (cu == null && value != null) {
+                // Soft reference was cleared
+                entries.remove(javaFile);
+                evictions.incrementAndGet();
+            }
+            (cu != null ? hits : misses).incrementAndGet();
+            return cu;
+        }
+    }
+
+    /**
+     * Returns the cached compilation unit for the given file, parsing and caching it if it is
+     * absent. Concurrent callers asking for the same file wait for a single parse.
+     *
+     * @param parser parses a file, returning null if it cannot be parsed
+     * @return the compilation unit, or null if the file cannot be parsed
+     */
+    public CompilationUnit getOrParse(Path javaFile, Function<Path, CompilationUnit> parser) {
+        CompilationUnit cu = get(javaFile);
+        if (cu != null) {
+            return cu;
+        }
+        CompletableFuture<CompilationUnit> ownParse = new CompletableFuture<>();
+        CompletableFuture<CompilationUnit> running = parsing.putIfAbsent(javaFile, ownParse);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            cu = peek(javaFile); // Another caller may have finished parsing it since the lookup above
+            if (cu != null) {
+                ownParse.complete(cu);
+                return cu;
+            }
+            cu = parser.apply(javaFile);
+            parses.incrementAndGet();
+            if (!parsedFiles.add(javaFile)) {
+                reparses.incrementAndGet();
+            }
+            if (cu != null) {
+                put(javaFile, cu);
+            }
+            ownParse.complete(cu);
+            return cu;
+        } catch (RuntimeException | Error e) {
+            ownParse.completeExceptionally(e);
+            throw e;
+        } finally {
+            parsing.remove(javaFile);
+        }
+    }
+
+    private CompilationUnit peek(Path javaFile) {
+        synchronized (entries) {
+            return unwrap(entries.get(javaFile));
+        }
+    }
+
+    public void put(Path javaFile, CompilationUnit cu) {
+        synchronized (entries) {
+            entries.put(javaFile, softValues ? new SoftReference<>(cu) : cu);
+        }
+    }
+
+    /**
+     * Drops the compilation unit of a file that changed; parsing it again does not count as a reparse.
+     */
+    public void invalidate(Path javaFile) {
+        synchronized (entries) {
+            entries.remove(javaFile);
+        }
+        parsedFiles.remove(javaFile);
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns how many files {@link #getOrParse(Path, Function)} parsed.
+     */
+    public long getParseCount() {
+        return parses.get();
+    }
+
+    /**
+     * Returns how many of those parses were of a file parsed before, whose AST had been evicted.
+     */
+    public long getReparseCount() {
+        return reparses.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompilationUnit unwrap(Object value) {
+        if (value instanceof SoftReference) {
+            return ((SoftReference<CompilationUnit>) value).get();
+        }
+        return (CompilationUnit) value;
+    }
+
+    @Override
+    public String toString() {
+        return "CompilationUnitCache{" +
+               "size=" + size() +
+               ", maxEntries=" + maxEntries +
+               ", softValues=" + softValues +
+               ", hits=" + hits.get() +
+               ", misses=" + misses.get() +
+               ", evictions=" + evictions.get() +
+               ", parses=" + parses.get() +
+               ", reparses=" + reparses.get() +
+               '}';
+    }
+}
@@ -0,0 +1,198 @@
+package v3.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the modification time, size and content hash of every input file of an index,
+ * so that a later run can re-process only the files that were added, changed or deleted.
+ *
+ * The content hash is only computed when the cheap mtime/size check fails; a file that was
+ * touched but not modified is reported as unchanged.
+ */
+public class FileManifest {
+    private static final Logger logger = Logger.getLogger(FileManifest.class.getName());
+    static {
+        logger.setLevel(Level.SEVERE); // Hide info/debug messages by default
+    }
+
+    private final Path manifestFile;
+    private final Gson gson = new Gson();
+    private Map<String, Entry> entries = new HashMap<>();
+    private Map<String, Entry> pendingEntries;
+
+    /**
+     * Fingerprint of a single input file.
+     */
+    static class Entry {
+        long lastModified;
+        long size;
+        String hash;
+
+        Entry(long lastModified, long size, String hash) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Result of comparing the current set of input files against the manifest.
+     */
+    public static class Diff {
+        private final Set<Path> added = new LinkedHashSet<>();
+        private final Set<Path> changed = new LinkedHashSet<>();
+        private final Set<Path> deleted = new LinkedHashSet<>();
+
+        public Set<Path> getAdded() {
+            return added;
+        }
+
+        public Set<Path> getChanged() {
+            return changed;
+        }
+
+        public Set<Path> getDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Files whose previous index entries must be dropped.
+         */
+        public Set<String> getStalePaths() {
+            Set<String> stale = new HashSet<>();
+            changed.forEach(p -> stale.add(p.toString()));
+            deleted.forEach(p -> stale.add(p.toString()));
+            return stale;
+        }
+
+        /**
+         * Files that must be (re-)parsed.
+         */
+        public List<Path> getFilesToParse() {
+            List<Path> files = new ArrayList<>(changed);
+            files.addAll(added);
+            return files;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && deleted.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "added=" + added.size() + ", changed=" + changed.size() + ", deleted=" + deleted.size();
+        }
+    }
+
+    public FileManifest(Path manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Loads the manifest from disk. Returns false if there was no usable manifest.
+     */
+    public boolean load() {
+        if (!Files.exists(manifestFile)) {
+            return false;
+        }
+        try {
+            Map<String, Entry> loaded = CacheFile.readJson(manifestFile, gson, new TypeToken<Map<String, Entry>>(){}.getType());
+            if (loaded == null) {
+                return false;
+            }
+            entries = loaded;
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to load manifest " + manifestFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Compares the given files with the manifest. The new fingerprints are kept pending
+     * until {@link #commit()} is called, so a failed re-index is retried on the next run.
+     *
+     * @param files the current input files of the index
+     * @return the added, changed and deleted files
+     */
+    public Diff scan(Collection<Path> files) {
+        Diff diff = new Diff();
+        Map<String, Entry> current = new HashMap<>();
+        for (Path file : files) {
+            String key = file.toString();
+            Entry previous = entries.get(key);
+            try {
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                long size = Files.size(file);
+                if (previous != null && previous.lastModified == lastModified && previous.size == size) {
+                    current.put(key, previous);
+                    continue;
+                }
+                String hash = hash(file);
+                current.put(key, new Entry(lastModified, size, hash));
+                if (previous == null) {
+                    diff.added.add(file);
+                } else if (!hash.equals(previous.hash)) {
+                    diff.changed.add(file);
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to fingerprint " + file + ": " + e.getMessage());
+                diff.changed.add(file);
+            }
+        }
+        for (String key : entries.keySet()) {
+            if (!current.containsKey(key)) {
+                diff.deleted.add(Path.of(key));
+            }
+        }
+        pendingEntries = current;
+        return diff;
+    }
+
+    /**
+     * Makes the fingerprints of the last {@link #scan(Collection)} current and writes them to disk.
+     */
+    public void commit() {
+        if (pendingEntries != null) {
+            entries = pendingEntries;
+            pendingEntries = null;
+        }
+        try {
+            CacheFile.writeJson(manifestFile, gson, entries);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write manifest " + manifestFile + ": " + e.getMessage());
+        }
+    }
+
+    static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
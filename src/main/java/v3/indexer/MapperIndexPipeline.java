@@ -0,0 +1,466 @@
+package v3.indexer;
+
+import v3.model.MavenModule;
+import v3.model.TableXmlMapping;
+import v3.parser.MyBatisXmlParser;
+import v3.parser.SqlTableExtractor;
+import v3.scanner.MapperXmlLocator;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Indexes mapper XMLs in four stages: file discovery, XML parse, SQL table extraction and index
+ * merge. Every stage runs on its own executor and hands its output to the next stage through a
+ * bounded queue, so a stage that runs ahead blocks instead of buffering the whole repository.
+ *
+ * Discovery runs one task per module, parse and extraction run on the configured number of
+ * threads, and a single merge thread adds the statements to the index. Because statements reach
+ * the merge stage in no particular order, and whether a statement including a fragment of another
+ * mapper is handed over right away or only at the end depends on which mappers were parsed first,
+ * each table's new statements are sorted by discovery order and statement id at the end, so the
+ * index does not depend on thread scheduling.
+ *
+ * The first stage task that fails stops the whole pipeline: every pool is shut down, which
+ * interrupts workers blocked on a queue, and the thread running the pipeline is interrupted too.
+ */
+class MapperIndexPipeline {
+
+    private static final Logger logger = Logger.getLogger(MapperIndexPipeline.class.getName());
+    private static final int QUEUE_CAPACITY = 1024;
+
+    static {
+        logger.setLevel(Level.SEVERE); // Hide debug/info messages by default
+    }
+
+    private static final MapperFile NO_MORE_FILES = new MapperFile(null, null, 0);
+    private static final Statement NO_MORE_STATEMENTS = new Statement(null, null, null);
+
+    private final MapperXmlLocator xmlLocator;
+    private final MyBatisXmlParser xmlParser;
+    private final SqlTableExtractor sqlExtractor;
+    private final int threads;
+    private final StageCounter discovery = new StageCounter("discovery", "files");
+    private final StageCounter parse = new StageCounter("parse", "files");
+    private final StageCounter extraction = new StageCounter("extraction", "statements");
+    private final StageCounter merge = new StageCounter("merge", "statements");
+    private final Queue<MapperFile> heldFiles = new ConcurrentLinkedQueue<>(); // have statements in the parser's deferred list
+    private final Queue<MapperFile> completedFiles = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Receives each mapper XML once all of its statements are in the index. Called on one thread at a time.
+     */
+    interface IndexedFileListener {
+        void indexed(Path xmlPath, List<TableXmlMapping> statements);
+    }
+
+    /**
+     * A mapper XML found by the discovery stage; the ordinal is its position in discovery order.
+     * The file is complete when its parse and every statement it handed over have been processed.
+     */
+    private static final class MapperFile {
+        final Path path;
+        final String moduleName;
+        final long ordinal;
+        final AtomicInteger outstanding = new AtomicInteger(1); // the parse plus statements not yet merged
+        final List<TableXmlMapping> statements = new ArrayList<>(); // merged so far, merge thread only
+
+        MapperFile(Path path, String moduleName, long ordinal) {
+            this.path = path;
+            this.moduleName = moduleName;
+            this.ordinal = ordinal;
+        }
+    }
+
+    /**
+     * A statement on its way to the index, with the tables it touches once extracted.
+     */
+    private static final class Statement {
+        final TableXmlMapping mapping;
+        final Set<String> tables;
+        final MapperFile file;
+
+        Statement(TableXmlMapping mapping, Set<String> tables, MapperFile file) {
+            this.mapping = mapping;
+            this.tables = tables;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Watches the tasks of all stages and stops the pipeline on the first failure, instead of
+     * leaving the other stages blocked on queues that are no longer drained or filled.
+     */
+    private static final class FailFast {
+        private final Thread runner = Thread.currentThread();
+        private final List<ExecutorService> pools;
+        private Throwable failure;
+        private boolean stopped;
+
+        FailFast(ExecutorService... pools) {
+            this.pools = List.of(pools);
+        }
+
+        <T> Callable<T> watch(Callable<T> task) {
+            return () -> {
+                try {
+                    return task.call();
+                } catch (Exception | Error e) {
+                    fail(e);
+                    throw e;
+                }
+            };
+        }
+
+        private synchronized void fail(Throwable e) {
+            if (stopped || failure != null) {
+                return; // Already stopping; later failures are mostly the interrupts sent here
+            }
+            failure = e;
+            pools.forEach(ExecutorService::shutdownNow);
+            runner.interrupt();
+        }
+
+        /**
+         * Ignores failures from now on and returns the first one, if any.
+         */
+        synchronized Throwable stop() {
+            stopped = true;
+            return failure;
+        }
+    }
+
+    /**
+     * Items and time of one stage. Busy time is the time the stage's workers spent on items,
+     * summed over workers, including the time blocked on a full queue of the next stage; wall time
+     * runs from the start of the pipeline until the stage finished.
+     */
+    static final class StageCounter {
+        private final String stage;
+        private final String unit;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private volatile int workers;
+        private volatile long wallNanos;
+
+        StageCounter(String stage, String unit) {
+            this.stage = stage;
+            this.unit = unit;
+        }
+
+        void record(long items, long startNanos) {
+            this.items.addAndGet(items);
+            busyNanos.addAndGet(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        public String toString() {
+            double seconds = wallNanos / 1e9;
+            return String.format("%-10s %2d threads %,10d %-10s busy %,8d ms  wall %,8d ms  %,12.0f %s/s",
+                stage, workers, items.get(), unit, busyNanos.get() / 1_000_000, wallNanos / 1_000_000,
+                seconds > 0 ? items.get() / seconds : 0.0, unit);
+        }
+    }
+
+    MapperIndexPipeline(MapperXmlLocator xmlLocator, MyBatisXmlParser xmlParser, SqlTableExtractor sqlExtractor,
+                        int threads) {
+        this.xmlLocator = xmlLocator;
+        this.xmlParser = xmlParser;
+        this.sqlExtractor = sqlExtractor;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs only the discovery stage and returns the mapper XMLs of all modules with their module
+     * names, in module order.
+     */
+    Map<Path, String> discover(List<MavenModule> modules) {
+        Map<Path, String> xmlFileModules = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        ExecutorService discoveryPool = Executors.newFixedThreadPool(discoveryThreads(modules));
+        discovery.workers = discoveryThreads(modules);
+        try {
+            List<Future<List<Path>>> found = new ArrayList<>();
+            for (MavenModule module : modules) {
+                found.add(discoveryPool.submit(() -> findMapperXmlFiles(module)));
+            }
+            for (int i = 0; i < modules.size(); i++) {
+                for (Path xmlPath : await(found.get(i))) {
+                    xmlFileModules.put(xmlPath, modules.get(i).getModuleName());
+                }
+            }
+        } finally {
+            discoveryPool.shutdownNow();
+        }
+        discovery.wallNanos = System.nanoTime() - start;
+        return xmlFileModules;
+    }
+
+    /**
+     * Discovers the mapper XMLs of all modules and indexes them while discovery is still running.
+     *
+     * @param discovered receives every mapper XML found, with its module name
+     * @param skipped mapper XMLs that are already indexed; they are discovered but not parsed
+     * @param index receives the statements, by table
+     * @param touched receives the tables of the indexed statements
+     * @param listener receives each mapper XML once it is completely indexed
+     */
+    void index(List<MavenModule> modules, Map<Path, String> discovered, Set<Path> skipped,
+               Map<String, List<TableXmlMapping>> index, Set<String> touched, IndexedFileListener listener) {
+        run(files -> {
+            ExecutorService discoveryPool = Executors.newFixedThreadPool(discoveryThreads(modules));
+            discovery.workers = discoveryThreads(modules);
+            try {
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int i = 0; i < modules.size(); i++) {
+                    MavenModule module = modules.get(i);
+                    long moduleOrdinal = (long) i << 32;
+                    tasks.add(discoveryPool.submit(() -> {
+                        List<Path> xmlPaths = findMapperXmlFiles(module);
+                        synchronized (discovered) {
+                            xmlPaths.forEach(p -> discovered.put(p, module.getModuleName()));
+                        }
+                        for (int j = 0; j < xmlPaths.size(); j++) {
+                            if (!skipped.contains(xmlPaths.get(j))) {
+                                files.put(new MapperFile(xmlPaths.get(j), module.getModuleName(), moduleOrdinal | j));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    await(task);
+                }
+            } finally {
+                discoveryPool.shutdownNow();
+            }
+        }, index, touched, listener);
+    }
+
+    /**
+     * Indexes the given mapper XMLs; the discovery stage is skipped.
+     *
+     * @param xmlFileModules mapper XMLs to parse, with their module names
+     * @param index receives the statements, by table
+     * @param touched receives the tables of the indexed statements
+     */
+    void index(Map<Path, String> xmlFileModules, Map<String, List<TableXmlMapping>> index, Set<String> touched) {
+        run(files -> {
+            long ordinal = 0;
+            for (Map.Entry<Path, String> xmlFile : xmlFileModules.entrySet()) {
+                files.put(new MapperFile(xmlFile.getKey(), xmlFile.getValue(), ordinal++));
+            }
+        }, index, touched, (xmlPath, statements) -> { });
+    }
+
+    /**
+     * Returns one line per stage with its items, busy and wall time and throughput.
+     */
+    List<String> getStageStatistics() {
+        return List.of(discovery.toString(), parse.toString(), extraction.toString(), merge.toString());
+    }
+
+    /**
+     * Produces mapper XMLs into the file queue.
+     */
+    private interface FileSource {
+        void produce(BlockingQueue<MapperFile> files) throws Exception;
+    }
+
+    private void run(FileSource source, Map<String, List<TableXmlMapping>> index, Set<String> touched,
+                     IndexedFileListener listener) {
+        BlockingQueue<MapperFile> files = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Statement> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Statement> extracted = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Map<TableXmlMapping, Statement> positions = new IdentityHashMap<>();
+        ExecutorService parsePool = Executors.newFixedThreadPool(threads);
+        ExecutorService extractionPool = Executors.newFixedThreadPool(threads);
+        ExecutorService mergePool = Executors.newSingleThreadExecutor();
+        FailFast stages = new FailFast(parsePool, extractionPool, mergePool);
+        parse.workers = threads;
+        extraction.workers = threads;
+        merge.workers = 1;
+        long start = System.nanoTime();
+        try {
+            Future<?> merging = mergePool.submit(stages.watch(() -> merge(extracted, index, touched, positions, listener)));
+            List<Future<?>> extracting = new ArrayList<>();
+            List<Future<?>> parsing = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                extracting.add(extractionPool.submit(stages.watch(() -> extract(parsed, extracted))));
+                parsing.add(parsePool.submit(stages.watch(() -> parse(files, parsed))));
+            }
+
+            source.produce(files);
+            discovery.wallNanos += System.nanoTime() - start;
+            for (int i = 0; i < threads; i++) {
+                files.put(NO_MORE_FILES);
+            }
+            awaitAll(parsing);
+            // Statements held back for fragments of other mappers are handed over on this thread
+            xmlParser.flushDeferred();
+            for (MapperFile file = heldFiles.poll(); file != null; file = heldFiles.poll()) {
+                release(file);
+            }
+            parse.wallNanos = System.nanoTime() - start;
+            for (int i = 0; i < threads; i++) {
+                parsed.put(NO_MORE_STATEMENTS);
+            }
+            awaitAll(extracting);
+            extraction.wallNanos = System.nanoTime() - start;
+            extracted.put(NO_MORE_STATEMENTS);
+            await(merging);
+            reportCompletedFiles(listener); // Released by this thread after the merge stage stopped
+            merge.wallNanos = System.nanoTime() - start;
+        } catch (Exception e) {
+            Throwable failure = stages.stop();
+            if (failure != null) {
+                Thread.interrupted(); // Set by the failed stage to wake this thread
+                throw new IllegalStateException("Mapper XML indexing failed: " + failure.getMessage(), failure);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Mapper XML indexing was interrupted", e);
+            }
+            throw new IllegalStateException("Mapper XML indexing failed: " + e.getMessage(), e);
+        } finally {
+            stages.stop();
+            // Unblocks workers waiting on a queue if the producer failed
+            parsePool.shutdownNow();
+            extractionPool.shutdownNow();
+            mergePool.shutdownNow();
+            heldFiles.clear();
+            completedFiles.clear();
+        }
+
+        Comparator<TableXmlMapping> order = Comparator
+            .comparingLong((TableXmlMapping m) -> positions.containsKey(m) ? positions.get(m).file.ordinal : Long.MIN_VALUE)
+            .thenComparing(m -> positions.containsKey(m) ? m.getStatementId() : "");
+        for (String table : touched) {
+            List<TableXmlMapping> statements = index.get(table);
+            if (statements != null) {
+                statements.sort(order); // Stable, so statements already in the index keep their order
+            }
+        }
+    }
+
+    private List<Path> findMapperXmlFiles(MavenModule module) {
+        long start = System.nanoTime();
+        List<Path> xmlPaths = xmlLocator.findMapperXmlFiles(module.getRootPath());
+        logger.log(Level.FINE, "Found " + xmlPaths.size() + " mapper XML files in module: " + module.getModuleName());
+        discovery.record(xmlPaths.size(), start);
+        return xmlPaths;
+    }
+
+    private int discoveryThreads(List<MavenModule> modules) {
+        return Math.max(1, Math.min(threads, modules.size()));
+    }
+
+    private Void parse(BlockingQueue<MapperFile> files, BlockingQueue<Statement> parsed) throws InterruptedException {
+        for (MapperFile file = files.take(); file != NO_MORE_FILES; file = files.take()) {
+            long start = System.nanoTime();
+            logger.log(Level.FINE, "Parsing mapper XML: " + file.path);
+            MapperFile mapperFile = file;
+            int held = xmlParser.parseMapperXml(file.moduleName, file.path, mapping -> {
+                mapperFile.outstanding.incrementAndGet();
+                put(parsed, new Statement(mapping, null, mapperFile));
+            });
+            if (held > 0) {
+                heldFiles.add(file); // Complete only after the deferred statements are flushed
+            } else {
+                release(file);
+            }
+            parse.record(1, start);
+        }
+        return null;
+    }
+
+    private Void extract(BlockingQueue<Statement> parsed, BlockingQueue<Statement> extracted) throws InterruptedException {
+        for (Statement statement = parsed.take(); statement != NO_MORE_STATEMENTS; statement = parsed.take()) {
+            long start = System.nanoTime();
+            TableXmlMapping mapping = statement.mapping;
+            Map<String, Integer> tables;
+            Set<String> columns;
+            try {
+                tables = sqlExtractor.extractTableUsage(mapping.getRawSql());
+                columns = TableToXmlIndexer.columnReferences(tables.keySet(),
+                    sqlExtractor.extractColumnUsage(mapping.getRawSql()), mapping.getResultMapColumns());
+            } catch (RuntimeException e) {
+                // Skip the statement rather than stall the stages feeding this one
+                logger.log(Level.SEVERE, "Failed to extract tables for method: " + mapping + ", " + e.getMessage());
+                release(statement.file);
+                continue;
+            }
+            logger.log(Level.FINE, "Extracted tables: " + tables + " for method: " + mapping);
+            TableXmlMapping indexed = mapping.withTableAccessModes(tables).withColumns(columns);
+            extraction.record(1, start);
+            extracted.put(new Statement(indexed, tables.keySet(), statement.file));
+        }
+        return null;
+    }
+
+    private Void merge(BlockingQueue<Statement> extracted, Map<String, List<TableXmlMapping>> index, Set<String> touched,
+                       Map<TableXmlMapping, Statement> positions, IndexedFileListener listener)
+            throws InterruptedException {
+        for (Statement statement = extracted.take(); statement != NO_MORE_STATEMENTS; statement = extracted.take()) {
+            long start = System.nanoTime();
+            positions.put(statement.mapping, statement);
+            for (String table : statement.tables) {
+                index.computeIfAbsent(table, k -> new ArrayList<>()).add(statement.mapping);
+                touched.add(table);
+            }
+            statement.file.statements.add(statement.mapping);
+            release(statement.file);
+            merge.record(1, start);
+            reportCompletedFiles(listener);
+        }
+        return null;
+    }
+
+    /**
+     * Marks one part of a file's work as done; the file is complete when nothing is outstanding.
+     */
+    private void release(MapperFile file) {
+        if (file.outstanding.decrementAndGet() == 0) {
+            completedFiles.add(file);
+        }
+    }
+
+    private void reportCompletedFiles(IndexedFileListener listener) {
+        for (MapperFile file = completedFiles.poll(); file != null; file = completedFiles.poll()) {
+            listener.indexed(file.path, file.statements);
+        }
+    }
+
+    private static void put(BlockingQueue<Statement> queue, Statement statement) {
+        try {
+            queue.put(statement);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mapper XML indexing was interrupted", e);
+        }
+    }
+
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Mapper XML indexing was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                : new IllegalStateException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package v3.indexer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only checkpoint log for an index that is built incrementally, so a checkpoint costs
+ * the records added since the previous one instead of the whole index so far.
+ *
+ * Every {@link #append(List)} writes one segment as a single line of {@code <base>.segments.jsonl}.
+ * A segment whose line was not completed (the build was killed while writing it) is ignored and
+ * cut off on {@link #load()}, so a resumed build continues after the last complete segment.
+ * {@link #compact(List)} replaces the segments with a snapshot in {@code <base>.snapshot.json},
+ * written as a {@link CacheFile};
+ * {@link #shouldCompact()} asks for it once the segments outgrow the snapshot, which keeps the
+ * total cost of all compactions linear in the size of the index.
+ *
+ * @param <R> record type, serialized with Gson
+ */
+public class SegmentLog<R> {
+    private static final Logger logger = Logger.getLogger(SegmentLog.class.getName());
+    private static final long MIN_COMPACTION_BYTES = 16L << 20;
+
+    static {
+        logger.setLevel(Level.SEVERE); // Hide info/debug messages by default
+    }
+
+    private final Path segmentFile;
+    private final Path snapshotFile;
+    private final Type listType;
+    private final Gson gson = new Gson();
+    private long nextSegment = 1;
+    private long snapshotBytes;
+
+    /**
+     * @param base path prefix of the log files
+     * @param recordType type of the records
+     */
+    public SegmentLog(Path base, Type recordType) {
+        this.segmentFile = Path.of(base + ".segments.jsonl");
+        this.snapshotFile = Path.of(base + ".snapshot.json");
+        this.listType = TypeToken.getParameterized(List.class, recordType).getType();
+    }
+
+    /**
+     * Returns whether a snapshot or segment file exists, i.e. an earlier build did not finish.
+     */
+    public boolean exists() {
+        return Files.exists(segmentFile) || Files.exists(snapshotFile);
+    }
+
+    /**
+     * Loads the records of the snapshot and of every complete segment after it, in the order
+     * they were written. An incomplete last segment is removed from the file.
+     *
+     * @return the records, empty if there is no log
+     */
+    public List<R> load() {
+        List<R> records = new ArrayList<>();
+        long snapshotSegments = 0;
+        if (Files.exists(snapshotFile)) {
+            try {
+                JsonObject snapshot = CacheFile.readJson(snapshotFile, gson, JsonObject.class);
+                snapshotSegments = snapshot.get("segments").getAsLong();
+                records.addAll(gson.fromJson(snapshot.get("records"), listType));
+                snapshotBytes = Files.size(snapshotFile);
+                nextSegment = snapshotSegments + 1;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Ignoring unreadable snapshot " + snapshotFile + ": " + e.getMessage());
+                delete();
+                return records;
+            }
+        }
+        if (!Files.exists(segmentFile)) {
+            return records;
+        }
+        long validBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(segmentFile, StandardCharsets.UTF_8)) {
+            long fileBytes = Files.size(segmentFile);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long lineBytes = line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (validBytes + lineBytes > fileBytes) {
+                    break; // No line terminator: the segment was not completely written
+                }
+                JsonObject segment = JsonParser.parseString(line).getAsJsonObject();
+                long number = segment.get("segment").getAsLong();
+                if (number > snapshotSegments) {
+                    // Segments up to the snapshot's are left over from an interrupted compaction
+                    records.addAll(gson.fromJson(segment.get("records"), listType));
+                }
+                nextSegment = Math.max(nextSegment, number + 1);
+                validBytes += lineBytes;
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Segment log " + segmentFile + " ends with an incomplete segment: " + e.getMessage());
+        }
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+            if (channel.size() > validBytes) {
+                channel.truncate(validBytes);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to truncate segment log " + segmentFile + ": " + e.getMessage());
+        }
+        return records;
+    }
+
+    /**
+     * Appends the records as one segment.
+     *
+     * @return true if the segment was written completely
+     */
+    public boolean append(List<R> records) {
+        if (records.isEmpty()) {
+            return true;
+        }
+        JsonObject segment = new JsonObject();
+        segment.addProperty("segment", nextSegment);
+        segment.add("records", gson.toJsonTree(records, listType));
+        try (Writer writer = Files.newBufferedWriter(segmentFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(gson.toJson(segment));
+            writer.write("\n");
+            nextSegment++;
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to append segment to " + segmentFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the segments have grown larger than the snapshot, so compacting now costs
+     * no more than what was appended since the last compaction.
+     */
+    public boolean shouldCompact() {
+        try {
+            return Files.exists(segmentFile) && Files.size(segmentFile) > Math.max(snapshotBytes, MIN_COMPACTION_BYTES);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the snapshot and all segments with a snapshot of the given records, which must be
+     * everything loaded and appended so far.
+     */
+    public void compact(List<R> records) {
+        JsonObject snapshot = new JsonObject();
+        snapshot.addProperty("segments", nextSegment - 1);
+        snapshot.add("records", gson.toJsonTree(records, listType));
+        try {
+            CacheFile.writeJson(snapshotFile, gson, snapshot);
+            Files.deleteIfExists(segmentFile);
+            snapshotBytes = Files.size(snapshotFile);
+            logger.log(Level.INFO, "Compacted " + records.size() + " records into " + snapshotFile);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to compact segment log into " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes the log once the index it checkpoints has been written completely.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(segmentFile);
+            CacheFile.delete(snapshotFile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete segment log " + segmentFile + ": " + e.getMessage());
+        }
+        nextSegment = 1;
+        snapshotBytes = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package v3.indexer;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Declared types of the variables that method call scopes can name in one compilation unit, built
+ * in a single pass before the calls are indexed.
+ *
+ * The field table holds the fields of every class in the file; every method gets a scope table of
+ * its parameters followed by the local variables declared anywhere in its body. A scope name is
+ * looked up with the precedence the indexer has always used: fields, then the parameters and then
+ * the local variables of the nearest enclosing method, the first declaration of a name winning in
+ * each. Each lookup is a hash lookup instead of a scan over the file's declarations.
+ *
+ * Not thread-safe; one table is built and used per file by one indexing worker.
+ */
+final class SymbolTable {
+    private final Map<String, Type> fields = new HashMap<>();
+    private final Map<MethodDeclaration, Map<String, Type>> methodScopes = new IdentityHashMap<>();
+    private final Map<Type, String> resolvedTypes = new IdentityHashMap<>();
+
+    SymbolTable(CompilationUnit cu) {
+        for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            for (var field : classDecl.getFields()) {
+                for (VariableDeclarator var : field.getVariables()) {
+                    fields.putIfAbsent(var.getNameAsString(), var.getType());
+                }
+            }
+        }
+        for (MethodDeclaration methodDecl : cu.findAll(MethodDeclaration.class)) {
+            Map<String, Type> scope = new HashMap<>();
+            for (Parameter param : methodDecl.getParameters()) {
+                scope.putIfAbsent(param.getNameAsString(), param.getType());
+            }
+            for (VariableDeclarator localVar : methodDecl.findAll(VariableDeclarator.class)) {
+                scope.putIfAbsent(localVar.getNameAsString(), declaredType(localVar));
+            }
+            methodScopes.put(methodDecl, scope);
+        }
+    }
+
+    /**
+     * Returns the declared type of a local variable; for {@code var x = new Foo(...)} the created type.
+     */
+    private static Type declaredType(VariableDeclarator localVar) {
+        Type type = localVar.getType();
+        if (type.isVarType() && localVar.getInitializer().filter(Expression::isObjectCreationExpr).isPresent()) {
+            return localVar.getInitializer().get().asObjectCreationExpr().getType();
+        }
+        return type;
+    }
+
+    /**
+     * Returns the declared type of the variable a call's scope starts with, or null if it names no
+     * field, parameter or local variable.
+     */
+    Type lookup(MethodCallExpr call, String name) {
+        Type field = fields.get(name);
+        if (field != null) {
+            return field;
+        }
+        MethodDeclaration methodDecl = call.findAncestor(MethodDeclaration.class).orElse(null);
+        if (methodDecl == null) {
+            return null;
+        }
+        Map<String, Type> scope = methodScopes.get(methodDecl);
+        return scope == null ? null : scope.get(name);
+    }
+
+    /**
+     * Resolves a declared type once per declaration; later calls on the same variable reuse the result.
+     */
+    String resolve(Type type, Function<Type, String> resolver) {
+        return resolvedTypes.computeIfAbsent(type, resolver);
+    }
+
+    /**
+     * Returns the name a call's scope starts with: "orders" for {@code orders.get(0).getId()}.
+     * Equal to the text before the first dot of the printed scope, without printing simple chains.
+     */
+    static String leftmostName(Expression scope) {
+        Node node = scope;
+        while (true) {
+            if (node instanceof NameExpr && node.getComment().isEmpty()) {
+                return ((NameExpr) node).getNameAsString();
+            }
+            if (node instanceof FieldAccessExpr && node.getComment().isEmpty()) {
+                node = ((FieldAccessExpr) node).getScope();
+            } else if (node instanceof MethodCallExpr && node.getComment().isEmpty()
+                    && ((MethodCallExpr) node).getScope().isPresent()) {
+                node = ((MethodCallExpr) node).getScope().get();
+            } else {
+                String printed = node.toString();
+                int dot = printed.indexOf('.');
+                return dot < 0 ? printed : printed.substring(0, dot);
+            }
+        }
+    }
+}
@@ -5,29 +5,46 @@ import com.google.gson.reflect.TypeToken;
 import v3.model.TableXmlMapping;
 import v3.model.MavenModule;
 import v3.parser.MyBatisXmlParser;
+import v3.parser.SqlFragmentRegistry;
 import v3.parser.SqlTableExtractor;
 import v3.scanner.MapperXmlLocator;
 
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Builds an index mapping table names to mapper methods.
+ * Every indexed mapper method carries the {@link v3.model.AccessMode} flags of the tables it uses
+ * and the TABLE.COLUMN references of its SQL and resultMap, from which
+ * {@link #buildColumnIndex(Map)} derives the column index.
+ *
+ * The {@code <sql>} fragments of all mapper XMLs are kept in one {@link SqlFragmentRegistry}, saved
+ * next to the index, so includes across namespaces are expanded and an incremental run re-parses
+ * the XMLs that include a fragment of a changed XML.
+ *
+ * Mapper XMLs are found, parsed, extracted and merged by a {@link MapperIndexPipeline}, whose
+ * per-stage counters are available from {@link #getStageStatistics()}.
  */
 public class TableToXmlIndexer {
 
     private final MapperXmlLocator xmlLocator;
-    private final MyBatisXmlParser xmlParser;
+    private MapperIndexPipeline pipeline;
+    private SqlFragmentRegistry fragmentRegistry;
     private final SqlTableExtractor sqlExtractor;
-    private static final int INDEX_WRITE_THRESHOLD = 1000;
+    private static final int SEGMENT_STATEMENTS = 5000;
     private static final String INDEX_FILE_PATH = "table_xml_mapping.json";
+    private static final String MANIFEST_FILE_PATH = "table_xml_mapping.manifest.json";
+    private static final String FRAGMENTS_FILE_PATH = "sql_fragments.json";
+    private static final String CHECKPOINT_LOG_PATH = "table_xml_mapping.checkpoint";
     private final Gson gson = new Gson();
     private final Logger logger = Logger.getLogger(TableToXmlIndexer.class.getName());
+    private Set<String> changedTables;
+    private int threads = 1;
+    private CacheDirectory cacheDirectory = CacheDirectory.WORKING_DIRECTORY;
 
     static {
         Logger.getLogger(TableToXmlIndexer.class.getName()).setLevel(Level.SEVERE); // Hide debug/info messages by default
@@ -35,75 +52,410 @@ public class TableToXmlIndexer {
 
     public TableToXmlIndexer() {
         this.xmlLocator = new MapperXmlLocator();
-        this.xmlParser = new MyBatisXmlParser();
         this.sqlExtractor = new SqlTableExtractor();
     }
 
     /**
      * Builds a mapping from table names to mapper methods across all modules.
+     * When a completely written cached index, its manifest and the fragment registry exist, only added, changed and
+     * deleted mapper XMLs, and the XMLs including fragments of those, are re-parsed and patched into
+     * the cached index.
+     *
+     * A full build checkpoints every completely indexed mapper XML to an append-only
+     * {@link SegmentLog}; if the build is interrupted, the next one resumes with the XMLs that
+     * were checkpointed and have not changed since.
      *
      * @param modules list of Maven modules to index
      * @return map of table name -> list of mapper methods
      */
     public Map<String, List<TableXmlMapping>> buildTableToMapperIndex(List<MavenModule> modules) {
-        // If the index file exists, load and return it
-        java.io.File file = new java.io.File(INDEX_FILE_PATH);
-        if (file.exists()) {
+        FileManifest manifest = new FileManifest(cacheDirectory.resolve(MANIFEST_FILE_PATH));
+        boolean hasManifest = manifest.load() && !manifest.isEmpty();
+
+        // If a complete index file exists, load it and patch in whatever changed since it was written
+        fragmentRegistry = CacheFile.isComplete(cacheDirectory.resolve(INDEX_FILE_PATH)) ? loadFragmentsFromDisk() : null;
+        if (fragmentRegistry != null) {
+            pipeline = new MapperIndexPipeline(xmlLocator, new MyBatisXmlParser(fragmentRegistry), sqlExtractor, threads);
             Map<String, List<TableXmlMapping>> loaded = loadIndexFromDisk();
             if (!loaded.isEmpty()) {
-                logger.log(Level.FINE, "Loaded table-mapper index from disk, skipping indexing.");
-                // Rebuild cachedNamespaces from loaded index
-                return loaded;
+                Map<String, List<TableXmlMapping>> index = new ConcurrentHashMap<>(loaded);
+                Map<Path, String> xmlFileModules = pipeline.discover(modules);
+                FileManifest.Diff diff = manifest.scan(xmlFileModules.keySet());
+                changedTables = new HashSet<>();
+                if (!hasManifest) {
+                    logger.log(Level.FINE, "Loaded table-mapper index from disk, recording current mapper XML state.");
+                } else if (diff.isEmpty()) {
+                    logger.log(Level.FINE, "Loaded table-mapper index from disk, skipping indexing.");
+                } else {
+                    logger.log(Level.FINE, "Mapper XMLs changed since last index (" + diff + "), patching index.");
+                    applyChanges(index, diff, xmlFileModules);
+                    writeToDisk(index);
+                }
+                manifest.commit();
+                new SegmentLog<Checkpoint>(cacheDirectory.resolve(CHECKPOINT_LOG_PATH), Checkpoint.class).delete();
+                return index;
             }
         }
         // Otherwise, run indexing and save
-        Map<String, List<TableXmlMapping>> index = new HashMap<>();
-        int lastWriteSize = 0;
-        for (MavenModule module : modules) {
-            List<Path> mapperXmlFiles = new ArrayList<>(xmlLocator.findMapperXmlFiles(module.getRootPath()));
-            logger.log(Level.FINE, "Found " + mapperXmlFiles.size() + " mapper XML files in module: " + module.getModuleName());
-            for (Path xmlPath : mapperXmlFiles) {
-                logger.log(Level.FINE, "Parsing mapper XML: " + xmlPath);
-                List<TableXmlMapping> tableXmlMappings = xmlParser.parseMapperXml(
-                    module.getModuleName(), xmlPath);
-                for (TableXmlMapping tableXmlMapping : tableXmlMappings) {
-                    Set<String> tables = sqlExtractor.extractTableNames(tableXmlMapping.getRawSql());
-                    logger.log(Level.FINE, "Extracted tables: " + tables + " for method: " + tableXmlMapping.toString());
-                    for (String table : tables) {
-                        index.computeIfAbsent(table, k -> new ArrayList<>()).add(tableXmlMapping);
-                        if (index.size() - lastWriteSize >= INDEX_WRITE_THRESHOLD) {
-                            logger.log(Level.FINE, "Index size threshold exceeded. Writing index to disk.");
-                            writeIndexToDisk(index);
-                            lastWriteSize = index.size();
-                        }
+        changedTables = null;
+        fragmentRegistry = new SqlFragmentRegistry();
+        pipeline = new MapperIndexPipeline(xmlLocator, new MyBatisXmlParser(fragmentRegistry), sqlExtractor, threads);
+        Map<String, List<TableXmlMapping>> index = new ConcurrentHashMap<>();
+        Map<Path, String> xmlFileModules = new HashMap<>();
+        SegmentLog<Checkpoint> checkpoints = new SegmentLog<>(cacheDirectory.resolve(CHECKPOINT_LOG_PATH), Checkpoint.class);
+        List<Checkpoint> checkpointed = resumeFromCheckpoints(checkpoints, index);
+        Set<Path> resumed = new HashSet<>();
+        checkpointed.forEach(checkpoint -> checkpoint.xmls.forEach(xml -> resumed.add(Path.of(xml.path))));
+        List<IndexedMapperXml> segment = new ArrayList<>();
+        int[] segmentStatements = {0};
+        pipeline.index(modules, xmlFileModules, resumed, index, new HashSet<>(), (xmlPath, statements) -> {
+            segment.add(new IndexedMapperXml(xmlPath, statements));
+            segmentStatements[0] += statements.size();
+            if (segmentStatements[0] >= SEGMENT_STATEMENTS && checkpoint(checkpoints, checkpointed, segment)) {
+                segmentStatements[0] = 0;
+            }
+        });
+        logger.log(Level.FINE, "Final write of index to disk (" + fragmentRegistry.size() + " SQL fragments, "
+            + fragmentRegistry.getMemoHits() + " memoized includes, " + resumed.size() + " mapper XMLs resumed).");
+        writeToDisk(index); // Final write
+        manifest.scan(xmlFileModules.keySet());
+        manifest.commit();
+        checkpoints.delete();
+        return index;
+    }
+
+    /**
+     * A completely indexed mapper XML as checkpointed during a full build, with the file state its
+     * statements were read from.
+     */
+    private static final class IndexedMapperXml {
+        private final String path;
+        private final long lastModified;
+        private final long size;
+        private final List<TableXmlMapping> statements;
+
+        IndexedMapperXml(Path xmlPath, List<TableXmlMapping> statements) {
+            java.io.File file = xmlPath.toFile();
+            this.path = xmlPath.toString();
+            this.lastModified = file.lastModified();
+            this.size = file.length();
+            this.statements = new ArrayList<>(statements);
+        }
+
+        boolean isUnchanged() {
+            java.io.File file = new java.io.File(path);
+            return file.lastModified() == lastModified && file.length() == size;
+        }
+    }
+
+    /**
+     * One segment of the checkpoint log: mapper XMLs and the SQL fragments they define and use.
+     */
+    private static final class Checkpoint {
+        private final List<IndexedMapperXml> xmls;
+        private final SqlFragmentRegistry fragments;
+
+        Checkpoint(List<IndexedMapperXml> xmls, SqlFragmentRegistry fragments) {
+            this.xmls = xmls;
+            this.fragments = fragments;
+        }
+    }
+
+    /**
+     * Appends the buffered mapper XMLs as one segment, compacting the log when the segments have
+     * outgrown its snapshot.
+     *
+     * @return true if the segment was written and the buffer cleared
+     */
+    private boolean checkpoint(SegmentLog<Checkpoint> checkpoints, List<Checkpoint> checkpointed,
+                               List<IndexedMapperXml> segment) {
+        Checkpoint checkpoint = new Checkpoint(new ArrayList<>(segment), fragmentRegistry.subset(pathsOf(segment)));
+        if (!checkpoints.append(List.of(checkpoint))) {
+            return false; // Keep the XMLs buffered and try again with the next ones
+        }
+        checkpointed.add(checkpoint);
+        segment.clear();
+        if (checkpoints.shouldCompact()) {
+            checkpoints.compact(checkpointed);
+        }
+        return true;
+    }
+
+    /**
+     * Loads the mapper XMLs checkpointed by an interrupted full build into the index and fragment
+     * registry. XMLs that changed since they were checkpointed, and the XMLs including a fragment
+     * defined in any of them or in an XML that was not checkpointed, are left out and re-parsed.
+     *
+     * @return the checkpoints of the resumed mapper XMLs, which stay in the checkpoint log
+     */
+    private List<Checkpoint> resumeFromCheckpoints(SegmentLog<Checkpoint> checkpoints,
+                                                   Map<String, List<TableXmlMapping>> index) {
+        if (!checkpoints.exists()) {
+            return new ArrayList<>();
+        }
+        List<Checkpoint> loaded = checkpoints.load();
+        Set<String> changedPaths = new HashSet<>();
+        for (Checkpoint checkpoint : loaded) {
+            fragmentRegistry.addAll(checkpoint.fragments);
+            for (IndexedMapperXml xml : checkpoint.xmls) {
+                if (!xml.isUnchanged()) {
+                    changedPaths.add(xml.path);
+                }
+            }
+        }
+        // Statements including a fragment of a changed XML, or of one that was not checkpointed, were
+        // expanded from SQL that may have changed since; so were the statements including theirs
+        Set<String> stalePaths = new HashSet<>(changedPaths);
+        Set<String> staleFragments = fragmentRegistry.undefinedFragments();
+        while (true) {
+            staleFragments.addAll(fragmentRegistry.fragmentsDefinedIn(stalePaths));
+            Set<String> dependents = fragmentRegistry.dependentsOf(staleFragments);
+            if (!stalePaths.addAll(dependents)) {
+                break;
+            }
+        }
+        stalePaths.forEach(fragmentRegistry::removeSource);
+
+        List<IndexedMapperXml> resumed = new ArrayList<>();
+        for (Checkpoint checkpoint : loaded) {
+            for (IndexedMapperXml xml : checkpoint.xmls) {
+                if (stalePaths.contains(xml.path)) {
+                    continue;
+                }
+                for (TableXmlMapping statement : xml.statements) {
+                    for (String table : statement.getTables()) {
+                        index.computeIfAbsent(table, k -> new ArrayList<>()).add(statement);
                     }
                 }
+                resumed.add(xml);
             }
         }
-        logger.log(Level.FINE, "Final write of index to disk.");
-        writeIndexToDisk(index); // Final write
-        return index;
+        logger.log(Level.INFO, "Resuming table-mapper index from " + resumed.size() + " checkpointed mapper XMLs ("
+            + changedPaths.size() + " changed since, " + (stalePaths.size() - changedPaths.size())
+            + " including changed or unchecked SQL fragments).");
+        if (stalePaths.isEmpty()) {
+            return new ArrayList<>(loaded);
+        }
+        // Drop the re-parsed XMLs from the log so they are not resumed after the next interruption
+        List<Checkpoint> kept = new ArrayList<>(List.of(new Checkpoint(resumed, fragmentRegistry.subset(pathsOf(resumed)))));
+        checkpoints.compact(kept);
+        return kept;
+    }
+
+    private static Set<String> pathsOf(List<IndexedMapperXml> xmls) {
+        Set<String> paths = new HashSet<>();
+        xmls.forEach(xml -> paths.add(xml.path));
+        return paths;
+    }
+
+    /**
+     * Sets the directory the cache files are written to; by default the working directory.
+     */
+    public void setCacheDirectory(CacheDirectory cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets the number of threads of the parse and extraction stages, and the maximum number of
+     * modules searched for mapper XMLs at the same time.
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns one line per indexing stage with its item count, time and throughput for the last
+     * {@link #buildTableToMapperIndex(List)} call.
+     */
+    public List<String> getStageStatistics() {
+        return pipeline != null ? pipeline.getStageStatistics() : List.of();
+    }
+
+    /**
+     * Returns the tables whose mapper methods changed during the last
+     * {@link #buildTableToMapperIndex(List)} call, or null if the index was rebuilt from scratch.
+     */
+    public Set<String> getChangedTables() {
+        return changedTables;
     }
 
+    /**
+     * Builds a TABLE.COLUMN -> mapper methods index from a table index. Methods that use every
+     * column of a table (SELECT *, INSERT without a column list) or were indexed without column
+     * information are listed under TABLE.*.
+     *
+     * @param tableIndex map of table name -> list of mapper methods
+     * @return map of upper-case TABLE.COLUMN -> list of mapper methods
+     */
+    public Map<String, List<TableXmlMapping>> buildColumnIndex(Map<String, List<TableXmlMapping>> tableIndex) {
+        Map<String, List<TableXmlMapping>> columnIndex = new HashMap<>();
+        for (Map.Entry<String, List<TableXmlMapping>> entry : tableIndex.entrySet()) {
+            String prefix = entry.getKey().toUpperCase() + ".";
+            for (TableXmlMapping mapping : entry.getValue()) {
+                Set<String> columns = mapping.getColumns();
+                if (columns == null) {
+                    columnIndex.computeIfAbsent(prefix + "*", k -> new ArrayList<>()).add(mapping);
+                    continue;
+                }
+                for (String column : columns) {
+                    if (column.startsWith(prefix)) {
+                        columnIndex.computeIfAbsent(column, k -> new ArrayList<>()).add(mapping);
+                    }
+                }
+            }
+        }
+        return columnIndex;
+    }
+
+    /**
+     * Combines the columns referenced by a statement's SQL with those of its resultMap into
+     * TABLE.COLUMN references. A resultMap column the SQL does not name is selected through a * or
+     * an alias, so it is attributed to the tables selected with * or, if there are none, to all tables.
+     */
+    static Set<String> columnReferences(Set<String> tables, Map<String, Set<String>> sqlColumns,
+                                                List<String> resultMapColumns) {
+        Set<String> references = new LinkedHashSet<>();
+        Set<String> named = new HashSet<>();
+        List<String> starTables = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : sqlColumns.entrySet()) {
+            for (String column : entry.getValue()) {
+                references.add(entry.getKey() + "." + column);
+                named.add(column);
+            }
+            if (entry.getValue().contains("*")) {
+                starTables.add(entry.getKey());
+            }
+        }
+        for (String resultMapColumn : resultMapColumns) {
+            String column = resultMapColumn.replace("\"", "").replace("`", "").toUpperCase();
+            if (named.contains(column)) {
+                continue;
+            }
+            for (String table : starTables.isEmpty() ? tables : starTables) {
+                references.add(table + "." + column);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Removes the statements of changed and deleted XMLs from the index and re-parses changed and added XMLs,
+     * then re-parses the XMLs that include a fragment defined in any of them.
+     */
+    private void applyChanges(Map<String, List<TableXmlMapping>> index, FileManifest.Diff diff,
+                              Map<Path, String> xmlFileModules) {
+        Set<String> stalePaths = diff.getStalePaths();
+        removeStatements(index, stalePaths);
+        Set<String> changedFragments = new HashSet<>();
+        for (String stalePath : stalePaths) {
+            changedFragments.addAll(fragmentRegistry.removeSource(stalePath));
+        }
+        Set<String> parsedPaths = new HashSet<>(stalePaths);
+        Map<Path, String> filesToParse = new LinkedHashMap<>();
+        for (Path xmlPath : diff.getFilesToParse()) {
+            filesToParse.put(xmlPath, xmlFileModules.get(xmlPath));
+            parsedPaths.add(xmlPath.toString());
+        }
+        pipeline.index(filesToParse, index, changedTables);
+        changedFragments.addAll(fragmentRegistry.fragmentsDefinedIn(parsedPaths));
+
+        Set<String> includingPaths = fragmentRegistry.dependentsOf(changedFragments);
+        Map<Path, String> dependents = new LinkedHashMap<>();
+        for (Map.Entry<Path, String> xmlFile : xmlFileModules.entrySet()) {
+            String xmlPath = xmlFile.getKey().toString();
+            if (!parsedPaths.contains(xmlPath) && includingPaths.contains(xmlPath)) {
+                dependents.put(xmlFile.getKey(), xmlFile.getValue());
+            }
+        }
+        if (!dependents.isEmpty()) {
+            logger.log(Level.FINE, "Re-parsing " + dependents.size() + " mapper XMLs that include changed SQL fragments.");
+            Set<String> dependentPaths = new HashSet<>();
+            dependents.keySet().forEach(p -> dependentPaths.add(p.toString()));
+            removeStatements(index, dependentPaths);
+            dependentPaths.forEach(fragmentRegistry::removeSource);
+            pipeline.index(dependents, index, changedTables);
+        }
+    }
+
+    /**
+     * Removes the statements of the given XMLs from the index, recording their tables as changed.
+     */
+    private void removeStatements(Map<String, List<TableXmlMapping>> index, Set<String> xmlPaths) {
+        Iterator<Map.Entry<String, List<TableXmlMapping>>> it = index.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, List<TableXmlMapping>> entry = it.next();
+            if (entry.getValue().removeIf(m -> xmlPaths.contains(m.getMapperXmlPath()))) {
+                changedTables.add(entry.getKey());
+            }
+            if (entry.getValue().isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Loads the fragment registry saved with the index, or returns null if it is missing,
+     * incomplete or damaged, in which case the index is rebuilt.
+     */
+    private SqlFragmentRegistry loadFragmentsFromDisk() {
+        if (!CacheFile.isComplete(cacheDirectory.resolve(FRAGMENTS_FILE_PATH))) {
+            logger.log(Level.FINE, "No complete SQL fragment registry found, rebuilding the table-mapper index.");
+            return null;
+        }
+        try {
+            return CacheFile.readJson(cacheDirectory.resolve(FRAGMENTS_FILE_PATH), gson, SqlFragmentRegistry.class);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to load SQL fragment registry from disk: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the fragment registry and then the index. The index is marked incomplete until both
+     * are written, so an interrupted write never leaves an index paired with another build's registry.
+     */
+    private void writeToDisk(Map<String, List<TableXmlMapping>> index) {
+        try {
+            CacheFile.invalidate(cacheDirectory.resolve(INDEX_FILE_PATH));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to invalidate table-mapper index: " + e.getMessage());
+            return;
+        }
+        if (writeFragmentsToDisk()) {
+            writeIndexToDisk(index);
+        }
+    }
+
+    private boolean writeFragmentsToDisk() {
+        try {
+            CacheFile.writeJson(cacheDirectory.resolve(FRAGMENTS_FILE_PATH), gson, fragmentRegistry);
+            return true;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to save SQL fragment registry to disk: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads the index, or returns an empty map if it is incomplete or damaged, in which case only the
+     * table-mapper index is rebuilt; the damaged file is replaced by the rebuild's final write.
+     */
     private Map<String, List<TableXmlMapping>> loadIndexFromDisk() {
-        try (FileReader reader = new FileReader(INDEX_FILE_PATH)) {
+        try {
             logger.log(Level.FINE, "Loading table-mapper index from disk: " + INDEX_FILE_PATH);
-            return gson.fromJson(reader, new TypeToken<Map<String, List<TableXmlMapping>>>(){}.getType());
-        } catch (com.google.gson.JsonSyntaxException | java.io.EOFException e) {
-            logger.log(Level.SEVERE, "Index file is empty or corrupted. Deleting: " + INDEX_FILE_PATH + " (" + e.getMessage() + ")");
-            java.io.File file = new java.io.File(INDEX_FILE_PATH);
-            if (file.exists()) file.delete();
-            return new HashMap<>();
+            Map<String, List<TableXmlMapping>> loaded = CacheFile.readJson(cacheDirectory.resolve(INDEX_FILE_PATH), gson,
+                new TypeToken<Map<String, List<TableXmlMapping>>>(){}.getType());
+            return loaded != null ? loaded : new HashMap<>();
         } catch (IOException e) {
-            logger.log(Level.SEVERE, "Failed to load table-mapper index from disk: " + e.getMessage());
+            logger.log(Level.SEVERE, "Table-mapper index is incomplete or corrupted, rebuilding: " + e.getMessage());
             return new HashMap<>();
         }
     }
 
     private void writeIndexToDisk(Map<String, List<TableXmlMapping>> index) {
-        try (FileWriter writer = new FileWriter(INDEX_FILE_PATH)) {
+        try {
             logger.log(Level.FINE, "Saving table-mapper index to disk: " + INDEX_FILE_PATH);
-            gson.toJson(index, writer);
+            CacheFile.writeJson(cacheDirectory.resolve(INDEX_FILE_PATH), gson, index);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Failed to save table-mapper index to disk: " + e.getMessage());
         }
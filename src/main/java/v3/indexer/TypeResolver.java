@@ -0,0 +1,325 @@
+package v3.indexer;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithTypeParameters;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.TypeParameter;
+import v3.model.MavenModule;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves the types of fields, parameters and local variables to fully qualified class names
+ * across every module of the monolith.
+ *
+ * Names are resolved the way the compiler scopes them: types declared in the same file, single-type
+ * imports, the file's own package, on-demand imports and finally java.lang. Source types are looked
+ * up in an index of the Java files under every registered module source root; JDK and library types
+ * through the class loader, as JavaParser's ReflectionTypeSolver does. No other file is parsed.
+ *
+ * Apart from the types a file declares itself, which are looked up first, the result of a lookup only
+ * depends on the type name and the file's package and imports, so it is memoized in a concurrent map
+ * keyed by both. Files sharing a package and imports, which is most of a layered code base, share
+ * their cache entries. Lookup counts, cache hits and the time spent resolving are kept for reporting.
+ *
+ * Safe to use from several threads; {@link #registerSourceFiles(List, List)} must not run
+ * concurrently with lookups.
+ */
+public final class TypeResolver {
+    private static final String UNRESOLVED = "";
+
+    private final Set<String> sourceTypes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Imports> imports = new ConcurrentHashMap<>();
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> classpathTypes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextImportsId = new AtomicInteger();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder resolveNanos = new LongAdder();
+
+    /**
+     * Name resolution context of one compilation unit: the types it declares, and its package and
+     * imports, which are shared by all compilation units with the same ones.
+     */
+    public static final class Scope {
+        private final Imports imports;
+        private final Map<String, String> declaredTypes;
+
+        private Scope(Imports imports, Map<String, String> declaredTypes) {
+            this.imports = imports;
+            this.declaredTypes = declaredTypes;
+        }
+
+        /**
+         * Returns the fully qualified name of a type declared in the compilation unit, nested types
+         * as "com.example.Outer.Inner", or null if it declares no type of that name.
+         */
+        public String declaredType(String simpleName) {
+            return declaredTypes.get(simpleName);
+        }
+    }
+
+    private static final class Imports {
+        private final int id;
+        private final String packageName;
+        private final Map<String, String> singleTypeImports;
+        private final List<String> onDemandImports;
+
+        Imports(int id, String packageName, Map<String, String> singleTypeImports, List<String> onDemandImports) {
+            this.id = id;
+            this.packageName = packageName;
+            this.singleTypeImports = singleTypeImports;
+            this.onDemandImports = onDemandImports;
+        }
+    }
+
+    /**
+     * Replaces the source type index with the types of the given Java files, named after their path
+     * below the source root of the module they belong to, and clears the memoized lookups.
+     */
+    public void registerSourceFiles(List<MavenModule> modules, List<Path> javaFiles) {
+        sourceTypes.clear();
+        resolved.clear();
+        imports.clear();
+        List<Path> roots = new ArrayList<>();
+        for (MavenModule module : modules) {
+            if (module.getJavaSourcePath() != null) {
+                roots.add(module.getJavaSourcePath());
+            }
+        }
+        Path root = null;
+        for (Path javaFile : javaFiles) {
+            if (root == null || !javaFile.startsWith(root)) {
+                root = null;
+                for (Path candidate : roots) {
+                    if (javaFile.startsWith(candidate)) {
+                        root = candidate;
+                        break;
+                    }
+                }
+                if (root == null) {
+                    continue;
+                }
+            }
+            String relative = root.relativize(javaFile).toString().replace('\\', '/');
+            if (relative.endsWith(".java")) {
+                String name = relative.substring(0, relative.length() - ".java".length());
+                if (!name.endsWith("package-info") && !name.endsWith("module-info")) {
+                    sourceTypes.add(name.replace('/', '.'));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of source types in the index.
+     */
+    public int getSourceTypeCount() {
+        return sourceTypes.size();
+    }
+
+    /**
+     * Returns the name resolution scope of a compilation unit.
+     */
+    public Scope scopeOf(CompilationUnit cu) {
+        String packageName = cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("");
+        Map<String, String> singleTypeImports = new HashMap<>();
+        List<String> onDemandImports = new ArrayList<>();
+        StringBuilder key = new StringBuilder(packageName).append(';');
+        for (ImportDeclaration imp : cu.getImports()) {
+            if (imp.isStatic()) {
+                continue;
+            }
+            String name = imp.getNameAsString();
+            if (imp.isAsterisk()) {
+                onDemandImports.add(name);
+                key.append(name).append(".*;");
+            } else {
+                singleTypeImports.putIfAbsent(name.substring(name.lastIndexOf('.') + 1), name);
+                key.append(name).append(';');
+            }
+        }
+        // Outer types first, so a nested type never shadows a top-level one of the same name
+        Map<String, String> declaredTypes = new HashMap<>();
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<Map.Entry<TypeDeclaration<?>, String>> level = new ArrayList<>();
+        for (TypeDeclaration<?> type : cu.getTypes()) {
+            level.add(Map.entry(type, prefix + type.getNameAsString()));
+        }
+        while (!level.isEmpty()) {
+            List<Map.Entry<TypeDeclaration<?>, String>> next = new ArrayList<>();
+            for (Map.Entry<TypeDeclaration<?>, String> type : level) {
+                String fqcn = type.getValue();
+                declaredTypes.putIfAbsent(type.getKey().getNameAsString(), fqcn);
+                for (Node member : type.getKey().getMembers()) {
+                    if (member instanceof TypeDeclaration) {
+                        TypeDeclaration<?> nested = (TypeDeclaration<?>) member;
+                        next.add(Map.entry(nested, fqcn + "." + nested.getNameAsString()));
+                    }
+                }
+            }
+            level = next;
+        }
+        Imports shared = imports.computeIfAbsent(key.toString(),
+            k -> new Imports(nextImportsId.getAndIncrement(), packageName, singleTypeImports, onDemandImports));
+        return new Scope(shared, declaredTypes);
+    }
+
+    /**
+     * Resolves a declared type to its fully qualified name, without type arguments; arrays keep
+     * their dimensions and primitives their keyword.
+     *
+     * @return the fully qualified name, or null if the type cannot be resolved
+     */
+    public String resolve(Scope scope, Type type) {
+        long start = System.nanoTime();
+        lookups.increment();
+        try {
+            String name = resolveType(scope, type);
+            if (name == null) {
+                unresolved.increment();
+            }
+            return name;
+        } finally {
+            resolveNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private String resolveType(Scope scope, Type type) {
+        if (type.isPrimitiveType()) {
+            return type.asString();
+        }
+        if (type.isArrayType()) {
+            String component = resolveType(scope, type.asArrayType().getComponentType());
+            return component == null ? null : component + "[]";
+        }
+        if (!type.isClassOrInterfaceType()) {
+            return null; // var, wildcards, unions, ...
+        }
+        String name = type.asClassOrInterfaceType().getNameWithScope();
+        int dot = name.indexOf('.');
+        String first = dot < 0 ? name : name.substring(0, dot);
+        if (isTypeParameterInScope(type, first)) {
+            return null;
+        }
+        String declared = scope.declaredTypes.get(first);
+        if (declared != null) {
+            return dot < 0 ? declared : declared + name.substring(dot);
+        }
+        // Not declared in the file, so only the package and imports matter
+        String key = scope.imports.id + "|" + name;
+        String cached = resolved.get(key);
+        if (cached != null) {
+            hits.increment();
+        } else {
+            cached = resolveName(scope.imports, first, dot < 0 ? "" : name.substring(dot));
+            resolved.put(key, cached);
+        }
+        return cached.isEmpty() ? null : cached;
+    }
+
+    private String resolveName(Imports scope, String first, String rest) {
+        String fqcn = resolveSimpleName(scope, first);
+        if (fqcn != null) {
+            return fqcn + rest;
+        }
+        if (!rest.isEmpty()) {
+            return first + rest; // Already qualified
+        }
+        return UNRESOLVED;
+    }
+
+    private String resolveSimpleName(Imports scope, String name) {
+        String fqcn = scope.singleTypeImports.get(name);
+        if (fqcn != null) {
+            return fqcn;
+        }
+        String samePackage = scope.packageName.isEmpty() ? name : scope.packageName + "." + name;
+        if (sourceTypes.contains(samePackage)) {
+            return samePackage;
+        }
+        String match = null;
+        for (String onDemand : scope.onDemandImports) {
+            String candidate = onDemand + "." + name;
+            if (isKnownType(candidate)) {
+                if (match != null && !match.equals(candidate)) {
+                    return null; // Ambiguous, the compiler would reject it
+                }
+                match = candidate;
+            }
+        }
+        if (match != null) {
+            return match;
+        }
+        String javaLang = "java.lang." + name;
+        return isClasspathType(javaLang) ? javaLang : null;
+    }
+
+    private boolean isKnownType(String fqcn) {
+        return sourceTypes.contains(fqcn) || isClasspathType(fqcn);
+    }
+
+    private boolean isClasspathType(String fqcn) {
+        return classpathTypes.computeIfAbsent(fqcn,
+            name -> ClassLoader.getSystemResource(name.replace('.', '/') + ".class") != null);
+    }
+
+    private static boolean isTypeParameterInScope(Node node, String name) {
+        for (Node n = node.getParentNode().orElse(null); n != null; n = n.getParentNode().orElse(null)) {
+            if (n instanceof NodeWithTypeParameters) {
+                for (TypeParameter parameter : ((NodeWithTypeParameters<?>) n).getTypeParameters()) {
+                    if (parameter.getNameAsString().equals(name)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getUnresolvedCount() {
+        return unresolved.sum();
+    }
+
+    /**
+     * Returns the time spent in {@link #resolve(Scope, Type)}, in nanoseconds.
+     */
+    public long getResolveNanos() {
+        return resolveNanos.sum();
+    }
+
+    /**
+     * Returns the share of lookups answered from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TypeResolver{sourceTypes=%d, importContexts=%d, lookups=%d, hits=%d, hitRate=%.1f%%, unresolved=%d, time=%dms}",
+            sourceTypes.size(), imports.size(), getLookupCount(), getHitCount(), getHitRate() * 100,
+            getUnresolvedCount(), getResolveNanos() / 1_000_000);
+    }
+}
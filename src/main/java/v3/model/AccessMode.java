@@ -0,0 +1,53 @@
+package v3.model;
+
+/**
+ * Bit flags describing how a statement uses a table.
+ */
+public final class AccessMode {
+
+    /** The table is read (FROM, JOIN, USING, subqueries). */
+    public static final int READ = 1;
+
+    /** The table is the target of an INSERT, UPDATE, DELETE, MERGE or TRUNCATE. */
+    public static final int WRITE = 2;
+
+    public static final int READ_WRITE = READ | WRITE;
+
+    private AccessMode() {
+    }
+
+    /**
+     * Returns "READ", "WRITE", "READ_WRITE" or "NONE" for the given flags.
+     */
+    public static String toString(int flags) {
+        switch (flags & READ_WRITE) {
+            case READ:
+                return "READ";
+            case WRITE:
+                return "WRITE";
+            case READ_WRITE:
+                return "READ_WRITE";
+            default:
+                return "NONE";
+        }
+    }
+
+    /**
+     * Parses "read", "write" or "read_write" (case-insensitive) into flags.
+     *
+     * @throws IllegalArgumentException for any other value
+     */
+    public static int parse(String value) {
+        switch (value.toUpperCase()) {
+            case "READ":
+                return READ;
+            case "WRITE":
+                return WRITE;
+            case "READ_WRITE":
+            case "ALL":
+                return READ_WRITE;
+            default:
+                throw new IllegalArgumentException("Unknown access mode: " + value);
+        }
+    }
+}
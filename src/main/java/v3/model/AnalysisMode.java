@@ -0,0 +1,17 @@
+package v3.model;
+
+/**
+ * How an impact query explores the reverse call graph.
+ */
+public enum AnalysisMode {
+    /**
+     * Enumerate every simple call path from the repository methods up to the service layer.
+     */
+    PATHS,
+
+    /**
+     * Report each distinct impacted entry point once, with one shortest witness chain.
+     * Runs in time linear in the size of the graph.
+     */
+    REACHABILITY
+}
@@ -0,0 +1,84 @@
+package v3.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Combined impact analysis result for several tables analyzed in one batch.
+ */
+public final class BatchImpactResult {
+    private final AnalysisMode mode;
+    private final List<ImpactAnalysisResult> tableResults;
+    private final Map<String, List<String>> entryPointTables; // entry point -> tables reaching it
+    private final int totalCallChains;
+    private final int traversedRepositoryMethods;
+    private final int reusedRepositoryMethods;
+
+    /**
+     * @param mode the analysis mode used for every table
+     * @param tableResults one result per table, in analysis order
+     * @param traversedRepositoryMethods repository methods whose callers were traversed
+     * @param reusedRepositoryMethods repository method lookups shared with an earlier table of the batch
+     */
+    public BatchImpactResult(AnalysisMode mode, List<ImpactAnalysisResult> tableResults,
+                             int traversedRepositoryMethods, int reusedRepositoryMethods) {
+        this.mode = Objects.requireNonNull(mode, "mode cannot be null");
+        this.tableResults = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(tableResults)));
+        this.traversedRepositoryMethods = traversedRepositoryMethods;
+        this.reusedRepositoryMethods = reusedRepositoryMethods;
+
+        Map<String, List<String>> entryPoints = new LinkedHashMap<>();
+        int chains = 0;
+        for (ImpactAnalysisResult result : this.tableResults) {
+            chains += result.getCallChains().size();
+            for (String entryPoint : result.getImpactedEntryPoints()) {
+                entryPoints.computeIfAbsent(entryPoint, k -> new ArrayList<>()).add(result.getTableName());
+            }
+        }
+        this.entryPointTables = Collections.unmodifiableMap(entryPoints);
+        this.totalCallChains = chains;
+    }
+
+    public AnalysisMode getMode() {
+        return mode;
+    }
+
+    public List<ImpactAnalysisResult> getTableResults() {
+        return tableResults;
+    }
+
+    /**
+     * Distinct entry points over all tables, each with the tables whose changes reach it.
+     */
+    public Map<String, List<String>> getEntryPointTables() {
+        return entryPointTables;
+    }
+
+    public int getTotalCallChains() {
+        return totalCallChains;
+    }
+
+    public int getTraversedRepositoryMethods() {
+        return traversedRepositoryMethods;
+    }
+
+    public int getReusedRepositoryMethods() {
+        return reusedRepositoryMethods;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchImpactResult{" +
+               "mode=" + mode +
+               ", tableCount=" + tableResults.size() +
+               ", entryPointCount=" + entryPointTables.size() +
+               ", callChainCount=" + totalCallChains +
+               ", traversedRepositoryMethods=" + traversedRepositoryMethods +
+               ", reusedRepositoryMethods=" + reusedRepositoryMethods +
+               '}';
+    }
+}
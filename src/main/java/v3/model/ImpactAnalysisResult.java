@@ -1,14 +1,19 @@
 package v3.model;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Complete impact analysis result for a table.
  */
 public final class ImpactAnalysisResult {
     private final String tableName;
+    private final AnalysisMode mode;
+    private final List<String> impactedEntryPoints;
     private final List<TableImpact> impacts;
     private final List<CallChain> callChains;
     private final List<String> unresolvedMapperReferences;
@@ -17,7 +22,15 @@ public final class ImpactAnalysisResult {
     public ImpactAnalysisResult(String tableName, List<TableImpact> impacts,
                                List<CallChain> callChains,
                                List<String> unresolvedMapperReferences, List<String> warnings) {
+        this(tableName, AnalysisMode.PATHS, impacts, callChains, unresolvedMapperReferences, warnings);
+    }
+
+    public ImpactAnalysisResult(String tableName, AnalysisMode mode, List<TableImpact> impacts,
+                               List<CallChain> callChains,
+                               List<String> unresolvedMapperReferences, List<String> warnings) {
         this.tableName = Objects.requireNonNull(tableName, "tableName cannot be null");
+        this.mode = Objects.requireNonNull(mode, "mode cannot be null");
+        this.impactedEntryPoints = Collections.unmodifiableList(distinctEntryPoints(callChains));
         this.impacts = Collections.unmodifiableList(Objects.requireNonNull(impacts));
         this.callChains = Collections.unmodifiableList(Objects.requireNonNull(callChains));
         this.unresolvedMapperReferences = Collections.unmodifiableList(
@@ -29,6 +42,17 @@ public final class ImpactAnalysisResult {
         return tableName;
     }
 
+    public AnalysisMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Distinct entry points (top-level callers) of the call chains, in first-seen order.
+     */
+    public List<String> getImpactedEntryPoints() {
+        return impactedEntryPoints;
+    }
+
     public List<TableImpact> getImpacts() {
         return impacts;
     }
@@ -45,10 +69,20 @@ public final class ImpactAnalysisResult {
         return warnings;
     }
 
+    private static List<String> distinctEntryPoints(List<CallChain> callChains) {
+        Set<String> entryPoints = new LinkedHashSet<>();
+        for (CallChain chain : Objects.requireNonNull(callChains)) {
+            entryPoints.add(chain.getEntryPoint());
+        }
+        return new ArrayList<>(entryPoints);
+    }
+
     @Override
     public String toString() {
         return "ImpactAnalysisResult{" +
                "tableName='" + tableName + '\'' +
+               ", mode=" + mode +
+               ", entryPointCount=" + impactedEntryPoints.size() +
                ", impactCount=" + impacts.size() +
                ", callChainCount=" + callChains.size() +
                ", unresolvedCount=" + unresolvedMapperReferences.size() +
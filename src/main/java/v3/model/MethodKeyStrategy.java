@@ -0,0 +1,101 @@
+package v3.model;
+
+import java.util.List;
+
+/**
+ * How methods are keyed in the call graph. The call indexer keys the methods that make calls and
+ * the methods they call the same way, and the table -> repository mapping keys the DbCmd methods
+ * implementing mapper statements so that they match.
+ *
+ * Only the method part of a key carries the signature and it never contains a dot, so the class of
+ * any key is still everything before its last dot.
+ */
+public enum MethodKeyStrategy {
+    /**
+     * {@code com.example.OrderDbCmd.save}: every overload of a method is one node (default).
+     */
+    NAME,
+
+    /**
+     * {@code com.example.OrderDbCmd.save/2}: overloads with different parameter counts are
+     * different nodes; a varargs parameter counts as one.
+     */
+    ARITY,
+
+    /**
+     * {@code com.example.OrderDbCmd.save(Order,int[])}: every overload is a node, named by the
+     * simple names of its erased parameter types. Calls that cannot be matched to a declared
+     * overload are keyed by arity.
+     */
+    PARAMETER_TYPES;
+
+    /**
+     * Returns the key of a declared method.
+     *
+     * @param classAndMethod fully qualified class name and method name, "com.example.OrderDbCmd.save"
+     * @param parameterTypes parameter types as written in the source, varargs as "T..."
+     */
+    public String key(String classAndMethod, List<String> parameterTypes) {
+        switch (this) {
+            case ARITY:
+                return arityKey(classAndMethod, parameterTypes.size());
+            case PARAMETER_TYPES:
+                StringBuilder key = new StringBuilder(classAndMethod).append('(');
+                for (int i = 0; i < parameterTypes.size(); i++) {
+                    if (i > 0) {
+                        key.append(',');
+                    }
+                    key.append(simpleTypeName(parameterTypes.get(i)));
+                }
+                return key.append(')').toString();
+            default:
+                return classAndMethod;
+        }
+    }
+
+    /**
+     * Returns the key of a method by its parameter count, used by ARITY and as the fallback of
+     * PARAMETER_TYPES for calls to methods whose declaration is unknown.
+     */
+    public static String arityKey(String classAndMethod, int parameterCount) {
+        return classAndMethod + "/" + parameterCount;
+    }
+
+    /**
+     * Returns a key without its signature: "com.example.OrderDbCmd.save" for any strategy's key.
+     */
+    public static String methodOf(String key) {
+        int paren = key.indexOf('(');
+        if (paren >= 0) {
+            return key.substring(0, paren);
+        }
+        int slash = key.lastIndexOf('/');
+        return slash > key.lastIndexOf('.') ? key.substring(0, slash) : key;
+    }
+
+    /**
+     * Returns the simple name of an erased type as written: "Map<String, List<Long>>" is "Map",
+     * "java.util.Map.Entry[]" is "Entry[]" and the varargs "String..." is "String[]".
+     */
+    public static String simpleTypeName(String type) {
+        StringBuilder erased = new StringBuilder(type.length());
+        int depth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0 && !Character.isWhitespace(c)) {
+                erased.append(c);
+            }
+        }
+        String name = erased.toString();
+        if (name.endsWith("...")) {
+            name = name.substring(0, name.length() - 3) + "[]";
+        }
+        int dims = name.indexOf('[');
+        String base = dims < 0 ? name : name.substring(0, dims);
+        return base.substring(base.lastIndexOf('.') + 1) + (dims < 0 ? "" : name.substring(dims));
+    }
+}
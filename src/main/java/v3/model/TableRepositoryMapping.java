@@ -1,6 +1,7 @@
 package v3.model;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -11,12 +12,19 @@ public class TableRepositoryMapping {
     private final List<String> xmlFiles;
     private final List<String> repositoryClasses;
     private final List<String> repositoryMethods;
+    private final Map<String, Integer> methodAccessModes; // repository method -> AccessMode flags
 
     public TableRepositoryMapping(String tableName, List<String> xmlFiles, List<String> repositoryClasses, List<String> repositoryMethods) {
+        this(tableName, xmlFiles, repositoryClasses, repositoryMethods, null);
+    }
+
+    public TableRepositoryMapping(String tableName, List<String> xmlFiles, List<String> repositoryClasses,
+                                  List<String> repositoryMethods, Map<String, Integer> methodAccessModes) {
         this.tableName = tableName;
         this.xmlFiles = xmlFiles;
         this.repositoryClasses = repositoryClasses;
         this.repositoryMethods = repositoryMethods;
+        this.methodAccessModes = methodAccessModes;
     }
 
     public String getTableName() {
@@ -35,6 +43,15 @@ public class TableRepositoryMapping {
         return repositoryMethods;
     }
 
+    /**
+     * Returns the {@link AccessMode} flags with which the repository method uses this table,
+     * or {@link AccessMode#READ_WRITE} if they are unknown.
+     */
+    public int getAccessMode(String repositoryMethod) {
+        Integer flags = methodAccessModes != null ? methodAccessModes.get(repositoryMethod) : null;
+        return flags != null ? flags : AccessMode.READ_WRITE;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
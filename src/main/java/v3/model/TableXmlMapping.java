@@ -2,7 +2,15 @@ package v3.model;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Represents a MyBatis mapper method with its SQL and metadata.
@@ -14,15 +22,59 @@ public final class TableXmlMapping {
     private final String statementId;
     private final String statementType; // select, insert, update, delete
     private final String rawSql;
+    private final Map<String, Integer> tableAccessModes; // table -> AccessMode flags
+    private final List<String> resultMapColumns; // columns mapped by the statement's resultMap
+    private final Set<String> columns; // TABLE.COLUMN references, null if not extracted
 
     public TableXmlMapping(String moduleName, String mapperXmlPath, String namespace,
                            String statementId, String statementType, String rawSql) {
+        this(moduleName, mapperXmlPath, namespace, statementId, statementType, rawSql, Map.of());
+    }
+
+    public TableXmlMapping(String moduleName, String mapperXmlPath, String namespace,
+                           String statementId, String statementType, String rawSql,
+                           Map<String, Integer> tableAccessModes) {
+        this(moduleName, mapperXmlPath, namespace, statementId, statementType, rawSql, tableAccessModes, List.of(), null);
+    }
+
+    private TableXmlMapping(String moduleName, String mapperXmlPath, String namespace,
+                            String statementId, String statementType, String rawSql,
+                            Map<String, Integer> tableAccessModes, Collection<String> resultMapColumns,
+                            Collection<String> columns) {
         this.moduleName = Objects.requireNonNull(moduleName, "moduleName cannot be null");
         this.mapperXmlPath = Objects.requireNonNull(mapperXmlPath, "mapperXmlPath cannot be null");
         this.namespace = Objects.requireNonNull(namespace, "namespace cannot be null");
         this.statementId = Objects.requireNonNull(statementId, "statementId cannot be null");
         this.statementType = Objects.requireNonNull(statementType, "statementType cannot be null");
         this.rawSql = Objects.requireNonNull(rawSql, "rawSql cannot be null");
+        this.tableAccessModes = Collections.unmodifiableMap(new HashMap<>(
+            Objects.requireNonNull(tableAccessModes, "tableAccessModes cannot be null")));
+        this.resultMapColumns = Collections.unmodifiableList(new ArrayList<>(resultMapColumns));
+        this.columns = columns != null ? Collections.unmodifiableSet(new LinkedHashSet<>(columns)) : null;
+    }
+
+    /**
+     * Returns a copy of this mapping carrying the given per-table access modes.
+     */
+    public TableXmlMapping withTableAccessModes(Map<String, Integer> tableAccessModes) {
+        return new TableXmlMapping(moduleName, mapperXmlPath, namespace, statementId, statementType, rawSql,
+            tableAccessModes, getResultMapColumns(), columns);
+    }
+
+    /**
+     * Returns a copy of this mapping carrying the columns of the statement's resultMap.
+     */
+    public TableXmlMapping withResultMapColumns(Collection<String> resultMapColumns) {
+        return new TableXmlMapping(moduleName, mapperXmlPath, namespace, statementId, statementType, rawSql,
+            tableAccessModes, resultMapColumns, columns);
+    }
+
+    /**
+     * Returns a copy of this mapping carrying the given TABLE.COLUMN references.
+     */
+    public TableXmlMapping withColumns(Collection<String> columns) {
+        return new TableXmlMapping(moduleName, mapperXmlPath, namespace, statementId, statementType, rawSql,
+            tableAccessModes, getResultMapColumns(), columns);
     }
 
     public String getModuleName() {
@@ -53,6 +105,41 @@ public final class TableXmlMapping {
         return rawSql;
     }
 
+    /**
+     * Returns the {@link AccessMode} flags with which this statement uses the given table.
+     * Mappings indexed without access modes fall back to the statement type: selects read,
+     * everything else may read and write.
+     */
+    public int getAccessMode(String tableName) {
+        Integer flags = tableAccessModes != null ? tableAccessModes.get(tableName) : null;
+        if (flags != null) {
+            return flags;
+        }
+        return statementType.equalsIgnoreCase("select") ? AccessMode.READ : AccessMode.READ_WRITE;
+    }
+
+    /**
+     * Returns the tables this statement was indexed with access modes for.
+     */
+    public Set<String> getTables() {
+        return tableAccessModes != null ? tableAccessModes.keySet() : Set.of();
+    }
+
+    /**
+     * Returns the column names mapped by the statement's resultMap, as written in the XML.
+     */
+    public List<String> getResultMapColumns() {
+        return resultMapColumns != null ? resultMapColumns : List.of();
+    }
+
+    /**
+     * Returns the TABLE.COLUMN references of this statement, where COLUMN "*" stands for every
+     * column of the table, or null if the mapping was indexed without column information.
+     */
+    public Set<String> getColumns() {
+        return columns;
+    }
+
     public String getFullyQualifiedId() {
         return namespace + "." + statementId;
     }
@@ -0,0 +1,624 @@
+package v3.parser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Extracts the package, type names and method signatures of a Java source file without building a
+ * JavaParser AST.
+ *
+ * A lexer in the style of the v2 CodeSanitizer state machine skips comments and string, char and
+ * text block literals and splits the rest into identifiers, literals and one-character symbols. A
+ * single pass over the tokens then tracks which braces open a type body, so method declarations
+ * are found in top-level, nested, local and anonymous classes alike, the way JavaParser's
+ * {@code findAll(MethodDeclaration.class)} finds them; constructors and annotation members are not
+ * methods.
+ *
+ * The scanner does not guess: for anything it cannot classify with certainty (unbalanced brackets,
+ * unicode escapes outside literals, a method named after its class, ...) {@link #scan(String)}
+ * returns null and the caller falls back to the full parser.
+ */
+public final class JavaDeclarationScanner {
+
+    private static final Set<String> KEYWORDS = Set.of(
+        "abstract", "assert", "break", "case", "catch", "class", "const", "continue", "default", "do",
+        "else", "enum", "extends", "final", "finally", "for", "goto", "if", "implements", "import",
+        "instanceof", "interface", "native", "new", "package", "private", "protected", "public", "return",
+        "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", "transient",
+        "try", "volatile", "while", "true", "false", "null");
+
+    private static final String STRING_LITERAL = "\"\"";
+    private static final String NUMBER_LITERAL = "0";
+
+    private JavaDeclarationScanner() {
+    }
+
+    /**
+     * Declarations of one source file.
+     */
+    public static final class Declarations {
+        private final String packageName;
+        private final List<String> typeNames;
+        private final List<MethodSignature> methods;
+
+        Declarations(String packageName, List<String> typeNames, List<MethodSignature> methods) {
+            this.packageName = packageName;
+            this.typeNames = Collections.unmodifiableList(typeNames);
+            this.methods = Collections.unmodifiableList(methods);
+        }
+
+        /**
+         * Returns the package name, empty for the default package.
+         */
+        public String getPackageName() {
+            return packageName;
+        }
+
+        /**
+         * Returns the simple names of the named types declared in the file, in source order.
+         */
+        public List<String> getTypeNames() {
+            return typeNames;
+        }
+
+        /**
+         * Returns the method declarations of the file, in source order.
+         */
+        public List<MethodSignature> getMethods() {
+            return methods;
+        }
+    }
+
+    /**
+     * A method declaration: name, declaring type and parameter types as written in the source,
+     * e.g. {@code Map<String, List<Integer>>} or {@code String...} for varargs.
+     */
+    public static final class MethodSignature {
+        private final String name;
+        private final String declaringType;
+        private final List<String> parameterTypes;
+
+        MethodSignature(String name, String declaringType, List<String> parameterTypes) {
+            this.name = name;
+            this.declaringType = declaringType;
+            this.parameterTypes = Collections.unmodifiableList(parameterTypes);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the name of the declaring type, qualified with its enclosing types for member
+         * types ("Outer.Inner"), or null for an anonymous class.
+         */
+        public String getDeclaringType() {
+            return declaringType;
+        }
+
+        public List<String> getParameterTypes() {
+            return parameterTypes;
+        }
+
+        public int getParameterCount() {
+            return parameterTypes.size();
+        }
+
+        @Override
+        public String toString() {
+            return name + "(" + String.join(", ", parameterTypes) + ")";
+        }
+    }
+
+    /**
+     * Scans a source file, read as UTF-8.
+     *
+     * @return the declarations, or null if the file has to be parsed with the full parser
+     */
+    public static Declarations scan(Path javaFile) throws IOException {
+        return scan(new String(Files.readAllBytes(javaFile), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Scans Java source code.
+     *
+     * @return the declarations, or null if the source has to be parsed with the full parser
+     */
+    public static Declarations scan(String source) {
+        List<String> tokens = tokenize(source);
+        if (tokens == null) {
+            return null;
+        }
+        int[] match = matchBrackets(tokens);
+        if (match == null) {
+            return null;
+        }
+        return new DeclarationPass(tokens, match).run();
+    }
+
+    // --- Lexer ---
+
+    /**
+     * Splits the source into tokens, without comments and with literals replaced by placeholders.
+     * Returns null for unterminated comments or literals and for unicode escapes outside literals.
+     */
+    static List<String> tokenize(String src) {
+        List<String> tokens = new ArrayList<>(src.length() / 4);
+        final int n = src.length();
+        int i = 0;
+        while (i < n) {
+            char c = src.charAt(i);
+            char n1 = (i + 1 < n) ? src.charAt(i + 1) : '\0';
+
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            // Comments
+            if (c == '/' && n1 == '/') {
+                while (i < n && src.charAt(i) != '\n' && src.charAt(i) != '\r') i++;
+                continue;
+            }
+            if (c == '/' && n1 == '*') {
+                int end = src.indexOf("*/", i + 2);
+                if (end < 0) return null;
+                i = end + 2;
+                continue;
+            }
+
+            // Literals
+            if (c == '"') {
+                if (n1 == '"' && i + 2 < n && src.charAt(i + 2) == '"') {
+                    i = skipQuoted(src, i + 3, "\"\"\"");
+                } else {
+                    i = skipQuoted(src, i + 1, "\"");
+                }
+                if (i < 0) return null;
+                tokens.add(STRING_LITERAL);
+                continue;
+            }
+            if (c == '\'') {
+                i = skipQuoted(src, i + 1, "'");
+                if (i < 0) return null;
+                tokens.add(STRING_LITERAL);
+                continue;
+            }
+            if (Character.isDigit(c) || (c == '.' && Character.isDigit(n1))) {
+                i++;
+                while (i < n) {
+                    char d = src.charAt(i);
+                    char prev = src.charAt(i - 1);
+                    if (Character.isLetterOrDigit(d) || d == '_' || d == '.'
+                            || ((d == '+' || d == '-') && "eEpP".indexOf(prev) >= 0)) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(NUMBER_LITERAL);
+                continue;
+            }
+
+            // Identifiers and keywords
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i++;
+                while (i < n && Character.isJavaIdentifierPart(src.charAt(i))) i++;
+                tokens.add(src.substring(start, i));
+                continue;
+            }
+
+            if (c == '\\') {
+                return null; // Unicode escape outside a literal
+            }
+
+            // Symbols; only the ones the declaration pass looks at as a whole are kept together
+            if (c == '.' && n1 == '.' && i + 2 < n && src.charAt(i + 2) == '.') {
+                tokens.add("...");
+                i += 3;
+            } else if (c == '-' && n1 == '>') {
+                tokens.add("->");
+                i += 2;
+            } else if (c == ':' && n1 == ':') {
+                tokens.add("::");
+                i += 2;
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the index after the closing delimiter of a literal starting at from, or -1.
+     */
+    private static int skipQuoted(String src, int from, String close) {
+        int i = from;
+        final int n = src.length();
+        while (i < n) {
+            char c = src.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (src.startsWith(close, i)) {
+                return i + close.length();
+            } else if (close.length() == 1 && (c == '\n' || c == '\r')) {
+                return -1; // String and char literals end on their line
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns for every (, ), {, }, [ and ] the index of its partner, or null if they do not balance.
+     */
+    private static int[] matchBrackets(List<String> tokens) {
+        int[] match = new int[tokens.size()];
+        Deque<Integer> open = new ArrayDeque<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.length() != 1) {
+                continue;
+            }
+            char c = token.charAt(0);
+            if (c == '(' || c == '{' || c == '[') {
+                open.push(i);
+            } else if (c == ')' || c == '}' || c == ']') {
+                if (open.isEmpty()) {
+                    return null;
+                }
+                int o = open.pop();
+                char expected = c == ')' ? '(' : c == '}' ? '{' : '[';
+                if (tokens.get(o).charAt(0) != expected) {
+                    return null;
+                }
+                match[o] = i;
+                match[i] = o;
+            }
+        }
+        return open.isEmpty() ? match : null;
+    }
+
+    // --- Declaration pass ---
+
+    /**
+     * One pass over the tokens with a stack of the open braces; a brace either opens a type body,
+     * where declarations are recognized, or a block of statements or initializer values.
+     */
+    private static final class DeclarationPass {
+        private final List<String> tokens;
+        private final int[] match;
+        private final Deque<Block> blocks = new ArrayDeque<>();
+        private final List<String> typeNames = new ArrayList<>();
+        private final List<MethodSignature> methods = new ArrayList<>();
+        private String packageName = "";
+        private String pendingType; // named type whose header was read, body not yet opened
+        private TypeKind pendingKind;
+
+        DeclarationPass(List<String> tokens, int[] match) {
+            this.tokens = tokens;
+            this.match = match;
+        }
+
+        private enum TypeKind { CLASS, ENUM, ANNOTATION }
+
+        private static final class Block {
+            private final boolean typeBody;
+            private final String typeName;
+            private final String qualifiedName; // Outer.Inner for member types
+            private final TypeKind kind;
+
+            Block(boolean typeBody, String typeName, String qualifiedName, TypeKind kind) {
+                this.typeBody = typeBody;
+                this.typeName = typeName;
+                this.qualifiedName = qualifiedName;
+                this.kind = kind;
+            }
+        }
+
+        private static final Block STATEMENTS = new Block(false, null, null, null);
+        private static final Block ANONYMOUS = new Block(true, null, null, TypeKind.CLASS);
+
+        Declarations run() {
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                switch (token) {
+                    case "package":
+                        if (blocks.isEmpty() && pendingType == null) {
+                            i = readPackage(i + 1);
+                        }
+                        break;
+                    case "import":
+                        if (blocks.isEmpty()) {
+                            while (i < tokens.size() && !tokens.get(i).equals(";")) i++;
+                        }
+                        break;
+                    case "class":
+                    case "interface":
+                    case "enum":
+                        if (i > 0 && tokens.get(i - 1).equals(".")) {
+                            break; // Foo.class
+                        }
+                        if (!isIdentifier(i + 1)) {
+                            return null;
+                        }
+                        declareType(tokens.get(i + 1), token.equals("enum") ? TypeKind.ENUM
+                            : i > 0 && tokens.get(i - 1).equals("@") ? TypeKind.ANNOTATION : TypeKind.CLASS);
+                        i++;
+                        break;
+                    case "record":
+                        if (isIdentifier(i + 1) && i + 2 < tokens.size()
+                                && (tokens.get(i + 2).equals("(") || tokens.get(i + 2).equals("<"))
+                                && (i == 0 || !tokens.get(i - 1).equals("."))) {
+                            declareType(tokens.get(i + 1), TypeKind.CLASS);
+                            i++;
+                        }
+                        break;
+                    case "{":
+                        blocks.push(openBlock(i));
+                        break;
+                    case "}":
+                        blocks.pop();
+                        break;
+                    case "(":
+                        // Not in a type header: record components are no parameters
+                        if (pendingType == null && !blocks.isEmpty() && blocks.peek().typeBody
+                                && blocks.peek().kind != TypeKind.ANNOTATION && i > 0 && isIdentifier(i - 1)
+                                && !declareMethod(i - 1)) {
+                            return null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (pendingType != null) {
+                return null;
+            }
+            return new Declarations(packageName, typeNames, methods);
+        }
+
+        private int readPackage(int from) {
+            StringBuilder name = new StringBuilder();
+            int i = from;
+            while (i < tokens.size() && !tokens.get(i).equals(";")) {
+                name.append(tokens.get(i++));
+            }
+            packageName = name.toString();
+            return i;
+        }
+
+        private void declareType(String name, TypeKind kind) {
+            typeNames.add(name);
+            pendingType = name;
+            pendingKind = kind;
+        }
+
+        /**
+         * Decides what the brace at index i opens.
+         */
+        private Block openBlock(int i) {
+            if (pendingType != null) {
+                Block enclosing = blocks.peek();
+                String qualifiedName = enclosing != null && enclosing.typeBody && enclosing.qualifiedName != null
+                    ? enclosing.qualifiedName + "." + pendingType : pendingType;
+                Block type = new Block(true, pendingType, qualifiedName, pendingKind);
+                pendingType = null;
+                return type;
+            }
+            if (i > 0 && tokens.get(i - 1).equals(")")) {
+                int open = match[i - 1];
+                int j = open - 1;
+                if (j >= 0 && tokens.get(j).equals(">")) {
+                    j = skipTypeArgumentsBackwards(j);
+                }
+                while (j >= 2 && isIdentifier(j) && tokens.get(j - 1).equals(".") && isIdentifier(j - 2)) {
+                    j -= 2;
+                }
+                if (j >= 1 && isIdentifier(j) && tokens.get(j - 1).equals("new")) {
+                    return ANONYMOUS; // Anonymous class
+                }
+                Block enclosing = blocks.peek();
+                if (enclosing != null && enclosing.kind == TypeKind.ENUM && j >= 1 && isIdentifier(j)
+                        && (tokens.get(j - 1).equals("{") || tokens.get(j - 1).equals(","))) {
+                    return ANONYMOUS; // Enum constant with a body
+                }
+            }
+            if (i > 1 && isIdentifier(i - 1) && blocks.peek() != null && blocks.peek().kind == TypeKind.ENUM
+                    && (tokens.get(i - 2).equals("{") || tokens.get(i - 2).equals(","))) {
+                return ANONYMOUS; // Enum constant without arguments, with a body
+            }
+            return STATEMENTS;
+        }
+
+        /**
+         * Handles an identifier followed by ( in a type body: a method declaration if a return
+         * type precedes it and a body or ; follows the parameters.
+         *
+         * @return false if the declaration is ambiguous
+         */
+        private boolean declareMethod(int nameIndex) {
+            String name = tokens.get(nameIndex);
+            int open = nameIndex + 1;
+            int close = match[open];
+            if (nameIndex == 0 || !isReturnTypeEnd(nameIndex - 1)) {
+                return true; // Constructor, annotation, enum constant or call in an initializer
+            }
+            int after = close + 1;
+            if (after < tokens.size() && tokens.get(after).equals("throws")) {
+                while (after < tokens.size() && !tokens.get(after).equals("{") && !tokens.get(after).equals(";")) {
+                    after++;
+                }
+            }
+            // Old-style array return type: int foo()[] {
+            while (after + 1 < tokens.size() && tokens.get(after).equals("[") && tokens.get(after + 1).equals("]")) {
+                after += 2;
+            }
+            if (after >= tokens.size()) {
+                return false;
+            }
+            String next = tokens.get(after);
+            if (!next.equals("{") && !next.equals(";")) {
+                return true; // e.g. a call in a field initializer
+            }
+            Block type = blocks.peek();
+            if (name.equals(type.typeName)) {
+                return false; // A method named like its class, or a generic constructor
+            }
+            List<String> parameterTypes = parameterTypes(open + 1, close);
+            if (parameterTypes == null) {
+                return false;
+            }
+            methods.add(new MethodSignature(name, type.qualifiedName, parameterTypes));
+            return true;
+        }
+
+        /**
+         * Returns whether the token at index i can end a return type: a type name, a primitive,
+         * void, the > of type arguments or the ] of an array type.
+         */
+        private boolean isReturnTypeEnd(int i) {
+            String token = tokens.get(i);
+            if (isIdentifier(i)) {
+                return true;
+            }
+            if (token.equals("]")) {
+                return i > 0 && tokens.get(i - 1).equals("[");
+            }
+            if (token.equals(">")) {
+                int start = skipTypeArgumentsBackwards(i);
+                return start >= 0 && start < i && isIdentifier(start);
+            }
+            return false;
+        }
+
+        /**
+         * Walks back from the > at index i to its <. Returns the index of the token before the <,
+         * or -1 if the tokens in between cannot be type arguments.
+         */
+        private int skipTypeArgumentsBackwards(int i) {
+            int depth = 0;
+            for (int j = i; j >= 0; j--) {
+                String token = tokens.get(j);
+                if (token.equals(">")) {
+                    depth++;
+                } else if (token.equals("<")) {
+                    if (--depth == 0) {
+                        return j - 1;
+                    }
+                } else if (!isIdentifier(j) && !token.equals(".") && !token.equals(",") && !token.equals("?")
+                        && !token.equals("&") && !token.equals("[") && !token.equals("]")
+                        && !token.equals("extends") && !token.equals("super") && !token.equals("@")) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the parameter types between the parentheses, or null if a parameter cannot be read.
+         */
+        private List<String> parameterTypes(int from, int to) {
+            List<String> types = new ArrayList<>();
+            int start = from;
+            int angle = 0;
+            for (int i = from; i <= to; i++) {
+                String token = i < to ? tokens.get(i) : ",";
+                if (token.equals("(") || token.equals("[") || token.equals("{")) {
+                    i = match[i]; // Annotation arguments, array dimensions
+                } else if (token.equals("<")) {
+                    angle++;
+                } else if (token.equals(">")) {
+                    angle--;
+                } else if (token.equals(",") && angle == 0) {
+                    if (i > start) {
+                        String type = parameterType(start, i);
+                        if (type == null) {
+                            return null;
+                        }
+                        if (!type.isEmpty()) {
+                            types.add(type);
+                        }
+                    } else if (i < to) {
+                        return null;
+                    }
+                    start = i + 1;
+                }
+            }
+            return types;
+        }
+
+        /**
+         * Reads one parameter's type without annotations and modifiers; empty for a receiver parameter.
+         */
+        private String parameterType(int from, int to) {
+            List<String> type = new ArrayList<>();
+            int i = from;
+            while (i < to) {
+                String token = tokens.get(i);
+                if (token.equals("@")) {
+                    i++;
+                    while (i + 2 < to && isIdentifier(i) && tokens.get(i + 1).equals(".")) i += 2;
+                    i++;
+                    if (i < to && tokens.get(i).equals("(")) i = match[i] + 1;
+                } else if (token.equals("final")) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            int end = to;
+            int dimensions = 0;
+            while (end - 2 > i && tokens.get(end - 1).equals("]") && tokens.get(end - 2).equals("[")) {
+                end -= 2; // C-style array parameter: int a[]
+                dimensions++;
+            }
+            if (end - 1 <= i || !isIdentifier(end - 1) && !tokens.get(end - 1).equals("this")) {
+                return null;
+            }
+            if (tokens.get(end - 1).equals("this")) {
+                return ""; // Receiver parameter, not a parameter for JavaParser either
+            }
+            for (int j = i; j < end - 1; j++) {
+                if (tokens.get(j).equals("@")) {
+                    return null; // Type annotation inside the type
+                }
+                type.add(tokens.get(j));
+            }
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < type.size(); j++) {
+                String token = type.get(j);
+                if (j > 0 && Character.isJavaIdentifierPart(token.charAt(0))
+                        && Character.isJavaIdentifierPart(type.get(j - 1).charAt(type.get(j - 1).length() - 1))) {
+                    text.append(' ');
+                }
+                text.append(token);
+                if (token.equals(",")) {
+                    text.append(' ');
+                }
+            }
+            for (int d = 0; d < dimensions; d++) {
+                text.append("[]");
+            }
+            return text.toString();
+        }
+
+        private boolean isIdentifier(int i) {
+            if (i < 0 || i >= tokens.size()) {
+                return false;
+            }
+            String token = tokens.get(i);
+            return Character.isJavaIdentifierStart(token.charAt(0)) && !KEYWORDS.contains(token);
+        }
+    }
+}
@@ -4,14 +4,37 @@ import v3.model.TableXmlMapping;
 import org.w3c.dom.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
 /**
  * Parses MyBatis mapper XML files to extract mapper methods and SQL.
+ *
+ * Two modes are available. The streaming mode (the default) reads the file with StAX and emits each
+ * statement as soon as its closing tag is read, without building a DOM; {@code <include refid>}
+ * elements are expanded from a {@link SqlFragmentRegistry}. When the parser is given a registry
+ * shared across mapper XMLs, includes may refer to fragments of any namespace, including mappers
+ * parsed later; see {@link #flushDeferred()}. The DOM mode loads the whole document and drops
+ * includes. Factories are created once per thread in both modes, so one parser may be used by
+ * several threads.
  */
 public class MyBatisXmlParser {
 
@@ -22,6 +45,59 @@ public class MyBatisXmlParser {
         logger.setLevel(Level.SEVERE); // Hide debug/info messages by default
     }
 
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            return factory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Cannot create XML document builder", e);
+        }
+    });
+
+    private static final ThreadLocal<XMLInputFactory> STAX_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false); // Never fetch the mybatis-3-mapper DTD
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        try {
+            // Report CDATA sections separately from text, like DOM nodes
+            factory.setProperty("http://java.sun.com/xml/stream/properties/report-cdata-event", true);
+        } catch (IllegalArgumentException e) {
+            // Not supported by this StAX implementation
+        }
+        return factory;
+    });
+
+    private final boolean streaming;
+    private final SqlFragmentRegistry fragmentRegistry;
+    private final List<DeferredStatement> deferred = new ArrayList<>();
+
+    public MyBatisXmlParser() {
+        this(true);
+    }
+
+    /**
+     * @param streaming true to parse with StAX, false to load a DOM per file
+     */
+    public MyBatisXmlParser(boolean streaming) {
+        this(streaming, new SqlFragmentRegistry());
+    }
+
+    /**
+     * Creates a streaming parser that registers and resolves fragments in the given registry.
+     */
+    public MyBatisXmlParser(SqlFragmentRegistry fragmentRegistry) {
+        this(true, fragmentRegistry);
+    }
+
+    private MyBatisXmlParser(boolean streaming, SqlFragmentRegistry fragmentRegistry) {
+        this.streaming = streaming;
+        this.fragmentRegistry = fragmentRegistry;
+    }
+
     /**
      * Parses a MyBatis mapper XML file and extracts all mapper methods.
      *
@@ -31,14 +107,72 @@ public class MyBatisXmlParser {
      */
     public List<TableXmlMapping> parseMapperXml(String moduleName, Path xmlPath) {
         List<TableXmlMapping> methods = new ArrayList<>();
+        if (streaming) {
+            parseStreaming(moduleName, xmlPath, methods::add, false);
+        } else {
+            parseDocument(moduleName, xmlPath, methods::add);
+        }
+        return methods;
+    }
 
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", false);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+    /**
+     * Parses a MyBatis mapper XML file and hands every mapper method to the given consumer. In
+     * streaming mode methods are handed over while the file is read, in document order; statements
+     * including a fragment that is defined further down follow at the end of the file, and those
+     * including a fragment not registered yet wait for {@link #flushDeferred()}.
+     *
+     * @param moduleName the name of the Maven module
+     * @param xmlPath path to the mapper XML file
+     * @param methods receives the mapper methods found in the file
+     * @return the number of statements held back until {@link #flushDeferred()}
+     */
+    public int parseMapperXml(String moduleName, Path xmlPath, Consumer<TableXmlMapping> methods) {
+        if (streaming) {
+            return parseStreaming(moduleName, xmlPath, methods, true);
+        }
+        parseDocument(moduleName, xmlPath, methods);
+        return 0;
+    }
 
-            DocumentBuilder builder = factory.newDocumentBuilder();
+    /**
+     * Hands the statements held back for fragments of other mapper XMLs to their consumers, with
+     * the includes that are still unknown left out. Call after the last mapper XML was parsed.
+     *
+     * @return the number of statements handed over
+     */
+    public int flushDeferred() {
+        List<DeferredStatement> pending;
+        synchronized (deferred) {
+            pending = new ArrayList<>(deferred);
+            deferred.clear();
+        }
+        for (DeferredStatement statement : pending) {
+            emit(statement);
+        }
+        return pending.size();
+    }
+
+    private int parseStreaming(String moduleName, Path xmlPath, Consumer<TableXmlMapping> methods,
+                               boolean deferUnresolved) {
+        MapperStream stream = null;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(xmlPath), 64 * 1024)) {
+            XMLStreamReader reader = STAX_FACTORY.get().createXMLStreamReader(in);
+            try {
+                stream = new MapperStream(moduleName, xmlPath, reader, methods, deferUnresolved);
+                stream.parse();
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error parsing mapper XML: " + xmlPath + ", " + e.getMessage());
+        }
+        return stream != null ? stream.heldBack : 0;
+    }
+
+    private void parseDocument(String moduleName, Path xmlPath, Consumer<TableXmlMapping> methods) {
+        try {
+            DocumentBuilder builder = DOCUMENT_BUILDER.get();
+            builder.reset();
             Document doc = builder.parse(xmlPath.toFile());
 
             Element root = doc.getDocumentElement();
@@ -47,7 +181,19 @@ public class MyBatisXmlParser {
             String namespace = root.getAttribute("namespace");
             if (namespace == null || namespace.isEmpty()) {
                 logger.log(Level.WARNING, "No namespace found in " + xmlPath);
-                return methods;
+                return;
+            }
+
+            Map<String, ResultMapping> resultMaps = new HashMap<>();
+            NodeList resultMapNodes = root.getElementsByTagName("resultMap");
+            for (int i = 0; i < resultMapNodes.getLength(); i++) {
+                Element resultMap = (Element) resultMapNodes.item(i);
+                ResultMapping mapping = new ResultMapping(resultMap.getAttribute("extends"));
+                NodeList mapped = resultMap.getElementsByTagName("*");
+                for (int j = 0; j < mapped.getLength(); j++) {
+                    addColumns(((Element) mapped.item(j)).getAttribute("column"), mapping.columns);
+                }
+                resultMaps.put(resultMap.getAttribute("id"), mapping);
             }
 
             // Extract all SQL statements
@@ -69,7 +215,11 @@ public class MyBatisXmlParser {
                             sql
                         );
 
-                        methods.add(method);
+                        if (!element.getAttribute("resultMap").isEmpty()) {
+                            method = method.withResultMapColumns(
+                                resultMapColumns(element.getAttribute("resultMap"), resultMaps));
+                        }
+                        methods.accept(method);
                     }
                 }
             }
@@ -77,14 +227,83 @@ public class MyBatisXmlParser {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error parsing mapper XML: " + xmlPath + ", " + e.getMessage());
         }
+    }
 
-        return methods;
+    /**
+     * Collects the columns mapped by the given comma-separated resultMap ids, including the columns
+     * of the resultMaps they extend. Ids may be prefixed with the namespace.
+     */
+    private static Set<String> resultMapColumns(String resultMapIds, Map<String, ResultMapping> resultMaps) {
+        Set<String> columns = new LinkedHashSet<>();
+        Set<String> visited = new HashSet<>();
+        List<String> pending = new ArrayList<>();
+        for (String id : resultMapIds.split(",")) {
+            pending.add(localId(id.trim()));
+        }
+        while (!pending.isEmpty()) {
+            String id = pending.remove(pending.size() - 1);
+            ResultMapping resultMap = resultMaps.get(id);
+            if (resultMap == null || !visited.add(id)) {
+                continue; // Defined in another mapper, or already visited
+            }
+            columns.addAll(resultMap.columns);
+            if (!resultMap.extendsId.isEmpty()) {
+                pending.add(localId(resultMap.extendsId));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Returns whether any of the given resultMap ids, or a resultMap they extend, is not defined yet.
+     */
+    private static boolean hasUndefinedResultMap(String resultMapIds, Map<String, ResultMapping> resultMaps) {
+        Set<String> visited = new HashSet<>();
+        List<String> pending = new ArrayList<>();
+        for (String id : resultMapIds.split(",")) {
+            pending.add(localId(id.trim()));
+        }
+        while (!pending.isEmpty()) {
+            String id = pending.remove(pending.size() - 1);
+            ResultMapping resultMap = resultMaps.get(id);
+            if (resultMap == null) {
+                return true;
+            }
+            if (visited.add(id) && !resultMap.extendsId.isEmpty()) {
+                pending.add(localId(resultMap.extendsId));
+            }
+        }
+        return false;
+    }
+
+    private static String localId(String id) {
+        return id.substring(id.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Adds a column attribute value: a single column or a composite {property=column,...}.
+     */
+    private static void addColumns(String column, Set<String> columns) {
+        String value = column.trim();
+        if (value.isEmpty()) {
+            return;
+        }
+        if (!value.startsWith("{")) {
+            columns.add(value);
+            return;
+        }
+        for (String pair : value.substring(1, value.endsWith("}") ? value.length() - 1 : value.length()).split(",")) {
+            String composite = pair.substring(pair.indexOf('=') + 1).trim();
+            if (!composite.isEmpty()) {
+                columns.add(composite);
+            }
+        }
     }
 
     private String extractSqlText(Element element) {
         StringBuilder sql = new StringBuilder();
         extractTextRecursively(element, sql);
-        String result = sql.toString().replaceAll("\\s+", " ").trim();
+        String result = collapseWhitespace(sql);
         logger.log(Level.FINE, "[DEBUG] Extracted SQL for id '" + element.getAttribute("id") + "':\n" + result);
         return result;
     }
@@ -105,4 +324,277 @@ public class MyBatisXmlParser {
             }
         }
     }
+
+    /**
+     * Same as {@code text.replaceAll("\\s+", " ").trim()}.
+     */
+    private static String collapseWhitespace(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                space = true;
+                continue;
+            }
+            if (space) {
+                result.append(' ');
+                space = false;
+            }
+            result.append(c);
+        }
+        if (space) {
+            result.append(' ');
+        }
+        return result.toString().trim();
+    }
+
+    /**
+     * Columns of one resultMap and the id of the resultMap it extends ("" if none).
+     */
+    private static final class ResultMapping {
+        final String extendsId;
+        final Set<String> columns = new LinkedHashSet<>();
+
+        ResultMapping(String extendsId) {
+            this.extendsId = extendsId;
+        }
+    }
+
+    /**
+     * SQL of a statement or {@code <sql>} fragment while it is read.
+     */
+    private static final class SqlParts {
+        final String tag;
+        final String id;
+        final String resultMap;
+        final List<SqlFragmentRegistry.Part> parts = new ArrayList<>();
+
+        SqlParts(String tag, String id, String resultMap) {
+            this.tag = tag;
+            this.id = id;
+            this.resultMap = resultMap;
+        }
+    }
+
+    /**
+     * A statement whose includes could not all be resolved when its mapper XML ended.
+     */
+    private static final class DeferredStatement {
+        final String moduleName;
+        final Path xmlPath;
+        final String namespace;
+        final SqlParts statement;
+        final Set<String> resultMapColumns;
+        final Consumer<TableXmlMapping> methods;
+
+        DeferredStatement(String moduleName, Path xmlPath, String namespace, SqlParts statement,
+                          Set<String> resultMapColumns, Consumer<TableXmlMapping> methods) {
+            this.moduleName = moduleName;
+            this.xmlPath = xmlPath;
+            this.namespace = namespace;
+            this.statement = statement;
+            this.resultMapColumns = resultMapColumns;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * Expands a statement's includes and hands it to the consumer.
+     */
+    private void emit(DeferredStatement deferredStatement) {
+        SqlParts statement = deferredStatement.statement;
+        String sql = collapseWhitespace(fragmentRegistry.expand(deferredStatement.namespace, statement.parts,
+            deferredStatement.xmlPath.toString()));
+        TableXmlMapping method = new TableXmlMapping(deferredStatement.moduleName, deferredStatement.xmlPath.toString(),
+            deferredStatement.namespace, statement.id, statement.tag, sql);
+        if (deferredStatement.resultMapColumns != null) {
+            method = method.withResultMapColumns(deferredStatement.resultMapColumns);
+        }
+        logger.log(Level.FINE, "[DEBUG] Extracted SQL for id '" + statement.id + "':\n" + sql);
+        deferredStatement.methods.accept(method);
+    }
+
+    /**
+     * Streaming pass over one mapper XML.
+     */
+    private final class MapperStream {
+        private final String moduleName;
+        private final Path xmlPath;
+        private final XMLStreamReader reader;
+        private final Consumer<TableXmlMapping> methods;
+        private final boolean deferUnresolved;
+        private final Map<String, ResultMapping> resultMaps = new HashMap<>();
+        private final List<SqlParts> deferredInFile = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private String namespace;
+        private SqlParts current; // statement or fragment being read
+        private int currentDepth;
+        private ResultMapping resultMap; // resultMap being read
+        private int resultMapDepth;
+        private String includeRefid; // <include> being read; its <property> children are not SQL
+        private Map<String, String> includeProperties;
+        private int includeDepth;
+        private int depth;
+        private boolean cdata; // the buffered text is a CDATA section
+        private int heldBack; // statements moved to the parser's deferred list
+
+        MapperStream(String moduleName, Path xmlPath, XMLStreamReader reader, Consumer<TableXmlMapping> methods,
+                     boolean deferUnresolved) {
+            this.moduleName = moduleName;
+            this.xmlPath = xmlPath;
+            this.reader = reader;
+            this.methods = methods;
+            this.deferUnresolved = deferUnresolved;
+        }
+
+        void parse() throws XMLStreamException {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        flushText();
+                        depth++;
+                        if (!startElement(reader.getLocalName())) {
+                            return;
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        flushText();
+                        endElement();
+                        depth--;
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        appendText(false);
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        appendText(true);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // Fragments defined further down are known now; anything else waits for the other mappers
+            for (SqlParts statement : deferredInFile) {
+                DeferredStatement pending = new DeferredStatement(moduleName, xmlPath, namespace, statement,
+                    resultMapColumnsOf(statement), methods);
+                if (deferUnresolved && !fragmentRegistry.isResolvable(namespace, statement.parts)) {
+                    synchronized (deferred) {
+                        deferred.add(pending);
+                    }
+                    heldBack++;
+                } else {
+                    emit(pending);
+                }
+            }
+        }
+
+        /**
+         * Handles a start tag; returns false if the file is not a mapper.
+         */
+        private boolean startElement(String name) {
+            if (depth == 1) {
+                namespace = attribute("namespace");
+                if (namespace.isEmpty()) {
+                    logger.log(Level.WARNING, "No namespace found in " + xmlPath);
+                    return false;
+                }
+                return true;
+            }
+            if (includeRefid != null) {
+                if (depth == includeDepth + 1 && name.equals("property")) {
+                    includeProperties.put(attribute("name"), attribute("value"));
+                }
+                return true;
+            }
+            if (current != null) {
+                if (name.equals("include")) {
+                    includeRefid = attribute("refid");
+                    includeProperties = new LinkedHashMap<>();
+                    includeDepth = depth;
+                }
+                return true;
+            }
+            if (resultMap != null) {
+                addColumns(attribute("column"), resultMap.columns);
+                return true;
+            }
+            if (name.equals("resultMap")) {
+                resultMap = new ResultMapping(attribute("extends"));
+                resultMapDepth = depth;
+                resultMaps.put(attribute("id"), resultMap);
+            } else if (name.equals("sql") || isStatementTag(name)) {
+                current = new SqlParts(name, attribute("id"), attribute("resultMap"));
+                currentDepth = depth;
+            }
+            return true;
+        }
+
+        private void endElement() {
+            if (includeRefid != null) {
+                if (depth == includeDepth) {
+                    current.parts.add(SqlFragmentRegistry.Part.include(includeRefid, includeProperties));
+                    includeRefid = null;
+                    includeProperties = null;
+                }
+            } else if (current != null && depth == currentDepth) {
+                SqlParts closed = current;
+                current = null;
+                if (closed.tag.equals("sql")) {
+                    fragmentRegistry.register(namespace, closed.id, xmlPath.toString(), closed.parts);
+                } else if (!closed.id.isEmpty()) {
+                    if (fragmentRegistry.isResolvable(namespace, closed.parts)
+                            && (closed.resultMap.isEmpty() || !hasUndefinedResultMap(closed.resultMap, resultMaps))) {
+                        emit(new DeferredStatement(moduleName, xmlPath, namespace, closed, resultMapColumnsOf(closed),
+                            methods));
+                    } else {
+                        deferredInFile.add(closed);
+                    }
+                }
+            } else if (resultMap != null && depth == resultMapDepth) {
+                resultMap = null;
+            }
+        }
+
+        private Set<String> resultMapColumnsOf(SqlParts statement) {
+            return statement.resultMap.isEmpty() ? null : resultMapColumns(statement.resultMap, resultMaps);
+        }
+
+        private void appendText(boolean isCdata) {
+            if (current == null || includeRefid != null) {
+                return;
+            }
+            if (text.length() > 0 && cdata != isCdata) {
+                flushText();
+            }
+            cdata = isCdata;
+            text.append(reader.getText());
+        }
+
+        private void flushText() {
+            if (text.length() == 0) {
+                return;
+            }
+            String node = text.toString().trim();
+            text.setLength(0);
+            if (!node.isEmpty()) {
+                current.parts.add(SqlFragmentRegistry.Part.text(node));
+            }
+        }
+
+        private String attribute(String name) {
+            String value = reader.getAttributeValue(null, name);
+            return value != null ? value : "";
+        }
+    }
+
+    private static boolean isStatementTag(String name) {
+        for (String tag : SQL_STATEMENT_TAGS) {
+            if (tag.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,321 @@
+package v3.parser;
+
+import java.util.*;
+
+/**
+ * Registry of the {@code <sql>} fragments of all mapper XMLs, keyed by namespace.id.
+ *
+ * Includes are expanded the way MyBatis does it: a refid without a dot refers to the including
+ * mapper's namespace, anything else is fully qualified; {@code <property>} values of an include are
+ * substituted for {@code ${name}} in the fragment (and in nested refids), nested includes inherit
+ * them. Expansions are computed lazily and memoized per fragment and property set, so a fragment
+ * included by thousands of statements is expanded once.
+ *
+ * The registry also records which mapper XMLs used each fragment, so an incremental index can
+ * re-parse the dependents of a changed fragment. It is serialized with Gson. All public methods
+ * are synchronized, so mapper XMLs may be parsed on several threads.
+ */
+public final class SqlFragmentRegistry {
+
+    private final Map<String, Fragment> fragments = new HashMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>(); // fragment id -> XML paths using it
+    private transient Map<String, String> expansions = new HashMap<>(); // memo, fully resolved only
+    private transient long memoHits;
+
+    /**
+     * One piece of SQL: literal text, or an include with its properties.
+     */
+    public static final class Part {
+        private final String text;
+        private final String refid;
+        private final Map<String, String> properties;
+
+        private Part(String text, String refid, Map<String, String> properties) {
+            this.text = text;
+            this.refid = refid;
+            this.properties = properties;
+        }
+
+        public static Part text(String text) {
+            return new Part(text, null, null);
+        }
+
+        public static Part include(String refid, Map<String, String> properties) {
+            return new Part(null, refid, properties.isEmpty() ? null : new LinkedHashMap<>(properties));
+        }
+
+        public boolean isInclude() {
+            return refid != null;
+        }
+    }
+
+    /**
+     * A registered {@code <sql>} fragment.
+     */
+    private static final class Fragment {
+        private final String sourcePath;
+        private final String namespace;
+        private final List<Part> parts;
+
+        Fragment(String sourcePath, String namespace, List<Part> parts) {
+            this.sourcePath = sourcePath;
+            this.namespace = namespace;
+            this.parts = parts;
+        }
+    }
+
+    /**
+     * Registers a fragment, replacing an earlier one with the same id.
+     */
+    public synchronized void register(String namespace, String id, String sourcePath, List<Part> parts) {
+        Fragment previous = fragments.put(namespace + "." + id, new Fragment(sourcePath, namespace, new ArrayList<>(parts)));
+        if (previous != null) {
+            memo().clear();
+        }
+    }
+
+    /**
+     * Removes the fragments defined in the given XML and forgets which fragments it used.
+     *
+     * @return ids of the removed fragments
+     */
+    public synchronized Set<String> removeSource(String sourcePath) {
+        Set<String> removed = new HashSet<>();
+        fragments.entrySet().removeIf(e -> {
+            if (e.getValue().sourcePath.equals(sourcePath)) {
+                removed.add(e.getKey());
+                return true;
+            }
+            return false;
+        });
+        dependents.values().forEach(paths -> paths.remove(sourcePath));
+        dependents.values().removeIf(Set::isEmpty);
+        if (!removed.isEmpty()) {
+            memo().clear();
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the ids of the fragments defined in the given XMLs.
+     */
+    public synchronized Set<String> fragmentsDefinedIn(Collection<String> sourcePaths) {
+        Set<String> paths = new HashSet<>(sourcePaths);
+        Set<String> ids = new HashSet<>();
+        for (Map.Entry<String, Fragment> entry : fragments.entrySet()) {
+            if (paths.contains(entry.getValue().sourcePath)) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a registry with the fragments defined in the given XMLs and the fragment uses of
+     * their statements, for checkpointing part of a build; see {@link #addAll(SqlFragmentRegistry)}.
+     */
+    public synchronized SqlFragmentRegistry subset(Collection<String> sourcePaths) {
+        Set<String> paths = new HashSet<>(sourcePaths);
+        SqlFragmentRegistry subset = new SqlFragmentRegistry();
+        fragments.forEach((id, fragment) -> {
+            if (paths.contains(fragment.sourcePath)) {
+                subset.fragments.put(id, fragment);
+            }
+        });
+        dependents.forEach((id, users) -> {
+            for (String user : users) {
+                if (paths.contains(user)) {
+                    subset.dependents.computeIfAbsent(id, k -> new HashSet<>()).add(user);
+                }
+            }
+        });
+        return subset;
+    }
+
+    /**
+     * Adds the fragments and fragment uses of another registry, e.g. a checkpointed subset.
+     */
+    public synchronized void addAll(SqlFragmentRegistry other) {
+        fragments.putAll(other.fragments);
+        other.dependents.forEach((id, users) -> dependents.computeIfAbsent(id, k -> new HashSet<>()).addAll(users));
+        memo().clear();
+    }
+
+    /**
+     * Returns the XMLs whose statements used any of the given fragments, directly or through other
+     * fragments, or tried to include them while they were not defined.
+     */
+    public synchronized Set<String> dependentsOf(Collection<String> fragmentIds) {
+        Set<String> paths = new HashSet<>();
+        for (String id : fragmentIds) {
+            paths.addAll(dependents.getOrDefault(id, Set.of()));
+        }
+        return paths;
+    }
+
+    /**
+     * Returns the ids of the fragments that mapper XMLs used or tried to include but that are not
+     * registered, e.g. because the XMLs defining them were not loaded.
+     */
+    public synchronized Set<String> undefinedFragments() {
+        Set<String> ids = new HashSet<>(dependents.keySet());
+        ids.removeAll(fragments.keySet());
+        return ids;
+    }
+
+    /**
+     * Returns whether every include in the parts, transitively, refers to a registered fragment.
+     */
+    public synchronized boolean isResolvable(String namespace, List<Part> parts) {
+        return isResolvable(namespace, parts, Map.of(), new HashSet<>());
+    }
+
+    private boolean isResolvable(String namespace, List<Part> parts, Map<String, String> context, Set<String> visiting) {
+        for (Part part : parts) {
+            if (!part.isInclude()) {
+                continue;
+            }
+            Map<String, String> inner = innerContext(part, context);
+            String id = qualify(substitute(part.refid, context), namespace);
+            Fragment fragment = fragments.get(id);
+            if (fragment == null) {
+                return false;
+            }
+            if (visiting.add(id) && !isResolvable(fragment.namespace, fragment.parts, inner, visiting)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Expands the includes of a statement's SQL parts. Text parts are joined with single spaces.
+     * Unknown fragments expand to nothing; a fragment that includes itself is expanded once.
+     *
+     * @param namespace namespace of the statement
+     * @param parts the statement's SQL
+     * @param dependentPath XML the statement belongs to, recorded as a dependent of every fragment used
+     * @return the expanded SQL
+     */
+    public synchronized String expand(String namespace, List<Part> parts, String dependentPath) {
+        StringBuilder sql = new StringBuilder();
+        append(namespace, parts, Map.of(), dependentPath, new HashSet<>(), sql);
+        return sql.toString();
+    }
+
+    /**
+     * Appends the expansion of the parts; returns false if an include could not be resolved.
+     */
+    private boolean append(String namespace, List<Part> parts, Map<String, String> context, String dependentPath,
+                           Set<String> expanding, StringBuilder sql) {
+        boolean resolved = true;
+        for (Part part : parts) {
+            if (!part.isInclude()) {
+                sql.append(context.isEmpty() ? part.text : substitute(part.text, context)).append(' ');
+                continue;
+            }
+            Map<String, String> inner = innerContext(part, context);
+            String id = qualify(substitute(part.refid, context), namespace);
+            dependents.computeIfAbsent(id, k -> new HashSet<>()).add(dependentPath);
+            Fragment fragment = fragments.get(id);
+            if (fragment == null || !expanding.add(id)) {
+                resolved &= fragment != null;
+                continue;
+            }
+            String key = inner.isEmpty() ? id : id + '\u0000' + inner;
+            String memoized = memo().get(key);
+            if (memoized != null) {
+                memoHits++;
+                sql.append(memoized);
+                recordNestedDependents(fragment, inner, dependentPath, new HashSet<>(Set.of(id)));
+            } else {
+                int start = sql.length();
+                if (append(fragment.namespace, fragment.parts, inner, dependentPath, expanding, sql)) {
+                    memo().put(key, sql.substring(start));
+                } else {
+                    resolved = false;
+                }
+            }
+            expanding.remove(id);
+        }
+        return resolved;
+    }
+
+    /**
+     * Records the dependent for the fragments a memoized expansion went through.
+     */
+    private void recordNestedDependents(Fragment fragment, Map<String, String> context, String dependentPath,
+                                        Set<String> visited) {
+        for (Part part : fragment.parts) {
+            if (!part.isInclude()) {
+                continue;
+            }
+            String id = qualify(substitute(part.refid, context), fragment.namespace);
+            dependents.computeIfAbsent(id, k -> new HashSet<>()).add(dependentPath);
+            Fragment nested = fragments.get(id);
+            if (nested != null && visited.add(id)) {
+                recordNestedDependents(nested, innerContext(part, context), dependentPath, visited);
+            }
+        }
+    }
+
+    /**
+     * Properties visible inside an include: the outer ones, overridden by the include's own, whose
+     * values are substituted with the outer ones first.
+     */
+    private static Map<String, String> innerContext(Part include, Map<String, String> context) {
+        if (include.properties == null) {
+            return context;
+        }
+        Map<String, String> inner = new TreeMap<>(context);
+        for (Map.Entry<String, String> property : include.properties.entrySet()) {
+            inner.put(property.getKey(), substitute(property.getValue(), context));
+        }
+        return inner;
+    }
+
+    private static String qualify(String refid, String namespace) {
+        return refid.indexOf('.') >= 0 ? refid : namespace + "." + refid;
+    }
+
+    /**
+     * Replaces ${name} with the property value when the property is defined; other placeholders stay.
+     */
+    private static String substitute(String text, Map<String, String> properties) {
+        if (properties.isEmpty() || text.indexOf("${") < 0) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            int start = text.indexOf("${", i);
+            int end = start < 0 ? -1 : text.indexOf('}', start + 2);
+            if (end < 0) {
+                result.append(text, i, text.length());
+                break;
+            }
+            String value = properties.get(text.substring(start + 2, end));
+            result.append(text, i, start).append(value != null ? value : text.substring(start, end + 1));
+            i = end + 1;
+        }
+        return result.toString();
+    }
+
+    private Map<String, String> memo() {
+        if (expansions == null) {
+            expansions = new HashMap<>(); // Transient field after deserialization
+        }
+        return expansions;
+    }
+
+    public synchronized int size() {
+        return fragments.size();
+    }
+
+    /**
+     * Returns how many includes were served from the memoized expansions.
+     */
+    public synchronized long getMemoHits() {
+        return memoHits;
+    }
+}
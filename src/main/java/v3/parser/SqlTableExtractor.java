@@ -1,11 +1,17 @@
 package v3.parser;
 
+import v3.model.AccessMode;
+
 import java.util.*;
-import java.util.regex.*;
 
 /**
  * Extracts table names from SQL statements using a token-based approach.
  * Handles SELECT, UPDATE, INSERT, JOIN, and removes aliases.
+ *
+ * Both steps are hand-written single-pass scanners: the cleaner strips MyBatis placeholders, tags,
+ * CDATA markers and line comments and collapses whitespace in one walk over the statement, and the
+ * extractor tokenizes the cleaned text once, tracking parenthesis depth, the statement kind at each
+ * depth and the names of common table expressions. Both run in linear time.
  */
 public class SqlTableExtractor {
 
@@ -13,6 +19,36 @@ public class SqlTableExtractor {
         "DUAL", "SELECT", "FROM", "WHERE", "AND", "OR", "ON", "AS", "SET", "JOIN", "LEFT", "RIGHT", "INNER", "OUTER", "CROSS", "VALUES", "UPDATE", "INSERT", "DELETE", "MERGE", "INTO", "USING", "GROUP", "ORDER", "BY", "HAVING", "DISTINCT", "LIMIT", "OFFSET", "CASE", "WHEN", "THEN", "ELSE", "END", "IN", "EXISTS", "NOT", "NULL", "IS", "LIKE", "BETWEEN", "ASC", "DESC", "WITH", "PARTITION"
     );
 
+    // MyBatis/iBatis XML tags whose markup is removed (the content is kept)
+    private static final String[] DYNAMIC_TAGS = {
+        "if", "where", "set", "choose", "when", "otherwise", "trim", "foreach", "bind"
+    };
+    private static final String CDATA_START = "<![CDATA[";
+    private static final String CDATA_END = "]]>";
+
+    // Keywords that end a FROM list or an UPDATE target list
+    private static final Set<String> CLAUSE_TERMINATORS = Set.of(
+        "WHERE", "GROUP", "ORDER", "HAVING", "UNION", "INTERSECT", "EXCEPT", "MINUS", "CONNECT", "START",
+        "LIMIT", "OFFSET", "FETCH", "FOR", "WINDOW", "RETURNING", "SET", "VALUES", "SELECT", "WHEN"
+    );
+
+    // Words that are neither keywords nor columns where a column reference could appear
+    private static final Set<String> NON_COLUMN_WORDS = Set.of(
+        "TRUE", "FALSE", "UNKNOWN", "ALL", "ANY", "SOME", "ROWNUM", "ROWID", "LEVEL", "PRIOR", "SYSDATE",
+        "SYSTIMESTAMP", "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIMESTAMP", "INTERVAL",
+        "NULLS", "FIRST", "LAST", "ROWS", "ROW", "NEXT", "DUPLICATE", "KEY", "IGNORE", "MATCHED", "OF", "NOWAIT",
+        "SKIP", "LOCKED", "ESCAPE", "DEFAULT", "RECURSIVE", "OVER", "UNBOUNDED", "PRECEDING", "FOLLOWING",
+        "CURRENT", "SEPARATOR", "LEADING", "TRAILING", "BOTH", "LOW_PRIORITY", "HIGH_PRIORITY", "DELAYED", "SIBLINGS", "NOCYCLE"
+    );
+
+    // Statement kinds tracked per parenthesis level
+    private static final int STATEMENT_NONE = 0;
+    private static final int STATEMENT_SELECT = 1;
+    private static final int STATEMENT_INSERT = 2;
+    private static final int STATEMENT_UPDATE = 3;
+    private static final int STATEMENT_DELETE = 4;
+    private static final int STATEMENT_MERGE = 5;
+
     /**
      * Extracts all table names referenced in the given SQL statement.
      * Handles JOINs, aliases, and subqueries.
@@ -21,118 +57,701 @@ public class SqlTableExtractor {
      * @return set of normalized table names
      */
     public Set<String> extractTableNames(String sql) {
-        Set<String> tables = new HashSet<>();
+        return new HashSet<>(extractTableUsage(sql).keySet());
+    }
+
+    /**
+     * Extracts all base tables referenced in the given SQL statement with how they are used.
+     * Tables in subqueries, CTE bodies and comma-separated FROM lists are included; CTE names are not.
+     *
+     * @param sql the SQL statement to parse
+     * @return normalized table name -> {@link AccessMode} flags
+     */
+    public Map<String, Integer> extractTableUsage(String sql) {
+        Map<String, Integer> tables = new HashMap<>();
         if (sql == null || sql.trim().isEmpty()) {
             return tables;
         }
         String cleanedSql = cleanMyBatisDynamicSql(sql);
-        tables.addAll(tokenBasedTableExtraction(cleanedSql));
+        new StructureScanner(cleanedSql, tables).scan();
         return tables;
     }
 
     /**
-     * Cleans MyBatis/iBatis dynamic SQL tags and removes empty lines.
+     * Extracts the columns the given SQL statement references, per base table.
+     * Select lists, WHERE, ON, GROUP BY and ORDER BY expressions, SET assignments and INSERT column
+     * lists are covered. Qualified columns are resolved through the table aliases of their query
+     * block; unqualified columns are attributed to every base table of the block, which over-reports
+     * for joins but never misses a table. "*" stands for every column: SELECT * and INSERT without a
+     * column list.
+     *
+     * @param sql the SQL statement to parse
+     * @return normalized table name -> normalized column names
      */
-    private String cleanMyBatisDynamicSql(String sql) {
-        // Remove MyBatis/iBatis parameter placeholders like #{...}, ${...}, and :param
-        String cleaned = sql.replaceAll("#\\{[^}]*\\}", "?");
-        cleaned = cleaned.replaceAll("\\$\\{[^}]*\\}", "?");
-        cleaned = cleaned.replaceAll(":[a-zA-Z0-9_]+", "?"); // :param style
-        cleaned = cleaned.replaceAll("#", "?"); // Remove stray #
-        cleaned = cleaned.replaceAll("\\$", "?"); // Remove stray $
-        // Remove common MyBatis/iBatis XML tags (keep the content)
-        cleaned = cleaned.replaceAll("</?if[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?where[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?set[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?choose[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?when[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?otherwise[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?trim[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?foreach[^>]*>", "");
-        cleaned = cleaned.replaceAll("</?bind[^>]*>", "");
-        cleaned = cleaned.replaceAll("<!\\[CDATA\\[", "");
-        cleaned = cleaned.replaceAll("\\]\\]>", "");
-        // Remove line comments
-        cleaned = cleaned.replaceAll("--[^\n]*", "");
-        // Remove empty lines
-        cleaned = cleaned.replaceAll("(?m)^\\s*$\\r?\\n", "");
-        // Replace multiple whitespaces with single space
-        cleaned = cleaned.replaceAll("\\s+", " ");
-        return cleaned.trim();
+    public Map<String, Set<String>> extractColumnUsage(String sql) {
+        Map<String, Set<String>> columns = new HashMap<>();
+        if (sql == null || sql.trim().isEmpty()) {
+            return columns;
+        }
+        String cleanedSql = cleanMyBatisDynamicSql(sql);
+        new StructureScanner(cleanedSql, new HashMap<>(), columns).scan();
+        return columns;
     }
 
     /**
-     * Token-based extraction for table names from SQL.
-     * Handles SELECT, UPDATE, INSERT, JOIN, and removes aliases.
+     * Cleans MyBatis/iBatis dynamic SQL in a single pass:
+     * <ul>
+     *   <li>#{...}, ${...} and :param placeholders and stray # and $ become ?</li>
+     *   <li>dynamic SQL tags (if, where, set, choose, when, otherwise, trim, foreach, bind) and
+     *       CDATA markers are removed, keeping their content</li>
+     *   <li>line comments are removed and whitespace runs collapse to a single space</li>
+     * </ul>
      */
-    private Set<String> tokenBasedTableExtraction(String sql) {
-        Set<String> tables = new HashSet<>();
-        String upperSql = sql.toUpperCase();
-        // FROM clause
-        Matcher fromMatcher = Pattern.compile("(?i)FROM\\s+([^\s,;()]+)").matcher(sql);
-        while (fromMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(fromMatcher.group(1)));
-        }
-        // JOIN clause
-        Matcher joinMatcher = Pattern.compile("(?i)JOIN\\s+([^\s,;()]+)").matcher(sql);
-        while (joinMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(joinMatcher.group(1)));
-        }
-        // UPDATE clause
-        Matcher updateMatcher = Pattern.compile("(?i)UPDATE\\s+([^\s,;()]+)").matcher(sql);
-        while (updateMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(updateMatcher.group(1)));
-        }
-        // INSERT INTO clause
-        Matcher insertMatcher = Pattern.compile("(?i)INSERT\\s+INTO\\s+([^\s,;()]+)").matcher(sql);
-        while (insertMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(insertMatcher.group(1)));
-        }
-        // DELETE FROM clause
-        Matcher deleteMatcher = Pattern.compile("(?i)DELETE\\s+FROM\\s+([^\s,;()]+)").matcher(sql);
-        while (deleteMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(deleteMatcher.group(1)));
-        }
-        // MERGE INTO clause
-        Matcher mergeMatcher = Pattern.compile("(?i)MERGE\\s+INTO\\s+([^\s,;()]+)").matcher(sql);
-        while (mergeMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(mergeMatcher.group(1)));
-        }
-        // USING clause (for MERGE)
-        Matcher usingMatcher = Pattern.compile("(?i)USING\\s+([^\s,;()]+)").matcher(sql);
-        while (usingMatcher.find()) {
-            tables.addAll(splitAndNormalizeTables(usingMatcher.group(1)));
+    String cleanMyBatisDynamicSql(String sql) {
+        Cleaned out = new Cleaned(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end;
+            if ((c == '#' || c == '$') && (end = placeholderEnd(sql, i)) > 0) {
+                out.append('?');
+                i = end;
+            } else if (c == '#' || c == '$') {
+                out.append('?');
+                i++;
+            } else if (c == ':' && i + 1 < length && isParamChar(sql.charAt(i + 1))) {
+                i += 2;
+                while (i < length && isParamChar(sql.charAt(i))) {
+                    i++;
+                }
+                out.append('?');
+            } else if (c == '<' && (end = tagEnd(sql, i)) > 0) {
+                i = end;
+            } else if (c == ']' && sql.startsWith(CDATA_END, i)) {
+                i += CDATA_END.length();
+            } else {
+                out.append(c);
+                i++;
+            }
         }
-        return tables;
+        return out.toString().trim();
+    }
+
+    /**
+     * Returns the index after a #{...} or ${...} placeholder starting at i, or -1.
+     * A #{...} nested in a ${...} does not end it.
+     */
+    private static int placeholderEnd(String sql, int i) {
+        if (i + 1 >= sql.length() || sql.charAt(i + 1) != '{') {
+            return -1;
+        }
+        if (sql.charAt(i) == '#') {
+            int close = sql.indexOf('}', i + 2);
+            return close < 0 ? -1 : close + 1;
+        }
+        for (int j = i + 2; j < sql.length(); j++) {
+            char c = sql.charAt(j);
+            int nested;
+            if (c == '}') {
+                return j + 1;
+            } else if (c == '#' && (nested = placeholderEnd(sql, j)) > 0) {
+                j = nested - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index after a dynamic SQL tag or CDATA start marker at i, or -1.
+     * Placeholders inside a tag are skipped, so a '>' within them does not close it.
+     */
+    private static int tagEnd(String sql, int i) {
+        if (sql.startsWith(CDATA_START, i)) {
+            return i + CDATA_START.length();
+        }
+        int nameStart = i + 1 < sql.length() && sql.charAt(i + 1) == '/' ? i + 2 : i + 1;
+        boolean known = false;
+        for (String tag : DYNAMIC_TAGS) {
+            if (sql.startsWith(tag, nameStart)) {
+                known = true;
+                break;
+            }
+        }
+        if (!known) {
+            return -1;
+        }
+        for (int j = nameStart; j < sql.length(); j++) {
+            char c = sql.charAt(j);
+            int placeholder;
+            if (c == '>') {
+                return j + 1;
+            } else if ((c == '#' || c == '$') && (placeholder = placeholderEnd(sql, j)) > 0) {
+                j = placeholder - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isParamChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Same whitespace set as the regex class \s.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     /**
-     * Splits table section by comma and removes aliases.
+     * Output buffer of the cleaner: drops line comments and collapses whitespace as characters arrive.
      */
-    private Set<String> splitAndNormalizeTables(String section) {
-        Set<String> tables = new HashSet<>();
-        String[] parts = section.split(",");
-        for (String part : parts) {
-            String table = part.trim();
-            if (!table.isEmpty()) {
-                // Remove alias: split by whitespace, take first token
-                String[] tokens = table.split("\\s+");
-                String baseTable = tokens[0];
-                // Remove schema prefix if present
-                if (baseTable.contains(".")) {
-                    String[] schemaSplit = baseTable.split("\\.");
-                    baseTable = schemaSplit[schemaSplit.length - 1];
+    private static final class Cleaned {
+        private final StringBuilder buffer;
+        private boolean pendingSpace;
+        private boolean inComment;
+
+        Cleaned(int capacity) {
+            buffer = new StringBuilder(capacity);
+        }
+
+        void append(char c) {
+            if (inComment) {
+                if (c != '\n') {
+                    return;
                 }
-                // Remove quotes/backticks
-                baseTable = baseTable.replaceAll("[`'\"]", "");
-                // Convert to uppercase
-                baseTable = baseTable.toUpperCase();
-                // Filter out placeholders and SQL keywords
-                if (!baseTable.equals("?") && !baseTable.isEmpty() && !SQL_KEYWORDS.contains(baseTable)) {
-                    tables.add(baseTable);
+                inComment = false;
+            }
+            if (isSpace(c)) {
+                pendingSpace = buffer.length() > 0;
+                return;
+            }
+            if (c == '-' && !pendingSpace && buffer.length() > 0 && buffer.charAt(buffer.length() - 1) == '-') {
+                // "--" starts a comment running to the end of the line
+                buffer.setLength(buffer.length() - 1);
+                if (buffer.length() > 0 && buffer.charAt(buffer.length() - 1) == ' ') {
+                    buffer.setLength(buffer.length() - 1);
+                    pendingSpace = true;
                 }
+                inComment = true;
+                return;
             }
+            if (pendingSpace) {
+                buffer.append(' ');
+                pendingSpace = false;
+            }
+            buffer.append(c);
+        }
+
+        @Override
+        public String toString() {
+            return buffer.toString();
+        }
+    }
+
+    /**
+     * Structural table extractor over cleaned SQL.
+     *
+     * Keeps one {@link Frame} per open parenthesis. A frame remembers which statement it belongs to
+     * and whether the next name is a table: after FROM, JOIN or a comma in a FROM list it is read,
+     * after UPDATE, INSERT INTO, DELETE FROM, MERGE INTO or TRUNCATE it is written. Names declared by
+     * WITH are collected and never reported as tables. FROM inside a function call (EXTRACT, TRIM) is
+     * not treated as a table clause because its frame has no SELECT.
+     *
+     * When a column map is given, every other name that is not an alias, a function or a keyword is
+     * a column reference. References are kept on their frame and resolved when the query block ends,
+     * once all of its FROM aliases are known: a qualified reference through the block's aliases or,
+     * for correlated subqueries, an enclosing block's; an unqualified one to every base table of the
+     * block. Columns of derived tables and CTEs are not traced through them.
+     */
+    private static final class StructureScanner {
+        private final String sql;
+        private final Map<String, Integer> tables;
+        private final Map<String, Set<String>> columns;
+        private final Set<String> cteNames = new HashSet<>();
+        private final Deque<Frame> frames = new ArrayDeque<>();
+        private Frame frame = new Frame();
+        private String previousWord = "";
+        private int pos;
+
+        StructureScanner(String sql, Map<String, Integer> tables) {
+            this(sql, tables, null);
+        }
+
+        StructureScanner(String sql, Map<String, Integer> tables, Map<String, Set<String>> columns) {
+            this.sql = sql;
+            this.tables = tables;
+            this.columns = columns;
+        }
+
+        void scan() {
+            int length = sql.length();
+            while (pos < length) {
+                char c = sql.charAt(pos);
+                if (c == ' ') {
+                    pos++;
+                } else if (c == '\'') {
+                    skipStringLiteral();
+                    frame.aliasFor = null;
+                    frame.operand = true;
+                } else if (c == '/' && pos + 1 < length && sql.charAt(pos + 1) == '*') {
+                    int end = sql.indexOf("*/", pos + 2);
+                    pos = end < 0 ? length : end + 2;
+                } else if (isNameStart(c)) {
+                    readName();
+                } else {
+                    punctuation(c);
+                    pos++;
+                }
+            }
+            resolveAll();
+        }
+
+        private void punctuation(char c) {
+            switch (c) {
+                case '(':
+                    boolean derivedTable = frame.expect != 0;
+                    String columnListOf = null;
+                    if (frame.statement == STATEMENT_INSERT) {
+                        columnListOf = frame.aliasFor; // INSERT INTO T (A, B)
+                    } else if (frame.cteList && frame.statement == STATEMENT_NONE && cteNames.contains(previousWord)) {
+                        columnListOf = ""; // WITH X (A, B) AS ...
+                    }
+                    frame.expect = 0; // A derived table or CTE body; its alias is not a table
+                    frame.aliasFor = null;
+                    frames.push(frame);
+                    frame = new Frame();
+                    frame.derivedTable = derivedTable;
+                    frame.columnListOf = columnListOf;
+                    break;
+                case ')':
+                    if (!frames.isEmpty()) {
+                        Frame closed = frame;
+                        frame = frames.pop();
+                        if (columns != null) {
+                            resolve(closed, frame);
+                            if (closed.derivedTable) {
+                                frame.opaqueSources = true;
+                            }
+                            frame.insertColumnList |= closed.columnListOf != null;
+                        }
+                        frame.aliasFor = closed.derivedTable ? "" : null;
+                        frame.operand = true;
+                    }
+                    break;
+                case ',':
+                    if (frame.cteList && frame.statement == STATEMENT_NONE) {
+                        frame.expectCteName = true;
+                    } else if (frame.fromList) {
+                        frame.expect = AccessMode.READ;
+                    } else if (frame.updateList) {
+                        frame.expect = AccessMode.WRITE;
+                    }
+                    frame.aliasFor = null;
+                    frame.operand = false;
+                    break;
+                case ';':
+                    resolveAll();
+                    frame = new Frame();
+                    frames.clear();
+                    break;
+                case '*':
+                    if (columns != null && frame.statement == STATEMENT_SELECT && !frame.operand && frame.expect == 0) {
+                        frame.addReference(null, "*"); // SELECT *
+                        frame.operand = true;
+                        break;
+                    }
+                    // Multiplication
+                    frame.expect = 0;
+                    frame.aliasFor = null;
+                    frame.operand = false;
+                    break;
+                default:
+                    if (c != '.') {
+                        frame.expect = 0;
+                        frame.aliasFor = null;
+                        frame.operand = false;
+                    }
+            }
+        }
+
+        /**
+         * Reads a possibly qualified and quoted name such as schema."Table" and handles it.
+         */
+        private void readName() {
+            int length = sql.length();
+            String segment = null;
+            String qualifier = null;
+            boolean quoted = false;
+            int segments = 0;
+            while (pos < length) {
+                char c = sql.charAt(pos);
+                qualifier = segment;
+                if (c == '"' || c == '`') {
+                    int end = sql.indexOf(c, pos + 1);
+                    end = end < 0 ? length : end;
+                    segment = sql.substring(pos + 1, end);
+                    quoted = true;
+                    pos = Math.min(length, end + 1);
+                } else {
+                    int start = pos;
+                    while (pos < length && isNamePart(sql.charAt(pos))) {
+                        pos++;
+                    }
+                    segment = sql.substring(start, pos);
+                    quoted = false;
+                }
+                segments++;
+                if (pos + 1 < length && sql.charAt(pos) == '.' && isNameStart(sql.charAt(pos + 1))) {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            String word = segment.toUpperCase();
+            if (pos + 1 < length && sql.charAt(pos) == '.' && sql.charAt(pos + 1) == '*') {
+                // alias.* in a select list
+                pos += 2;
+                if (columns != null) {
+                    frame.addReference(word, "*");
+                    frame.operand = true;
+                }
+                previousWord = word;
+                return;
+            }
+            if (segments == 1 && !quoted && keyword(word)) {
+                if (!word.equals("AS")) {
+                    frame.aliasFor = null;
+                }
+                frame.operand = word.equals("END");
+                previousWord = word;
+                return;
+            }
+            name(word, segments > 1 ? qualifier.toUpperCase() : null);
+            previousWord = word;
+        }
+
+        /**
+         * Applies a structural keyword; returns false if the word is not one.
+         */
+        private boolean keyword(String word) {
+            if (frame.expectCteName) {
+                if (word.equals("RECURSIVE")) {
+                    return true;
+                }
+                return false;
+            }
+            switch (word) {
+                case "WITH":
+                    frame.statement = STATEMENT_NONE;
+                    frame.cteList = true;
+                    frame.expectCteName = true;
+                    return true;
+                case "SELECT":
+                    if (columns != null) {
+                        endQueryBlock();
+                    }
+                    startStatement(STATEMENT_SELECT);
+                    return true;
+                case "INSERT":
+                case "REPLACE":
+                    startStatement(STATEMENT_INSERT);
+                    return true;
+                case "MERGE":
+                    startStatement(STATEMENT_MERGE);
+                    return true;
+                case "DELETE":
+                    startStatement(STATEMENT_DELETE);
+                    frame.expect = AccessMode.WRITE;
+                    return true;
+                case "UPDATE":
+                    if (previousWord.equals("FOR") || previousWord.equals("KEY")) {
+                        return true; // SELECT ... FOR UPDATE, ON DUPLICATE KEY UPDATE
+                    }
+                    startStatement(STATEMENT_UPDATE);
+                    frame.expect = AccessMode.WRITE;
+                    frame.updateList = true;
+                    return true;
+                case "TRUNCATE":
+                    frame.expect = AccessMode.WRITE;
+                    return true;
+                case "INTO":
+                    if (frame.statement == STATEMENT_INSERT || frame.statement == STATEMENT_MERGE) {
+                        frame.expect = AccessMode.WRITE;
+                    }
+                    return true;
+                case "FROM":
+                    if (frame.statement == STATEMENT_DELETE && !frame.wroteTarget) {
+                        frame.expect = AccessMode.WRITE;
+                    } else if (frame.statement != STATEMENT_NONE || frame.derivedTable || frames.isEmpty()) {
+                        frame.expect = AccessMode.READ;
+                        frame.fromList = true;
+                    }
+                    return true;
+                case "JOIN":
+                    frame.expect = AccessMode.READ;
+                    frame.fromList = true;
+                    return true;
+                case "USING":
+                    if (frame.statement == STATEMENT_MERGE) {
+                        frame.expect = AccessMode.READ;
+                    }
+                    return true;
+                case "ON":
+                    frame.expect = 0;
+                    return true;
+                case "TABLE":
+                case "ONLY":
+                case "LATERAL":
+                    return true; // Keep expecting a table
+                default:
+                    if (CLAUSE_TERMINATORS.contains(word)) {
+                        if (columns != null && word.equals("VALUES")) {
+                            insertAllColumns();
+                        }
+                        frame.fromList = false;
+                        frame.updateList = false;
+                        frame.expect = 0;
+                        return true;
+                    }
+                    if (SQL_KEYWORDS.contains(word)) {
+                        frame.expect = 0;
+                        return true;
+                    }
+                    return false;
+            }
+        }
+
+        private void startStatement(int statement) {
+            frame.statement = statement;
+            frame.cteList = false;
+            frame.expectCteName = false;
+            frame.fromList = false;
+            frame.updateList = false;
+            frame.wroteTarget = false;
+            frame.expect = 0;
+        }
+
+        private void name(String name, String qualifier) {
+            if (frame.expectCteName) {
+                cteNames.add(name);
+                frame.expectCteName = false;
+                return;
+            }
+            if (frame.expect == 0) {
+                if (columns != null) {
+                    nonTableName(name, qualifier);
+                }
+                return; // Alias, column or function name
+            }
+            if (!name.equals("?") && !name.isEmpty() && !SQL_KEYWORDS.contains(name) && !cteNames.contains(name)) {
+                tables.merge(name, frame.expect, (a, b) -> a | b);
+                if (columns != null) {
+                    frame.addTable(name, frame.statement == STATEMENT_INSERT && frame.expect == AccessMode.WRITE);
+                    frame.aliasFor = name;
+                }
+            } else if (columns != null && cteNames.contains(name)) {
+                frame.opaqueSources = true;
+                frame.addAlias(name, "");
+                frame.aliasFor = "";
+            }
+            if (frame.expect == AccessMode.WRITE) {
+                frame.wroteTarget = true;
+            }
+            frame.expect = 0;
+        }
+
+        /**
+         * Handles a name outside a table position: a table alias, a column alias, a function or a column.
+         */
+        private void nonTableName(String name, String qualifier) {
+            if (frame.aliasFor != null) {
+                frame.addAlias(name, frame.aliasFor);
+                frame.aliasFor = null;
+                return;
+            }
+            boolean alias = frame.operand || previousWord.equals("AS"); // SELECT a b, SELECT a AS b
+            frame.operand = true;
+            if (alias) {
+                frame.addAlias(name, null);
+                return;
+            }
+            if (isFunctionCall() || !isColumnName(name)) {
+                return;
+            }
+            frame.addReference(qualifier, name);
+        }
+
+        private boolean isFunctionCall() {
+            int next = pos < sql.length() && sql.charAt(pos) == ' ' ? pos + 1 : pos;
+            return next < sql.length() && sql.charAt(next) == '(' && !sql.startsWith("(+)", next); // Oracle outer join
+        }
+
+        private static boolean isColumnName(String name) {
+            if (name.isEmpty() || NON_COLUMN_WORDS.contains(name)) {
+                return false;
+            }
+            char first = name.charAt(0);
+            return Character.isLetter(first) || first == '_';
+        }
+
+        /**
+         * Marks every column of the INSERT targets as written when the statement has no column list.
+         */
+        private void insertAllColumns() {
+            if (frame.statement == STATEMENT_INSERT && !frame.insertColumnList && frame.insertTargets != null) {
+                for (String target : frame.insertTargets) {
+                    addColumn(target, "*");
+                }
+            }
+        }
+
+        /**
+         * Ends the current query block of the frame before the next one starts in it, as in
+         * INSERT ... SELECT or SELECT ... UNION SELECT.
+         */
+        private void endQueryBlock() {
+            if (frame.statement == STATEMENT_NONE) {
+                return;
+            }
+            insertAllColumns();
+            resolve(frame, frames.peek());
+            frame.tableNames = null;
+            frame.aliases = null;
+            frame.insertTargets = null;
+            frame.opaqueSources = false;
+        }
+
+        /**
+         * Attributes the column references of a frame to tables; references it cannot resolve move
+         * to the enclosing frame.
+         */
+        private void resolve(Frame closed, Frame parent) {
+            if (closed.references == null) {
+                return;
+            }
+            for (String[] reference : closed.references) {
+                String qualifier = reference[0];
+                String column = reference[1];
+                if (closed.columnListOf != null) {
+                    if (!closed.columnListOf.isEmpty()) {
+                        addColumn(closed.columnListOf, column); // INSERT INTO T (A, B)
+                    }
+                } else if (qualifier != null) {
+                    String table = closed.aliases != null ? closed.aliases.get(qualifier) : null;
+                    if (table == null && parent != null) {
+                        parent.addReference(qualifier, column);
+                    } else if (table != null && !table.isEmpty()) {
+                        addColumn(table, column);
+                    }
+                } else if (closed.aliases != null && closed.aliases.containsKey(column)
+                        && closed.aliases.get(column) == null) {
+                    continue; // ORDER BY a select list alias
+                } else if (closed.tableNames != null) {
+                    for (String table : closed.tableNames) {
+                        addColumn(table, column);
+                    }
+                } else if (!closed.opaqueSources && parent != null) {
+                    parent.addReference(null, column);
+                }
+            }
+            closed.references = null;
+        }
+
+        private void resolveAll() {
+            if (columns == null) {
+                return;
+            }
+            while (!frames.isEmpty()) {
+                Frame parent = frames.pop();
+                resolve(frame, parent);
+                frame = parent;
+            }
+            resolve(frame, null);
+        }
+
+        private void addColumn(String table, String column) {
+            columns.computeIfAbsent(table, k -> new HashSet<>()).add(column);
+        }
+
+        private void skipStringLiteral() {
+            int length = sql.length();
+            pos++;
+            while (pos < length) {
+                if (sql.charAt(pos) == '\'') {
+                    if (pos + 1 < length && sql.charAt(pos + 1) == '\'') {
+                        pos += 2; // Escaped quote
+                        continue;
+                    }
+                    pos++;
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private static boolean isNameStart(char c) {
+            return isNamePart(c) || c == '"' || c == '`';
+        }
+
+        private static boolean isNamePart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '?' || c == '$' || c == '#' || c == '@';
+        }
+    }
+
+    /**
+     * Parse state of one parenthesis level.
+     */
+    private static final class Frame {
+        int statement = STATEMENT_NONE;
+        int expect; // AccessMode flags of the table expected next, 0 if none
+        boolean fromList;
+        boolean updateList;
+        boolean wroteTarget;
+        boolean cteList;
+        boolean expectCteName;
+        boolean derivedTable;
+
+        // Column tracking, only used by extractColumnUsage
+        List<String> tableNames; // base tables of the current query block
+        Map<String, String> aliases; // alias or table name -> table, "" for derived tables and CTEs, null for select list aliases
+        List<String[]> references; // {qualifier or null, column}
+        List<String> insertTargets;
+        String aliasFor; // table whose alias may follow, "" for a derived table or CTE
+        String columnListOf; // INSERT target whose column list this frame is
+        boolean insertColumnList;
+        boolean opaqueSources;
+        boolean operand; // the previous token ended an expression
+
+        void addTable(String table, boolean insertTarget) {
+            if (tableNames == null) {
+                tableNames = new ArrayList<>(2);
+            }
+            if (!tableNames.contains(table)) {
+                tableNames.add(table);
+            }
+            addAlias(table, table);
+            if (insertTarget) {
+                if (insertTargets == null) {
+                    insertTargets = new ArrayList<>(1);
+                }
+                insertTargets.add(table);
+            }
+        }
+
+        void addAlias(String alias, String table) {
+            if (aliases == null) {
+                aliases = new HashMap<>();
+            }
+            aliases.put(alias, table);
+        }
+
+        void addReference(String qualifier, String column) {
+            if (references == null) {
+                references = new ArrayList<>();
+            }
+            references.add(new String[] {qualifier, column});
         }
-        return tables;
     }
 }
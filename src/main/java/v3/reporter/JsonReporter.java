@@ -2,6 +2,7 @@ package v3.reporter;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import v3.model.BatchImpactResult;
 import v3.model.ImpactAnalysisResult;
 
 /**
@@ -37,4 +38,14 @@ public class JsonReporter {
         Gson compactGson = new Gson();
         return compactGson.toJson(result);
     }
+
+    /**
+     * Converts a batch analysis result (combined entry points plus per-table results) to JSON format.
+     *
+     * @param result the batch analysis result
+     * @return JSON string
+     */
+    public String generateBatchReport(BatchImpactResult result) {
+        return gson.toJson(result);
+    }
 }
@@ -1,10 +1,13 @@
 package v3.reporter;
 
+import v3.model.AnalysisMode;
+import v3.model.BatchImpactResult;
 import v3.model.CallChain;
 import v3.model.ImpactAnalysisResult;
 import v3.model.TableImpact;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Generates human-readable text reports from impact analysis results.
@@ -24,19 +27,35 @@ public class TextReporter {
         report.append("IMPACT ANALYSIS REPORT\n");
         report.append("=".repeat(80)).append("\n");
         report.append("Table: ").append(result.getTableName()).append("\n");
+        report.append("Mode: ").append(result.getMode()).append("\n");
         report.append("-".repeat(80)).append("\n\n");
 
         // Summary
         report.append("SUMMARY:\n");
         report.append("  Total Impacts: ").append(result.getImpacts().size()).append("\n");
         report.append("  Total Call Chains: ").append(result.getCallChains().size()).append("\n");
+        report.append("  Impacted Entry Points: ").append(result.getImpactedEntryPoints().size()).append("\n");
         report.append("  Unresolved Mapper References: ")
               .append(result.getUnresolvedMapperReferences().size()).append("\n");
         report.append("  Warnings: ").append(result.getWarnings().size()).append("\n\n");
 
+        // Entry points
+        if (!result.getImpactedEntryPoints().isEmpty()) {
+            report.append("IMPACTED ENTRY POINTS:\n");
+            report.append("-".repeat(80)).append("\n");
+            for (String entryPoint : result.getImpactedEntryPoints()) {
+                report.append("  - ").append(entryPoint).append("\n");
+            }
+            report.append("\n");
+        }
+
         // Call Chains
         if (!result.getCallChains().isEmpty()) {
-            report.append("CALL CHAINS (Service → Repository → Table):\n");
+            if (result.getMode() == AnalysisMode.REACHABILITY) {
+                report.append("WITNESS CALL CHAINS (shortest chain per entry point):\n");
+            } else {
+                report.append("CALL CHAINS (Service → Repository → Table):\n");
+            }
             report.append("-".repeat(80)).append("\n");
 
             int count = 1;
@@ -110,4 +129,56 @@ public class TextReporter {
 
         return report.toString();
     }
+
+    /**
+     * Generates a combined report for a batch of tables followed by the per-table reports.
+     *
+     * @param result the batch analysis result
+     * @return formatted text report
+     */
+    public String generateBatchReport(BatchImpactResult result) {
+        StringBuilder report = new StringBuilder();
+
+        report.append("=".repeat(80)).append("\n");
+        report.append("BATCH IMPACT ANALYSIS REPORT\n");
+        report.append("=".repeat(80)).append("\n");
+        report.append("Tables: ").append(result.getTableResults().size()).append("\n");
+        report.append("Mode: ").append(result.getMode()).append("\n");
+        report.append("-".repeat(80)).append("\n\n");
+
+        // Summary
+        report.append("SUMMARY:\n");
+        report.append("  Total Call Chains: ").append(result.getTotalCallChains()).append("\n");
+        report.append("  Impacted Entry Points: ").append(result.getEntryPointTables().size()).append("\n");
+        report.append("  Repository Methods Traversed: ").append(result.getTraversedRepositoryMethods()).append("\n");
+        report.append("  Repository Methods Reused: ").append(result.getReusedRepositoryMethods()).append("\n\n");
+
+        // Per-table overview
+        report.append("TABLES:\n");
+        report.append("-".repeat(80)).append("\n");
+        for (ImpactAnalysisResult tableResult : result.getTableResults()) {
+            report.append(String.format("  %-40s %6d chains %6d entry points %4d warnings%n",
+                tableResult.getTableName(), tableResult.getCallChains().size(),
+                tableResult.getImpactedEntryPoints().size(), tableResult.getWarnings().size()));
+        }
+        report.append("\n");
+
+        // Combined entry points
+        if (!result.getEntryPointTables().isEmpty()) {
+            report.append("IMPACTED ENTRY POINTS (all tables):\n");
+            report.append("-".repeat(80)).append("\n");
+            for (Map.Entry<String, List<String>> entry : result.getEntryPointTables().entrySet()) {
+                report.append("  - ").append(entry.getKey())
+                      .append("\n      tables: ").append(String.join(", ", entry.getValue())).append("\n");
+            }
+            report.append("\n");
+        }
+
+        // Per-table breakdown
+        for (ImpactAnalysisResult tableResult : result.getTableResults()) {
+            report.append(generateReport(tableResult)).append("\n");
+        }
+
+        return report.toString();
+    }
 }
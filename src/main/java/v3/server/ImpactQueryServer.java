@@ -0,0 +1,254 @@
+package v3.server;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import v3.analyzer.ImpactAnalyzer;
+import v3.analyzer.TraversalPolicy;
+import v3.model.AccessMode;
+import v3.model.AnalysisMode;
+import v3.model.ImpactAnalysisResult;
+import v3.reporter.JsonReporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Local HTTP server that keeps an initialized {@link ImpactAnalyzer} resident and answers impact
+ * queries with the {@link JsonReporter} output, so repeated queries skip JVM startup and index loading.
+ *
+ * Endpoints (bound to the loopback interface only):
+ * <pre>
+ *   GET  /impact?table=T[,T2...][&amp;mode=paths|reachability][&amp;max-depth=N][&amp;max-chains-per-method=N]
+ *                [&amp;max-chains=N][&amp;timeout-ms=N][&amp;access=read|write|all][&amp;column=C]
+ *   POST /reload   re-initializes from the monolith root and swaps in the new indices
+ *   GET  /stats    index statistics and query counters
+ * </pre>
+ * Queries run concurrently on a fixed thread pool against an immutable snapshot of the indices.
+ * A reload builds a new analyzer next to the current one; queries keep being served from the old
+ * snapshot until the new one is swapped in.
+ */
+public class ImpactQueryServer {
+
+    private static final Logger logger = Logger.getLogger(ImpactQueryServer.class.getName());
+    static {
+        logger.setLevel(Level.SEVERE); // Hide info/debug messages by default
+    }
+
+    private final Path monolithRootPath;
+    private final Supplier<ImpactAnalyzer> analyzerFactory;
+    private final AtomicReference<ImpactAnalyzer> analyzer = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+    private final AtomicLong reloadCount = new AtomicLong();
+    private final JsonReporter jsonReporter = new JsonReporter();
+    private final Gson gson = new Gson();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param monolithRootPath root path of the Java monolith
+     * @param analyzerFactory creates a configured, not yet initialized analyzer; called on start and on every reload
+     */
+    public ImpactQueryServer(Path monolithRootPath, Supplier<ImpactAnalyzer> analyzerFactory) {
+        this.monolithRootPath = monolithRootPath;
+        this.analyzerFactory = analyzerFactory;
+    }
+
+    /**
+     * Initializes the indices and starts serving on the given loopback port.
+     *
+     * @param port TCP port; 0 picks a free port
+     * @param threads number of query worker threads
+     */
+    public void start(int port, int threads) throws IOException {
+        reload();
+        // Headers and body are written separately; without TCP_NODELAY every response waits for a delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/impact", this::handleImpact);
+        server.createContext("/reload", this::handleReload);
+        server.createContext("/stats", this::handleStats);
+        executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        server.setExecutor(executor);
+        server.start();
+        logger.log(Level.SEVERE, "Impact query server listening on http://127.0.0.1:" + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds fresh indices and swaps them in. Concurrent reload requests are serialized.
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.currentTimeMillis();
+            ImpactAnalyzer fresh = analyzerFactory.get();
+            fresh.initialize(monolithRootPath);
+            analyzer.set(fresh);
+            reloadCount.incrementAndGet();
+            logger.log(Level.SEVERE, "Indices loaded in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private void handleImpact(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use GET"));
+            return;
+        }
+        Map<String, String> params = queryParameters(exchange);
+        String tables = params.get("table");
+        if (tables == null || tables.isBlank()) {
+            send(exchange, 400, error("Missing 'table' parameter"));
+            return;
+        }
+
+        AnalysisMode mode;
+        int access;
+        TraversalPolicy policy;
+        try {
+            mode = AnalysisMode.valueOf(params.getOrDefault("mode", "paths").toUpperCase());
+            access = AccessMode.parse(params.getOrDefault("access", "all"));
+            int timeoutMillis = intParameter(params, "timeout-ms");
+            policy = new TraversalPolicy(
+                intParameter(params, "max-depth"),
+                intParameter(params, "max-chains-per-method"),
+                intParameter(params, "max-chains"),
+                timeoutMillis > 0 ? Duration.ofMillis(timeoutMillis) : null
+            );
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error("Invalid parameter: " + e.getMessage()));
+            return;
+        }
+
+        List<String> tableNames = Arrays.stream(tables.split(","))
+            .map(String::trim)
+            .filter(t -> !t.isEmpty())
+            .collect(Collectors.toList());
+        String column = params.get("column");
+        if (column != null && tableNames.size() != 1) {
+            send(exchange, 400, error("'column' requires exactly one table"));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            ImpactAnalyzer current = analyzer.get();
+            String body;
+            if (column != null) {
+                ImpactAnalysisResult result = current.analyzeColumnImpact(tableNames.get(0), column, policy, mode, access);
+                body = jsonReporter.generateCompactReport(result);
+            } else if (tableNames.size() == 1) {
+                ImpactAnalysisResult result = current.analyzeTableImpact(tableNames.get(0), policy, mode, access);
+                body = jsonReporter.generateCompactReport(result);
+            } else {
+                body = gson.toJson(current.analyzeTablesImpact(tableNames, policy, mode, access));
+            }
+            send(exchange, 200, body);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Query failed for " + tables + ": " + e.getMessage(), e);
+            send(exchange, 500, error(e.toString()));
+        } finally {
+            queryCount.incrementAndGet();
+            queryNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void handleReload(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use POST"));
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Reload failed, keeping previous indices: " + e.getMessage(), e);
+            send(exchange, 500, error(e.toString()));
+            return;
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "reloaded");
+        body.put("durationMs", System.currentTimeMillis() - start);
+        send(exchange, 200, gson.toJson(body));
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>(analyzer.get().getStatistics());
+        long queries = queryCount.get();
+        body.put("Queries served", queries);
+        body.put("Average query ms", queries == 0 ? 0.0 : queryNanos.get() / 1_000_000.0 / queries);
+        body.put("Reloads", reloadCount.get());
+        send(exchange, 200, gson.toJson(body));
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static int intParameter(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + "=" + value);
+        }
+    }
+
+    private String error(String message) {
+        return gson.toJson(Map.of("error", message));
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package v3.analyzer;
+
+import v3.indexer.CallReference;
+import v3.model.CallChain;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Compares {@link CallChainTraversal} with the previous copy-per-edge BFS on a synthetic
+ * layered call graph with high fan-in and a few back edges.
+ *
+ * Usage: java v3.analyzer.CallChainTraversalBenchmark [layers] [width] [fan-in] [iterations]
+ */
+public class CallChainTraversalBenchmark {
+
+    private static final String START = "bench.OrderDbCmd.selectOrders";
+
+    public static void main(String[] args) {
+        int layers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int fanIn = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        Map<String, List<CallReference>> index = generateGraph(layers, width, fanIn, new Random(42));
+        ReverseCallGraph graph = ReverseCallGraph.build(index, CallChainTraversalBenchmark::isServiceLayer);
+        System.out.printf("Graph: %,d nodes, %,d edges%n", graph.nodeCount(), graph.edgeCount());
+
+        List<CallChain> expected = legacyFindCallChains(index, START, "ORDERS");
+        List<CallChain> actual = new CallChainTraversal(graph).findCallChains(START, "ORDERS");
+        int difference = firstDifference(expected, actual);
+        if (difference >= 0) {
+            throw new IllegalStateException("Traversal results differ from the legacy implementation at chain "
+                + difference + " of " + expected.size());
+        }
+        System.out.printf("Chains per query: %,d (results identical)%n", actual.size());
+
+        for (int i = 0; i < iterations; i++) {
+            measure("legacy   ", () -> legacyFindCallChains(index, START, "ORDERS").size());
+            CallChainTraversal traversal = new CallChainTraversal(graph);
+            measure("traversal", () -> traversal.findCallChains(START, "ORDERS").size());
+        }
+    }
+
+    /**
+     * Returns the index of the first chain that differs in path, line numbers, repository method or
+     * table, or -1 if the lists are identical; compares chain by chain instead of building strings.
+     */
+    private static int firstDifference(List<CallChain> expected, List<CallChain> actual) {
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            CallChain want = expected.get(i);
+            CallChain got = actual.get(i);
+            if (!want.getCallPath().equals(got.getCallPath()) || !want.getLineNumbers().equals(got.getLineNumbers())
+                    || !want.getRepositoryMethod().equals(got.getRepositoryMethod())
+                    || !want.getTableName().equals(got.getTableName())) {
+                return i;
+            }
+        }
+        return expected.size() == actual.size() ? -1 : Math.min(expected.size(), actual.size());
+    }
+
+    private interface Query {
+        int run();
+    }
+
+    private static void measure(String label, Query query) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        int chains = query.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocated = threads.getThreadAllocatedBytes(tid) - bytesBefore;
+        System.out.printf("%s: %,8d ms, %,8d MB allocated, %,d chains%n", label, millis, allocated >> 20, chains);
+    }
+
+    /**
+     * Layer 0 holds DAO helpers calling the start method, the last layer holds services.
+     * Every method is called by {@code fanIn} random methods of the next layer; one helper per
+     * layer also calls back into the layer below to create cycles.
+     */
+    private static Map<String, List<CallReference>> generateGraph(int layers, int width, int fanIn, Random random) {
+        Map<String, List<CallReference>> index = new HashMap<>();
+        List<CallReference> startCallers = new ArrayList<>();
+        for (int j = 0; j < fanIn; j++) {
+            startCallers.add(new CallReference("Helper0.java", j + 1, method(0, random.nextInt(width), layers)));
+        }
+        index.put(START, startCallers);
+        for (int layer = 0; layer < layers; layer++) {
+            for (int i = 0; i < width; i++) {
+                List<CallReference> callers = new ArrayList<>();
+                for (int j = 0; j < fanIn; j++) {
+                    callers.add(new CallReference("Layer" + (layer + 1) + ".java", j + 1,
+                        method(layer + 1, random.nextInt(width), layers)));
+                }
+                if (layer > 0 && i == 0) {
+                    callers.add(new CallReference("Layer" + (layer - 1) + ".java", 99, method(layer - 1, 0, layers)));
+                }
+                index.put(method(layer, i, layers), callers);
+            }
+        }
+        return index;
+    }
+
+    private static String method(int layer, int i, int layers) {
+        return layer == layers ? "bench.OrderService" + i + ".handle" : "bench.Helper" + layer + "_" + i + ".call";
+    }
+
+    private static boolean isServiceLayer(String method) {
+        return method.substring(0, method.lastIndexOf('.')).contains("Service");
+    }
+
+    /**
+     * The BFS previously used by ImpactAnalyzer: copies path, line numbers and visited set per edge.
+     */
+    private static List<CallChain> legacyFindCallChains(Map<String, List<CallReference>> index,
+                                                        String startMethod, String tableName) {
+        List<CallChain> allChains = new ArrayList<>();
+        Queue<LegacyNode> queue = new LinkedList<>();
+        queue.offer(new LegacyNode(startMethod, new ArrayList<>(), new ArrayList<>(), new HashSet<>()));
+        while (!queue.isEmpty()) {
+            LegacyNode current = queue.poll();
+            List<CallReference> callers = index.getOrDefault(current.method, new ArrayList<>());
+            if (callers.isEmpty()) {
+                if (!current.path.isEmpty()) {
+                    allChains.add(new CallChain(current.path, current.lineNumbers, startMethod, tableName));
+                }
+            } else {
+                for (CallReference caller : callers) {
+                    String callerMethod = caller.getSourceMethod();
+                    if (current.visited.contains(callerMethod) || callerMethod.equals(startMethod)) {
+                        continue;
+                    }
+                    List<String> newPath = new ArrayList<>(current.path);
+                    newPath.add(0, callerMethod);
+                    List<Integer> newLineNumbers = new ArrayList<>(current.lineNumbers);
+                    newLineNumbers.add(0, caller.getLine());
+                    Set<String> newVisited = new HashSet<>(current.visited);
+                    newVisited.add(callerMethod);
+                    if (isServiceLayer(callerMethod)) {
+                        allChains.add(new CallChain(newPath, newLineNumbers, startMethod, tableName));
+                    } else {
+                        queue.offer(new LegacyNode(callerMethod, newPath, newLineNumbers, newVisited));
+                    }
+                }
+            }
+        }
+        if (allChains.isEmpty()) {
+            allChains.add(new CallChain(new ArrayList<>(), new ArrayList<>(), startMethod, tableName));
+        }
+        return allChains;
+    }
+
+    private static class LegacyNode {
+        final String method;
+        final List<String> path;
+        final List<Integer> lineNumbers;
+        final Set<String> visited;
+
+        LegacyNode(String method, List<String> path, List<Integer> lineNumbers, Set<String> visited) {
+            this.method = method;
+            this.path = path;
+            this.lineNumbers = lineNumbers;
+            this.visited = visited;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package v3.indexer;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares the retained heap of an unbounded HashMap of ASTs with {@link CompilationUnitCache}
+ * on a generated corpus of Java files. With the default 20,000 files the HashMap does not fit the
+ * default heap; that is reported as its result and the cache phases still run.
+ *
+ * Usage: java v3.indexer.CompilationUnitCacheBenchmark [file-count] [cache-size]
+ */
+public class CompilationUnitCacheBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int cacheSize = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+
+        Path corpus = Files.createTempDirectory("cu-cache-bench");
+        try {
+            List<Path> files = generateCorpus(corpus, fileCount);
+            System.out.println("Generated " + files.size() + " files in " + corpus);
+
+            long baseline = usedHeap();
+
+            Map<Path, CompilationUnit> map = new HashMap<>();
+            long start = System.nanoTime();
+            try {
+                parseAll(files, map::put);
+                long mapMillis = (System.nanoTime() - start) / 1_000_000;
+                long mapHeap = usedHeap() - baseline;
+                System.out.printf("HashMap              : %,8d entries, %,6d MB retained, %,6d ms%n",
+                    map.size(), mapHeap >> 20, mapMillis);
+            } catch (OutOfMemoryError e) {
+                // The unbounded map not fitting the heap is the result; free it and measure the caches
+                int entries = map.size();
+                map.clear();
+                System.out.printf("HashMap              : out of memory after %,d of %,d entries (max heap %,d MB)%n",
+                    entries, files.size(), Runtime.getRuntime().maxMemory() >> 20);
+            }
+            map.clear();
+
+            CompilationUnitCache strong = new CompilationUnitCache(cacheSize, false);
+            start = System.nanoTime();
+            parseAll(files, strong::put);
+            long strongMillis = (System.nanoTime() - start) / 1_000_000;
+            long strongHeap = usedHeap() - baseline;
+            System.out.printf("LRU (strong)         : %,8d entries, %,6d MB retained, %,6d ms%n",
+                strong.size(), strongHeap >> 20, strongMillis);
+            strong.clear();
+
+            CompilationUnitCache soft = new CompilationUnitCache(cacheSize, true);
+            start = System.nanoTime();
+            parseAll(files, soft::put);
+            long softMillis = (System.nanoTime() - start) / 1_000_000;
+            long softHeap = usedHeap() - baseline;
+            System.out.printf("LRU (soft references): %,8d entries, %,6d MB retained, %,6d ms%n",
+                soft.size(), softHeap >> 20, softMillis);
+            System.out.println(soft);
+        } finally {
+            deleteRecursively(corpus);
+        }
+    }
+
+    private interface Sink {
+        void put(Path file, CompilationUnit cu);
+    }
+
+    private static void parseAll(List<Path> files, Sink sink) throws IOException {
+        JavaParser parser = new JavaParser();
+        for (Path file : files) {
+            parser.parse(file).getResult().ifPresent(cu -> sink.put(file, cu));
+        }
+    }
+
+    private static List<Path> generateCorpus(Path dir, int fileCount) throws IOException {
+        List<Path> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            StringBuilder src = new StringBuilder();
+            src.append("package bench.p").append(i % 100).append(";\n\n");
+            src.append("import java.util.List;\n\n");
+            src.append("public class Generated").append(i).append("Service {\n");
+            src.append("    private Generated").append((i + 1) % fileCount).append("DbCmd dbCmd;\n\n");
+            for (int m = 0; m < 10; m++) {
+                src.append("    public int method").append(m).append("(List<String> items, int limit) {\n");
+                src.append("        int total = 0;\n");
+                src.append("        for (String item : items) {\n");
+                src.append("            total += dbCmd.select").append(m).append("(item, limit);\n");
+                src.append("        }\n");
+                src.append("        return total;\n");
+                src.append("    }\n\n");
+            }
+            src.append("}\n");
+            Path file = dir.resolve("Generated" + i + "Service.java");
+            Files.writeString(file, src);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
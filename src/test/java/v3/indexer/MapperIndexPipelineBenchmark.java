@@ -0,0 +1,189 @@
+package v3.indexer;
+
+import v3.model.MavenModule;
+import v3.model.TableXmlMapping;
+import v3.parser.MyBatisXmlParser;
+import v3.parser.SqlFragmentRegistry;
+import v3.parser.SqlTableExtractor;
+import v3.scanner.MapperXmlLocator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Checks that {@link MapperIndexPipeline} indexes the same statements as a single-threaded
+ * parse-extract-merge loop over a set of generated modules whose mappers include fragments of other
+ * modules, that repeated pipeline runs produce the same order, and compares the time both need.
+ *
+ * Usage: java v3.indexer.MapperIndexPipelineBenchmark [modules] [mappers-per-module] [threads] [iterations]
+ */
+public class MapperIndexPipelineBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int moduleCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int mappers = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        Path root = Files.createTempDirectory("mapper-pipeline-benchmark");
+        try {
+            List<MavenModule> modules = generateModules(root, moduleCount, mappers);
+            MapperXmlLocator locator = new DirectoryLocator();
+
+            Map<String, List<String>> expected = describe(sequential(modules, locator));
+            Map<String, List<String>> actual = null;
+            Map<String, List<String>> previous = null;
+            boolean ordered = true;
+            MapperIndexPipeline pipeline = null;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                sequential(modules, locator);
+                long sequentialNanos = System.nanoTime() - start;
+
+                pipeline = new MapperIndexPipeline(locator, new MyBatisXmlParser(new SqlFragmentRegistry()),
+                    new SqlTableExtractor(), threads);
+                Map<String, List<TableXmlMapping>> index = new java.util.concurrent.ConcurrentHashMap<>();
+                start = System.nanoTime();
+                pipeline.index(modules, new HashMap<>(), Set.of(), index, new HashSet<>(), (xmlPath, statements) -> { });
+                long pipelineNanos = System.nanoTime() - start;
+                previous = actual;
+                actual = describe(index);
+                ordered &= previous == null || previous.equals(actual);
+                System.out.printf("sequential: %,6d ms   pipeline (%d threads): %,6d ms   speedup %.1fx%n",
+                    sequentialNanos / 1_000_000, threads, pipelineNanos / 1_000_000,
+                    (double) sequentialNanos / pipelineNanos);
+            }
+            pipeline.getStageStatistics().forEach(System.out::println);
+
+            int statements = expected.values().stream().mapToInt(List::size).sum();
+            System.out.printf("Modules: %,d x %,d mappers, %,d tables, %,d indexed statements%n",
+                moduleCount, mappers, expected.size(), statements);
+            if (!ordered) {
+                throw new IllegalStateException("Pipeline runs produced different statement orders");
+            }
+            if (!sorted(expected).equals(sorted(actual))) {
+                for (String table : expected.keySet()) {
+                    if (!expected.get(table).equals(actual.get(table))) {
+                        System.out.println("MISMATCH: " + table);
+                        System.out.println("  sequential: " + expected.get(table));
+                        System.out.println("  pipeline  : " + actual.get(table));
+                        break;
+                    }
+                }
+                throw new IllegalStateException("Pipeline index differs from the sequential index");
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * The indexing loop the pipeline replaces: every mapper XML is parsed, extracted and merged in turn.
+     */
+    private static Map<String, List<TableXmlMapping>> sequential(List<MavenModule> modules, MapperXmlLocator locator) {
+        MyBatisXmlParser parser = new MyBatisXmlParser(new SqlFragmentRegistry());
+        SqlTableExtractor extractor = new SqlTableExtractor();
+        Map<String, List<TableXmlMapping>> index = new HashMap<>();
+        for (MavenModule module : modules) {
+            for (Path xml : locator.findMapperXmlFiles(module.getRootPath())) {
+                parser.parseMapperXml(module.getModuleName(), xml, parsed -> {
+                    Map<String, Integer> tables = extractor.extractTableUsage(parsed.getRawSql());
+                    Set<String> columns = TableToXmlIndexer.columnReferences(tables.keySet(),
+                        extractor.extractColumnUsage(parsed.getRawSql()), parsed.getResultMapColumns());
+                    TableXmlMapping mapping = parsed.withTableAccessModes(tables).withColumns(columns);
+                    for (String table : tables.keySet()) {
+                        index.computeIfAbsent(table, k -> new ArrayList<>()).add(mapping);
+                    }
+                });
+            }
+        }
+        parser.flushDeferred();
+        return index;
+    }
+
+    private static Map<String, List<String>> sorted(Map<String, List<String>> described) {
+        Map<String, List<String>> sorted = new TreeMap<>();
+        described.forEach((table, lines) -> {
+            List<String> copy = new ArrayList<>(lines);
+            Collections.sort(copy);
+            sorted.put(table, copy);
+        });
+        return sorted;
+    }
+
+    /**
+     * Table -> "xml#id|sql|access|columns" of its statements, in index order.
+     */
+    private static Map<String, List<String>> describe(Map<String, List<TableXmlMapping>> index) {
+        Map<String, List<String>> described = new TreeMap<>();
+        index.forEach((table, statements) -> {
+            List<String> lines = new ArrayList<>();
+            for (TableXmlMapping m : statements) {
+                lines.add(Path.of(m.getMapperXmlPath()).getFileName() + "#" + m.getStatementId() + "|" + m.getRawSql()
+                    + "|" + m.getAccessMode(table) + "|" + m.getColumns());
+            }
+            described.put(table, lines);
+        });
+        return described;
+    }
+
+    private static List<MavenModule> generateModules(Path root, int moduleCount, int mappers) throws IOException {
+        List<MavenModule> modules = new ArrayList<>();
+        Random random = new Random(17);
+        for (int m = 0; m < moduleCount; m++) {
+            Path dir = Files.createDirectories(root.resolve("module" + m));
+            for (int f = 0; f < mappers; f++) {
+                StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                String namespace = "com.example.m" + m + ".Mapper" + f;
+                xml.append("<mapper namespace=\"").append(namespace).append("\">\n");
+                xml.append("  <sql id=\"cols\">${alias}.ID, ${alias}.NAME, ${alias}.STATUS</sql>\n");
+                for (int s = 0; s < 40; s++) {
+                    String table = "TABLE_" + random.nextInt(300);
+                    String other = "TABLE_" + random.nextInt(300);
+                    // Mostly local includes, some to a mapper of the next module, parsed later
+                    String refid = random.nextInt(10) == 0
+                        ? "com.example.m" + ((m + 1) % moduleCount) + ".Mapper" + f + ".cols" : "cols";
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            xml.append("  <select id=\"s").append(s).append("\">SELECT <include refid=\"").append(refid)
+                                .append("\"><property name=\"alias\" value=\"t\"/></include> FROM ").append(table)
+                                .append(" t JOIN ").append(other).append(" o ON o.ID = t.ID")
+                                .append(" <where><if test=\"id != null\">AND t.ID = #{id}</if></where></select>\n");
+                            break;
+                        case 1:
+                            xml.append("  <update id=\"s").append(s).append("\">UPDATE ").append(table)
+                                .append(" SET STATUS = #{status} WHERE ID IN (SELECT ID FROM ").append(other)
+                                .append(" WHERE NAME = #{name})</update>\n");
+                            break;
+                        default:
+                            xml.append("  <insert id=\"s").append(s).append("\">INSERT INTO ").append(table)
+                                .append(" (ID, NAME) SELECT ID, NAME FROM ").append(other).append("</insert>\n");
+                    }
+                }
+                xml.append("</mapper>\n");
+                Files.writeString(dir.resolve("Mapper" + f + "DbCmd.xml"), xml);
+            }
+            modules.add(new MavenModule("module" + m, dir, dir, dir));
+        }
+        return modules;
+    }
+
+    /**
+     * Returns every XML of a module directory, sorted by name.
+     */
+    private static final class DirectoryLocator extends MapperXmlLocator {
+        @Override
+        public List<Path> findMapperXmlFiles(Path searchPath) {
+            try (Stream<Path> paths = Files.list(searchPath)) {
+                return paths.filter(p -> p.toString().endsWith(".xml")).sorted().collect(java.util.stream.Collectors.toList());
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package v3.indexer;
+
+import v3.model.MavenModule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Checks that indexing call references on several threads produces exactly the callExpressionCache
+ * of a serial build: the same callees, each with the same references in the same order. Indexes a
+ * generated corpus, or the Java files under a given source directory, once with one thread and once
+ * with N, each into a fresh cache directory, and exits with status 1 on the first difference.
+ *
+ * Usage: java v3.indexer.ParallelIndexingCheck [source-dir | file-count] [threads]
+ */
+public class ParallelIndexingCheck {
+
+    public static void main(String[] args) throws IOException {
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path workDir = Files.createTempDirectory("parallel-index-check");
+        try {
+            Path sourceDir;
+            if (args.length > 0 && !args[0].matches("\\d+")) {
+                sourceDir = Path.of(args[0]).toAbsolutePath();
+            } else {
+                sourceDir = workDir.resolve("src");
+                int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+                generateCorpus(sourceDir, fileCount);
+            }
+            List<MavenModule> modules = List.of(new MavenModule("check", sourceDir, sourceDir, null));
+
+            long start = System.nanoTime();
+            Map<String, List<CallReference>> serial = index(modules, workDir.resolve("serial"), 1);
+            long serialMillis = (System.nanoTime() - start) / 1_000_000;
+            start = System.nanoTime();
+            Map<String, List<CallReference>> parallel = index(modules, workDir.resolve("parallel"), threads);
+            long parallelMillis = (System.nanoTime() - start) / 1_000_000;
+
+            int references = 0;
+            for (List<CallReference> refs : serial.values()) {
+                references += refs.size();
+            }
+            System.out.printf("Serial     : %,8d callees, %,9d references, %,6d ms%n", serial.size(), references, serialMillis);
+            System.out.printf("%2d threads : %,8d callees, %,9d references, %,6d ms%n", threads, parallel.size(),
+                parallel.values().stream().mapToInt(List::size).sum(), parallelMillis);
+
+            String difference = firstDifference(serial, parallel);
+            if (difference != null) {
+                System.err.println("MISMATCH: parallel index differs from the serial index: " + difference);
+                System.exit(1);
+            }
+            System.out.println("Parallel index is identical to the serial index, including reference order");
+        } finally {
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static Map<String, List<CallReference>> index(List<MavenModule> modules, Path cacheRoot, int threads)
+            throws IOException {
+        CalleeMethodIndexer indexer = new CalleeMethodIndexer();
+        indexer.setCacheDirectory(CacheDirectory.open(cacheRoot, modules.get(0).getRootPath(), modules));
+        indexer.setThreads(threads);
+        return indexer.findReferences(List.of(), modules);
+    }
+
+    /**
+     * Describes the first callee whose references differ, or returns null if the indexes are equal.
+     */
+    private static String firstDifference(Map<String, List<CallReference>> expected, Map<String, List<CallReference>> actual) {
+        TreeSet<String> callees = new TreeSet<>(expected.keySet());
+        callees.addAll(actual.keySet());
+        for (String callee : callees) {
+            List<CallReference> want = expected.get(callee);
+            List<CallReference> got = actual.get(callee);
+            if (want == null || got == null) {
+                return callee + " is only in the " + (want == null ? "parallel" : "serial") + " index";
+            }
+            if (!want.equals(got)) {
+                for (int i = 0; i < Math.min(want.size(), got.size()); i++) {
+                    if (!want.get(i).equals(got.get(i))) {
+                        return callee + " reference " + i + ": serial " + describe(want.get(i)) + ", parallel " + describe(got.get(i));
+                    }
+                }
+                return callee + " has " + want.size() + " references serially and " + got.size() + " in parallel";
+            }
+        }
+        return expected.equals(actual) ? null : "maps differ";
+    }
+
+    private static String describe(CallReference ref) {
+        return ref.getFilePath() + ":" + ref.getLine() + " from " + ref.getSourceMethod();
+    }
+
+    /**
+     * Services in several packages calling shared DbCmd methods and each other, so most callees are
+     * referenced from many files and the order of their references depends on the merge order.
+     */
+    private static void generateCorpus(Path dir, int fileCount) throws IOException {
+        for (int i = 0; i < fileCount; i++) {
+            String pkg = "bench.p" + (i % 20);
+            Path pkgDir = Files.createDirectories(dir.resolve(pkg.replace('.', '/')));
+            StringBuilder src = new StringBuilder();
+            src.append("package ").append(pkg).append(";\n\n");
+            src.append("import bench.dao.SharedDbCmd;\nimport java.util.List;\n\n");
+            src.append("public class Generated").append(i).append("Service {\n");
+            src.append("    private SharedDbCmd dbCmd;\n");
+            src.append("    private bench.p").append((i + 1) % 20).append(".Generated").append((i + 1) % fileCount)
+                .append("Service next;\n\n");
+            for (int m = 0; m < 5; m++) {
+                src.append("    public int method").append(m).append("(List<String> items) {\n");
+                src.append("        int total = dbCmd.select").append((i + m) % 50).append("(items.get(0));\n");
+                src.append("        dbCmd.update").append(m).append("(items, total);\n");
+                src.append("        return total + next.method").append((m + 1) % 5).append("(items);\n");
+                src.append("    }\n\n");
+            }
+            src.append("}\n");
+            Files.writeString(pkgDir.resolve("Generated" + i + "Service.java"), src);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package v3.indexer;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.type.Type;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares resolving call scopes by scanning the file's declarations for every call, as the indexer
+ * used to, with building a {@link SymbolTable} once per file and looking the scopes up in it, on
+ * generated files with thousands of calls. Both must find the same declaration for every call.
+ *
+ * Usage: java v3.indexer.SymbolTableBenchmark [file-count] [methods-per-file]
+ */
+public class SymbolTableBenchmark {
+
+    public static void main(String[] args) {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int methodsPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        JavaParser parser = new JavaParser();
+        List<CompilationUnit> units = new ArrayList<>();
+        int calls = 0;
+        for (int i = 0; i < fileCount; i++) {
+            CompilationUnit cu = parser.parse(generateFile(i, methodsPerFile)).getResult().orElseThrow();
+            units.add(cu);
+            calls += cu.findAll(MethodCallExpr.class).size();
+        }
+        System.out.printf("Generated %d files with %,d calls (%,d per file)%n", fileCount, calls, calls / fileCount);
+
+        int mismatches = 0;
+        for (CompilationUnit cu : units) {
+            SymbolTable symbols = new SymbolTable(cu);
+            for (MethodCallExpr call : cu.findAll(MethodCallExpr.class)) {
+                if (call.getScope().isEmpty()) continue;
+                String name = SymbolTable.leftmostName(call.getScope().get());
+                if (!name.equals(printedName(call.getScope().get())) || symbols.lookup(call, name) != scan(call, cu, name)) {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println("Mismatches: " + mismatches);
+
+        for (int round = 0; round < 3; round++) {
+            timeScans(units);
+            timeSymbolTables(units);
+        }
+        long scanNanos = timeScans(units);
+        long tableNanos = timeSymbolTables(units);
+        System.out.printf("Per-call scans: %,8.2f ms per file%n", scanNanos / 1e6 / fileCount);
+        System.out.printf("Symbol table  : %,8.2f ms per file (%.0fx faster)%n", tableNanos / 1e6 / fileCount,
+            (double) scanNanos / Math.max(1, tableNanos));
+
+        CalleeMethodIndexer indexer = new CalleeMethodIndexer();
+        for (int round = 0; round < 3; round++) {
+            timeIndexing(indexer, units);
+        }
+        System.out.printf("Indexing      : %,8.2f ms per file (call scopes, type resolution and references)%n",
+            timeIndexing(indexer, units) / 1e6 / fileCount);
+    }
+
+    private static long timeScans(List<CompilationUnit> units) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (CompilationUnit cu : units) {
+            for (MethodCallExpr call : cu.findAll(MethodCallExpr.class)) {
+                if (call.getScope().isPresent() && scan(call, cu, printedName(call.getScope().get())) != null) {
+                    found++;
+                }
+            }
+        }
+        return System.nanoTime() - start + (found < 0 ? 1 : 0);
+    }
+
+    private static long timeSymbolTables(List<CompilationUnit> units) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (CompilationUnit cu : units) {
+            SymbolTable symbols = new SymbolTable(cu);
+            for (MethodCallExpr call : cu.findAll(MethodCallExpr.class)) {
+                if (call.getScope().isPresent()
+                        && symbols.lookup(call, SymbolTable.leftmostName(call.getScope().get())) != null) {
+                    found++;
+                }
+            }
+        }
+        return System.nanoTime() - start + (found < 0 ? 1 : 0);
+    }
+
+    private static long timeIndexing(CalleeMethodIndexer indexer, List<CompilationUnit> units) {
+        long start = System.nanoTime();
+        int[] references = new int[1];
+        for (CompilationUnit cu : units) {
+            indexer.indexCompilationUnit(Path.of("Bench.java"), cu, (callee, ref) -> references[0]++);
+        }
+        return System.nanoTime() - start + (references[0] < 0 ? 1 : 0);
+    }
+
+    /**
+     * The scope name as the indexer used to compute it, from the printed scope.
+     */
+    private static String printedName(Expression scope) {
+        String name = scope.toString();
+        return name.contains(".") ? name.split("\\.")[0] : name;
+    }
+
+    /**
+     * The indexer's former lookup: scan all fields, then the enclosing method's parameters and locals.
+     */
+    private static Type scan(MethodCallExpr call, CompilationUnit cu, String name) {
+        for (ClassOrInterfaceDeclaration classDecl : cu.findAll(ClassOrInterfaceDeclaration.class)) {
+            for (var field : classDecl.getFields()) {
+                for (var varDecl : field.getVariables()) {
+                    if (varDecl.getNameAsString().equals(name)) {
+                        return varDecl.getType();
+                    }
+                }
+            }
+        }
+        var methodOpt = call.findAncestor(MethodDeclaration.class);
+        if (methodOpt.isPresent()) {
+            for (var param : methodOpt.get().getParameters()) {
+                if (param.getNameAsString().equals(name)) {
+                    return param.getType();
+                }
+            }
+            for (var localVar : methodOpt.get().findAll(VariableDeclarator.class)) {
+                if (localVar.getNameAsString().equals(name)) {
+                    Type type = localVar.getType();
+                    if (type.isVarType() && localVar.getInitializer().filter(Expression::isObjectCreationExpr).isPresent()) {
+                        return localVar.getInitializer().get().asObjectCreationExpr().getType();
+                    }
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String generateFile(int index, int methods) {
+        StringBuilder src = new StringBuilder();
+        src.append("package com.example.service;\n\n");
+        src.append("import com.example.dao.OrderDbCmd;\nimport java.util.*;\n\n");
+        src.append("public class OrderService").append(index).append(" {\n");
+        for (int f = 0; f < 50; f++) {
+            src.append("    private OrderDbCmd dao").append(f).append(";\n");
+        }
+        src.append("    private final Map<String, List<String>> names = new HashMap<>();\n\n");
+        for (int m = 0; m < methods; m++) {
+            src.append("    public int process").append(m).append("(List<String> items, Map<String, Integer> counts) {\n");
+            src.append("        int total = 0;\n");
+            src.append("        StringBuilder text = new StringBuilder();\n");
+            src.append("        var orders = new ArrayList<String>();\n");
+            src.append("        for (String item : items) {\n");
+            src.append("            total += counts.getOrDefault(item, 0);\n");
+            src.append("            text.append(item.trim()).append(',');\n");
+            src.append("            orders.add(item.toUpperCase());\n");
+            src.append("        }\n");
+            src.append("        dao").append(m % 50).append(".selectOrder(items.get(0), total);\n");
+            src.append("        names.computeIfAbsent(text.toString(), k -> new ArrayList<>()).add(\"x\");\n");
+            src.append("        Collections.sort(orders);\n");
+            src.append("        helper(orders.size());\n");
+            src.append("        return total + text.length();\n");
+            src.append("    }\n\n");
+        }
+        src.append("    private void helper(int n) {}\n");
+        src.append("}\n");
+        return src.toString();
+    }
+}
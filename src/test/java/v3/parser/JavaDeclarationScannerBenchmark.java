@@ -0,0 +1,201 @@
+package v3.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks {@link JavaDeclarationScanner} against JavaParser and compares their speed, on a generated
+ * corpus of DbCmd-like classes or on the Java files under a directory.
+ *
+ * For every file the scanner reads, its package, type names and method names with parameter
+ * counts must equal what JavaParser finds; files the scanner hands back to the parser are counted
+ * as fallbacks.
+ *
+ * Usage: java v3.parser.JavaDeclarationScannerBenchmark [source-dir | file-count]
+ */
+public class JavaDeclarationScannerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path corpus;
+        boolean generated = args.length == 0 || args[0].matches("\\d+");
+        if (generated) {
+            corpus = Files.createTempDirectory("decl-scanner-bench");
+            generateCorpus(corpus, args.length > 0 ? Integer.parseInt(args[0]) : 2_000);
+        } else {
+            corpus = Path.of(args[0]);
+        }
+        try {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(corpus)) {
+                files = walk.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+            }
+            List<String> sources = new ArrayList<>();
+            for (Path file : files) {
+                sources.add(Files.readString(file));
+            }
+            System.out.println("Read " + files.size() + " files from " + corpus);
+
+            JavaParser parser = new JavaParser(new ParserConfiguration()
+                .setLanguageLevel(ParserConfiguration.LanguageLevel.BLEEDING_EDGE));
+            int scanned = 0;
+            int fallbacks = 0;
+            int mismatches = 0;
+            for (int i = 0; i < files.size(); i++) {
+                JavaDeclarationScanner.Declarations declarations = JavaDeclarationScanner.scan(sources.get(i));
+                if (declarations == null) {
+                    fallbacks++;
+                    continue;
+                }
+                CompilationUnit cu = parser.parse(sources.get(i)).getResult().orElse(null);
+                if (cu == null) {
+                    continue;
+                }
+                scanned++;
+                String expected = describe(cu);
+                String actual = describe(declarations);
+                if (!expected.equals(actual)) {
+                    mismatches++;
+                    if (mismatches <= 5) {
+                        System.out.println("Mismatch in " + files.get(i) + "\n  parser : " + expected + "\n  scanner: " + actual);
+                    }
+                }
+            }
+            System.out.printf("Scanned %,d files, %,d fallbacks to the parser, %,d mismatches%n",
+                scanned, fallbacks, mismatches);
+
+            // Warm up both, then time them over the whole corpus
+            for (int round = 0; round < 3; round++) {
+                timeScanner(sources);
+                timeParser(parser, sources);
+            }
+            long scannerNanos = timeScanner(sources);
+            long parserNanos = timeParser(parser, sources);
+            System.out.printf("JavaParser: %,8d ms%n", parserNanos / 1_000_000);
+            System.out.printf("Scanner   : %,8d ms (%.1fx faster)%n", scannerNanos / 1_000_000,
+                (double) parserNanos / Math.max(1, scannerNanos));
+        } finally {
+            if (generated) {
+                try (Stream<Path> walk = Files.walk(corpus)) {
+                    for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long timeScanner(List<String> sources) {
+        long start = System.nanoTime();
+        int methods = 0;
+        for (String source : sources) {
+            JavaDeclarationScanner.Declarations declarations = JavaDeclarationScanner.scan(source);
+            methods += declarations == null ? 0 : declarations.getMethods().size();
+        }
+        long nanos = System.nanoTime() - start;
+        if (methods < 0) {
+            System.out.println(methods);
+        }
+        return nanos;
+    }
+
+    private static long timeParser(JavaParser parser, List<String> sources) {
+        long start = System.nanoTime();
+        int methods = 0;
+        for (String source : sources) {
+            CompilationUnit cu = parser.parse(source).getResult().orElse(null);
+            methods += cu == null ? 0 : cu.findAll(MethodDeclaration.class).size();
+        }
+        return System.nanoTime() - start + (methods < 0 ? 1 : 0);
+    }
+
+    private static String describe(CompilationUnit cu) {
+        StringBuilder text = new StringBuilder();
+        text.append(cu.getPackageDeclaration().map(pd -> pd.getNameAsString()).orElse("")).append(" ");
+        @SuppressWarnings("rawtypes")
+        List<TypeDeclaration> types = cu.findAll(TypeDeclaration.class);
+        text.append(types.stream().map(t -> t.getNameAsString()).sorted().collect(Collectors.toList())).append(" ");
+        text.append(cu.findAll(MethodDeclaration.class).stream()
+            .map(md -> md.getNameAsString() + "/" + md.getParameters().size())
+            .sorted().collect(Collectors.toList()));
+        return text.toString();
+    }
+
+    private static String describe(JavaDeclarationScanner.Declarations declarations) {
+        return declarations.getPackageName() + " "
+            + declarations.getTypeNames().stream().sorted().collect(Collectors.toList()) + " "
+            + declarations.getMethods().stream()
+                .map(m -> m.getName() + "/" + m.getParameterCount())
+                .sorted().collect(Collectors.toList());
+    }
+
+    private static void generateCorpus(Path root, int fileCount) throws IOException {
+        for (int i = 0; i < fileCount; i++) {
+            Path dir = Files.createDirectories(root.resolve("com/example/dao/p" + (i % 50)));
+            StringBuilder src = new StringBuilder();
+            src.append("/* Generated DbCmd ").append(i).append(" { not a brace */\n");
+            src.append("package com.example.dao.p").append(i % 50).append(";\n\n");
+            src.append("import java.util.*;\nimport java.util.function.Function;\n\n");
+            src.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+            src.append("public class OrderDbCmd").append(i).append(" extends BaseDbCmd<Order> implements Cmd {\n");
+            src.append("    private static final String SQL = \"select * from t where a = '{' // }\";\n");
+            src.append("    private static final char BRACE = '}';\n");
+            src.append("    private final Map<String, List<Integer>> cache = new HashMap<>();\n");
+            src.append("    private final Comparator<String> cmp = new Comparator<String>() {\n");
+            src.append("        @Override public int compare(String a, String b) { return a.compareTo(b); }\n");
+            src.append("    };\n\n");
+            src.append("    public OrderDbCmd").append(i).append("(Session session) { super(session); }\n\n");
+            for (int m = 0; m < 30; m++) {
+                switch (m % 6) {
+                    case 0:
+                        src.append("    public List<Order> select").append(m).append("(Map<String, Object> params) {\n");
+                        src.append("        if (params == null) { return Collections.emptyList(); }\n");
+                        src.append("        return session.selectList(\"select").append(m).append("\", params);\n    }\n");
+                        break;
+                    case 1:
+                        src.append("    /** Updates {@code rows}. */\n");
+                        src.append("    public int update").append(m).append("(final Order order, @Param(\"id\") long id) throws SQLException {\n");
+                        src.append("        for (int k = 0; k < 3; k++) { order.touch(k > 1 ? id : 0L); }\n");
+                        src.append("        return session.update(\"update").append(m).append("\", order);\n    }\n");
+                        break;
+                    case 2:
+                        src.append("    protected <T extends Comparable<? super T>> T max").append(m).append("(T... values) {\n");
+                        src.append("        Runnable r = () -> { System.out.println(\"}\"); };\n");
+                        src.append("        return Arrays.stream(values).max(Comparator.naturalOrder()).orElse(null);\n    }\n");
+                        break;
+                    case 3:
+                        src.append("    int[] ids").append(m).append("(String text) {\n");
+                        src.append("        String block = \"\"\"\n            { \"json\": } \\\"\"\"\n            \"\"\";\n");
+                        src.append("        return new int[] { 1, 2, text.length() };\n    }\n");
+                        break;
+                    case 4:
+                        src.append("    public Object local").append(m).append("() {\n");
+                        src.append("        class Local { String name() { return \"local\"; } }\n");
+                        src.append("        return new Local().name();\n    }\n");
+                        break;
+                    default:
+                        src.append("    public void delete").append(m).append("(Order order) {\n");
+                        src.append("        session.delete(\"delete").append(m).append("\", order); // {\n    }\n");
+                        break;
+                }
+            }
+            src.append("    enum Status { OPEN(\"o\") { @Override String code() { return \"O\"; } }, CLOSED(\"c\");\n");
+            src.append("        private final String c;\n        Status(String c) { this.c = c; }\n");
+            src.append("        String code() { return c; }\n    }\n");
+            src.append("    interface Callback { void done(Order order); default boolean async() { return false; } }\n");
+            src.append("}\n");
+            Files.writeString(dir.resolve("OrderDbCmd" + i + ".java"), src.toString());
+        }
+    }
+}
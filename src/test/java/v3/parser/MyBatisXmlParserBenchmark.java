@@ -0,0 +1,222 @@
+package v3.parser;
+
+import v3.model.TableXmlMapping;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Checks that the streaming {@link MyBatisXmlParser} mode extracts the same statements, SQL and
+ * resultMap columns as the DOM mode, that it expands {@code <include>} fragments (including forward
+ * references, and references to other mappers through a shared {@link SqlFragmentRegistry}), and compares the time both modes need for a set of generated mapper XMLs.
+ *
+ * Usage: java v3.parser.MyBatisXmlParserBenchmark [mapper-files] [statements-per-file] [iterations]
+ */
+public class MyBatisXmlParserBenchmark {
+
+    private static final String INCLUDE_MAPPER =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<!DOCTYPE mapper PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n"
+        + "<mapper namespace=\"com.example.OrderDbCmd\">\n"
+        + "  <sql id=\"columns\">ID, STATUS, <include refid=\"audit\"/></sql>\n"
+        + "  <select id=\"findAll\">SELECT <include refid=\"columns\"/> FROM ORDERS</select>\n"
+        + "  <select id=\"findOne\">SELECT <include refid=\"com.example.OrderDbCmd.columns\"/> FROM ORDERS"
+        + " WHERE ID = #{id}</select>\n"
+        + "  <select id=\"findLate\">SELECT <include refid=\"late\"><property name=\"x\" value=\"y\"/></include>"
+        + " FROM ORDERS</select>\n"
+        + "  <select id=\"findOther\">SELECT <include refid=\"com.example.Other.cols\">"
+        + "<property name=\"alias\" value=\"ORDERS\"/></include> FROM ORDERS</select>\n"
+        + "  <select id=\"findLoop\">SELECT <include refid=\"loop\"/> FROM ORDERS</select>\n"
+        + "  <sql id=\"loop\">A, <include refid=\"loop\"/></sql>\n"
+        + "  <sql id=\"audit\">CREATED_AT</sql>\n"
+        + "  <sql id=\"late\">LATE_COLUMN</sql>\n"
+        + "</mapper>\n";
+
+    // Statement id -> expected SQL of INCLUDE_MAPPER in streaming mode
+    private static final String[][] EXPECTED_INCLUDES = {
+        {"findAll", "SELECT ID, STATUS, CREATED_AT FROM ORDERS"},
+        {"findOne", "SELECT ID, STATUS, CREATED_AT FROM ORDERS WHERE ID = #{id}"},
+        {"findLate", "SELECT LATE_COLUMN FROM ORDERS"},
+        {"findOther", "SELECT FROM ORDERS"},
+        {"findLoop", "SELECT A, FROM ORDERS"},
+    };
+
+    private static final String OTHER_MAPPER =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+        + "<mapper namespace=\"com.example.Other\">\n"
+        + "  <sql id=\"cols\">${alias}.ID, ${alias}.NAME</sql>\n"
+        + "  <sql id=\"aliased\"><include refid=\"cols\"><property name=\"alias\" value=\"${prefix}\"/></include></sql>\n"
+        + "  <select id=\"findAliased\">SELECT <include refid=\"aliased\"><property name=\"prefix\" value=\"o\"/>"
+        + "</include> FROM OTHER o</select>\n"
+        + "  <select id=\"findBack\">SELECT <include refid=\"com.example.OrderDbCmd.columns\"/> FROM OTHER</select>\n"
+        + "</mapper>\n";
+
+    // Statement id -> expected SQL of INCLUDE_MAPPER and OTHER_MAPPER parsed with a shared registry
+    private static final String[][] EXPECTED_SHARED = {
+        {"findAll", "SELECT ID, STATUS, CREATED_AT FROM ORDERS"},
+        {"findOther", "SELECT ORDERS.ID, ORDERS.NAME FROM ORDERS"},
+        {"findAliased", "SELECT o.ID, o.NAME FROM OTHER o"},
+        {"findBack", "SELECT ID, STATUS, CREATED_AT FROM OTHER"},
+    };
+
+    public static void main(String[] args) throws IOException {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int statements = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        Path dir = Files.createTempDirectory("mapper-xml-benchmark");
+        try {
+            List<Path> xmlFiles = new ArrayList<>();
+            Random random = new Random(11);
+            for (int i = 0; i < files; i++) {
+                Path xml = dir.resolve("Generated" + i + "DbCmd.xml");
+                Files.writeString(xml, generateMapper(i, statements, random));
+                xmlFiles.add(xml);
+            }
+            Path includeXml = dir.resolve("OrderDbCmd.xml");
+            Files.writeString(includeXml, INCLUDE_MAPPER);
+            Path otherXml = dir.resolve("OtherDbCmd.xml");
+            Files.writeString(otherXml, OTHER_MAPPER);
+
+            MyBatisXmlParser dom = new MyBatisXmlParser(false);
+            MyBatisXmlParser stax = new MyBatisXmlParser(true);
+            int mismatches = 0;
+            for (Path xml : xmlFiles) {
+                Map<String, String> expected = describe(dom.parseMapperXml("m", xml));
+                Map<String, String> actual = describe(stax.parseMapperXml("m", xml));
+                if (!expected.equals(actual) && mismatches++ < 10) {
+                    System.out.println("MISMATCH: " + xml);
+                    for (String id : expected.keySet()) {
+                        if (!expected.get(id).equals(actual.get(id))) {
+                            System.out.println("  dom : " + expected.get(id));
+                            System.out.println("  stax: " + actual.get(id));
+                            break;
+                        }
+                    }
+                }
+            }
+            Map<String, String> included = new HashMap<>();
+            for (TableXmlMapping method : stax.parseMapperXml("m", includeXml)) {
+                included.put(method.getStatementId(), method.getRawSql());
+            }
+            mismatches += compare(EXPECTED_INCLUDES, included);
+
+            SqlFragmentRegistry registry = new SqlFragmentRegistry();
+            MyBatisXmlParser shared = new MyBatisXmlParser(registry);
+            Map<String, String> sharedIncluded = new HashMap<>();
+            shared.parseMapperXml("m", includeXml, method -> sharedIncluded.put(method.getStatementId(), method.getRawSql()));
+            shared.parseMapperXml("m", otherXml, method -> sharedIncluded.put(method.getStatementId(), method.getRawSql()));
+            shared.flushDeferred();
+            mismatches += compare(EXPECTED_SHARED, sharedIncluded);
+            if (!registry.dependentsOf(Set.of("com.example.Other.cols")).equals(Set.of(includeXml.toString(), otherXml.toString()))
+                    && mismatches++ < 10) {
+                System.out.println("MISMATCH: dependents of com.example.Other.cols: "
+                    + registry.dependentsOf(Set.of("com.example.Other.cols")));
+            }
+            System.out.printf("Mapper files: %,d x %,d statements, %,d include cases, %,d mismatches%n",
+                files, statements, EXPECTED_INCLUDES.length + EXPECTED_SHARED.length, mismatches);
+            if (mismatches > 0) {
+                throw new IllegalStateException("Streaming parser output differs from the expected output");
+            }
+
+            for (int i = 0; i < iterations; i++) {
+                long domNanos = time(dom, xmlFiles);
+                long staxNanos = time(stax, xmlFiles);
+                System.out.printf("dom: %,6d ms   stax: %,6d ms   speedup %.1fx%n",
+                    domNanos / 1_000_000, staxNanos / 1_000_000, (double) domNanos / staxNanos);
+            }
+        } finally {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static int compare(String[][] expectedSql, Map<String, String> actualSql) {
+        int mismatches = 0;
+        for (String[] expected : expectedSql) {
+            if (!expected[1].equals(actualSql.get(expected[0]))) {
+                mismatches++;
+                System.out.println("MISMATCH: include in " + expected[0]);
+                System.out.println("  expected: " + expected[1]);
+                System.out.println("  actual  : " + actualSql.get(expected[0]));
+            }
+        }
+        return mismatches;
+    }
+
+    private static long time(MyBatisXmlParser parser, List<Path> xmlFiles) {
+        long start = System.nanoTime();
+        int methods = 0;
+        for (Path xml : xmlFiles) {
+            methods += parser.parseMapperXml("m", xml).size();
+        }
+        if (methods == 0) {
+            throw new IllegalStateException("No statements parsed");
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Statement id -> "type|sql|resultMap columns", independent of the order statements are emitted in.
+     */
+    private static Map<String, String> describe(List<TableXmlMapping> methods) {
+        Map<String, String> described = new TreeMap<>();
+        for (TableXmlMapping method : methods) {
+            described.put(method.getStatementId(),
+                method.getStatementType() + "|" + method.getRawSql() + "|" + method.getResultMapColumns());
+        }
+        return described;
+    }
+
+    private static String generateMapper(int file, int statements, Random random) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<mapper namespace=\"com.example.Generated").append(file).append("DbCmd\">\n");
+        xml.append("  <resultMap id=\"base\" type=\"Row\">\n");
+        xml.append("    <id column=\"ID\" property=\"id\"/>\n    <result column=\"NAME\" property=\"name\"/>\n");
+        xml.append("  </resultMap>\n");
+        xml.append("  <resultMap id=\"full\" type=\"Row\" extends=\"base\">\n");
+        xml.append("    <association property=\"owner\" column=\"{ownerId=OWNER_ID}\" select=\"findOwner\"/>\n");
+        xml.append("  </resultMap>\n");
+        for (int s = 0; s < statements; s++) {
+            String table = "TABLE_" + random.nextInt(50);
+            switch (random.nextInt(5)) {
+                case 0:
+                    xml.append("  <select id=\"s").append(s).append("\" resultMap=\"full\">\n")
+                        .append("    SELECT t.ID, t.NAME, t.OWNER_ID\n    FROM ").append(table).append(" t\n")
+                        .append("    <where>\n      <if test=\"id != null\">AND t.ID = #{id}</if>\n")
+                        .append("      <if test=\"name != null\">AND t.NAME LIKE #{name}</if>\n    </where>\n")
+                        .append("  </select>\n");
+                    break;
+                case 1:
+                    xml.append("  <select id=\"s").append(s).append("\" resultType=\"map\">\n")
+                        .append("    <![CDATA[ SELECT * FROM ").append(table).append(" WHERE CREATED < #{date} ]]>\n")
+                        .append("    ORDER BY ID\n  </select>\n");
+                    break;
+                case 2:
+                    xml.append("  <insert id=\"s").append(s).append("\">\n")
+                        .append("    <selectKey keyProperty=\"id\" resultType=\"long\" order=\"BEFORE\">")
+                        .append("SELECT SEQ_").append(table).append(".NEXTVAL FROM DUAL</selectKey>\n")
+                        .append("    INSERT INTO ").append(table).append(" (ID, NAME)\n    VALUES\n")
+                        .append("    <foreach collection=\"rows\" item=\"r\" separator=\",\">(#{r.id}, #{r.name})</foreach>\n")
+                        .append("  </insert>\n");
+                    break;
+                case 3:
+                    xml.append("  <update id=\"s").append(s).append("\">\n    UPDATE ").append(table).append("\n")
+                        .append("    <set>\n      <if test=\"name != null\">NAME = #{name},</if>\n")
+                        .append("      UPDATED = SYSDATE\n    </set>\n    WHERE ID = #{id} AND A &lt; B\n")
+                        .append("  </update>\n");
+                    break;
+                default:
+                    xml.append("  <delete id=\"s").append(s).append("\">\n    DELETE FROM ").append(table)
+                        .append(" WHERE ID IN\n    <foreach collection=\"ids\" item=\"i\" open=\"(\" separator=\",\" ")
+                        .append("close=\")\">#{i}</foreach>\n  </delete>\n");
+            }
+        }
+        xml.append("</mapper>\n");
+        return xml.toString();
+    }
+}
@@ -0,0 +1,291 @@
+package v3.parser;
+
+import v3.model.AccessMode;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that {@link SqlTableExtractor} cleans SQL exactly like the previous regex-based
+ * implementation on a golden corpus plus generated statements, checks the structural table and
+ * column usage of golden statements, then compares the throughput of both extractors.
+ * Column extraction also runs over the generated statements to make sure it never fails.
+ *
+ * Usage: java v3.parser.SqlTableExtractorBenchmark [generated-statements] [iterations]
+ */
+public class SqlTableExtractorBenchmark {
+
+    private static final String[] GOLDEN = {
+        "SELECT * FROM CUSTOMER WHERE ID = #{id}",
+        "SELECT c.ID, o.TOTAL FROM CUSTOMER c JOIN ORDERS o ON c.ID = o.CUSTOMER_ID WHERE c.NAME LIKE #{name,jdbcType=VARCHAR}",
+        "select a.x from app.ACCOUNT a left outer join app.ACCOUNT_LOG l on a.id = l.account_id",
+        "UPDATE CUSTOMER SET NAME = #{name}, LAST_UPDATE = SYSDATE WHERE ID = #{id}",
+        "INSERT INTO AUDIT_LOG (ID, MSG) VALUES (#{id}, #{msg})",
+        "DELETE FROM SESSION_TOKEN WHERE EXPIRES < #{now}",
+        "MERGE INTO STOCK s USING (SELECT * FROM STOCK_DELTA) d ON (s.ID = d.ID) WHEN MATCHED THEN UPDATE SET s.QTY = d.QTY",
+        "SELECT * FROM ${schema}.CUSTOMER WHERE TYPE = :type AND CODE = :code_2",
+        "SELECT * FROM \"Quoted\".`ORDER_ITEM` WHERE X = 'a:b'",
+        "SELECT * FROM T1, T2 WHERE T1.A = T2.A",
+        "SELECT * FROM (SELECT ID FROM INNER_T) X",
+        "SELECT * FROM CUSTOMER <where> <if test=\"id != null\"> ID = #{id} </if> </where>",
+        "UPDATE ORDERS <set> <if test=\"a > 0\">A = #{a},</if> </set> WHERE ID = #{id}",
+        "SELECT * FROM ITEMS WHERE ID IN <foreach collection=\"ids\" item=\"i\" open=\"(\" separator=\",\" close=\")\">#{i}</foreach>",
+        "<![CDATA[ SELECT * FROM RANGE_T WHERE A < #{x} ]]>",
+        "SELECT * FROM A -- trailing comment FROM COMMENTED",
+        "SELECT * FROM A --\n JOIN B ON 1 = 1",
+        "SELECT DATE_FROM = ? FROM PERIOD",
+        "SELECT * FROM DUAL",
+        "select * from lower_case_table t where t.update_flag = 1",
+        "WITH X AS (SELECT * FROM BASE) SELECT * FROM X",
+        "SELECT * FROM schema..TBL",
+        "SELECT * FROM a.b. WHERE 1 = 1",
+        "SELECT $ FROM # WHERE x = ${a#{b}c} AND y = #{a ${b} c}",
+        "SELECT * FROM T <ifx a > b",
+        "SELECT * FROM T WHERE a <if_flag AND b > 1",
+        "  \n\t  SELECT\n\n  *\r\n FROM   SPACED_T  \n  ",
+        "SELECT * FROM T WHERE a - -1 > 0",
+        "SELECT * FROM T WHERE a - <if test='x'>- 1</if>",
+        "INSERT   INTO   WIDE_GAP VALUES (1)",
+        "UPDATEX Y SET Z = 1",
+        "SELECT * FROM UNCLOSED WHERE X = #{abc",
+        "SELECT * FROM UNCLOSED2 WHERE X = ${abc",
+        "",
+        "   ",
+    };
+
+    // Statement -> expected "TABLE:MODE" entries
+    private static final String[][] GOLDEN_USAGE = {
+        {"SELECT * FROM CUSTOMER WHERE ID = #{id}", "CUSTOMER:READ"},
+        {"SELECT * FROM A, B b2, schema.C WHERE A.X = b2.X(+) AND C.Y = A.Y(+)", "A:READ,B:READ,C:READ"},
+        {"SELECT * FROM (SELECT ID FROM INNER_T WHERE X IN (SELECT X FROM DEEP_T)) Q", "INNER_T:READ,DEEP_T:READ"},
+        {"WITH RECENT AS (SELECT * FROM ORDERS WHERE D > ?), TOP (ID) AS (SELECT ID FROM RECENT) "
+            + "SELECT * FROM TOP JOIN CUSTOMER C ON C.ID = TOP.ID", "ORDERS:READ,CUSTOMER:READ"},
+        {"UPDATE CUSTOMER SET LAST_UPDATE = SYSDATE, NAME = (SELECT N FROM NAMES WHERE ID = ?) WHERE ID = #{id}",
+            "CUSTOMER:WRITE,NAMES:READ"},
+        {"INSERT INTO AUDIT_LOG (ID, MSG) SELECT ID, MSG FROM STAGING", "AUDIT_LOG:WRITE,STAGING:READ"},
+        {"DELETE FROM SESSION_TOKEN WHERE USER_ID IN (SELECT ID FROM USERS WHERE LOCKED = 1)",
+            "SESSION_TOKEN:WRITE,USERS:READ"},
+        {"MERGE INTO STOCK s USING (SELECT * FROM STOCK_DELTA) d ON (s.ID = d.ID) "
+            + "WHEN MATCHED THEN UPDATE SET s.QTY = d.QTY WHEN NOT MATCHED THEN INSERT (ID) VALUES (d.ID)",
+            "STOCK:WRITE,STOCK_DELTA:READ"},
+        {"MERGE INTO STOCK s USING STOCK_DELTA d ON (s.ID = d.ID)", "STOCK:WRITE,STOCK_DELTA:READ"},
+        {"UPDATE COUNTERS SET N = N + 1 WHERE ID = (SELECT MAX(ID) FROM COUNTERS)", "COUNTERS:READ_WRITE"},
+        {"SELECT EXTRACT(YEAR FROM CREATED) FROM EVENTS WHERE TRIM(LEADING '0' FROM CODE) = ?", "EVENTS:READ"},
+        {"SELECT * FROM ORDERS WHERE NOTE = 'FROM SOMEWHERE' FOR UPDATE NOWAIT", "ORDERS:READ"},
+        {"INSERT INTO T (A) VALUES (?) ON DUPLICATE KEY UPDATE A = VALUES(A)", "T:WRITE"},
+        {"SELECT DATE_FROM FROM PERIOD", "PERIOD:READ"},
+        {"SELECT * FROM ${schema}.CUSTOMER C LEFT OUTER JOIN \"app\".\"ACCOUNT\" A ON A.C = C.ID",
+            "CUSTOMER:READ,ACCOUNT:READ"},
+        {"SELECT * FROM ${table}", ""},
+        {"SELECT * FROM A /* hint FROM HIDDEN */ JOIN B USING (ID)", "A:READ,B:READ"},
+        {"TRUNCATE TABLE TMP_LOAD", "TMP_LOAD:WRITE"},
+        {"INSERT ALL INTO T1 VALUES (1) INTO T2 VALUES (2) SELECT * FROM DUAL", "T1:WRITE,T2:WRITE"},
+        {"DELETE OLD_ROWS WHERE ID < ?", "OLD_ROWS:WRITE"},
+        {"SELECT * FROM A UNION ALL SELECT * FROM B", "A:READ,B:READ"},
+    };
+
+    // Statement -> expected "TABLE.COLUMN" entries
+    private static final String[][] GOLDEN_COLUMNS = {
+        {"SELECT * FROM CUSTOMER WHERE ID = #{id}", "CUSTOMER.*,CUSTOMER.ID"},
+        {"SELECT c.ID, o.TOTAL FROM CUSTOMER c JOIN ORDERS o ON c.ID = o.CUSTOMER_ID WHERE c.NAME LIKE #{name}",
+            "CUSTOMER.ID,CUSTOMER.NAME,ORDERS.TOTAL,ORDERS.CUSTOMER_ID"},
+        {"SELECT * FROM (SELECT ID FROM INNER_T WHERE X IN (SELECT X FROM DEEP_T)) Q", "INNER_T.ID,INNER_T.X,DEEP_T.X"},
+        {"WITH RECENT AS (SELECT * FROM ORDERS WHERE D > ?), TOP (ID) AS (SELECT ID FROM RECENT) "
+            + "SELECT C.NAME FROM TOP JOIN CUSTOMER C ON C.ID = TOP.ID", "ORDERS.*,ORDERS.D,CUSTOMER.ID,CUSTOMER.NAME"},
+        {"UPDATE CUSTOMER SET LAST_UPDATE = SYSDATE, NAME = (SELECT N FROM NAMES WHERE ID = ?) WHERE ID = #{id}",
+            "CUSTOMER.LAST_UPDATE,CUSTOMER.NAME,CUSTOMER.ID,NAMES.N,NAMES.ID"},
+        {"INSERT INTO AUDIT_LOG (ID, MSG) SELECT S_ID, TEXT FROM STAGING", "AUDIT_LOG.ID,AUDIT_LOG.MSG,STAGING.S_ID,STAGING.TEXT"},
+        {"INSERT INTO AUDIT_LOG VALUES (#{id}, #{msg})", "AUDIT_LOG.*"},
+        {"UPDATE T t SET t.A = ?, B = t.C * 2 WHERE t.ID = ?", "T.A,T.B,T.C,T.ID"},
+        {"SELECT COUNT(*) TOTAL, MAX(o.AMOUNT) AS MX FROM ORDERS o WHERE o.STATUS = 'X' AND EXISTS "
+            + "(SELECT 1 FROM ITEMS i WHERE i.ORDER_ID = o.ID) GROUP BY o.CUSTOMER_ID ORDER BY MX DESC NULLS LAST",
+            "ORDERS.AMOUNT,ORDERS.STATUS,ORDERS.ID,ORDERS.CUSTOMER_ID,ITEMS.ORDER_ID"},
+        {"SELECT a.*, b.NAME FROM A a JOIN B b ON a.B_ID = b.ID", "A.*,A.B_ID,B.ID,B.NAME"},
+        {"SELECT NAME FROM A UNION SELECT TITLE FROM B", "A.NAME,B.TITLE"},
+        {"INSERT INTO T (A) VALUES (?) ON DUPLICATE KEY UPDATE A = VALUES(A)", "T.A"},
+        {"SELECT * FROM A, B b2 WHERE A.X = b2.Y(+)", "A.*,A.X,B.*,B.Y"},
+    };
+
+    private static final String[] FRAGMENTS = {
+        "SELECT", "select", "*", "FROM", "from", "JOIN", "left join", "UPDATE", "INSERT INTO", "DELETE FROM",
+        "MERGE INTO", "USING", "WHERE", "AND", "SET", "ON", "CUSTOMER", "ORDERS o", "app.ACCOUNT", "`T_Q`",
+        "\"S\".\"T\"", "sch..X", ".", "a.b.", ",", ";", "(", ")", "=", "<", ">", "-", "--", "#{id}", "${tbl}",
+        "#{x", "${y", "}", "#", "$", ":p1", ":", "<if test=\"a\">", "</if>", "<where>", "</where>", "<set>",
+        "<foreach item=\"i\">", "</foreach>", "<choose>", "<when test=\"b\">", "<otherwise>", "<trim prefix=\"(\">",
+        "<bind name=\"n\" value=\"v\"/>", "<![CDATA[", "]]>", "\n", "\r\n", "\t", "  ", "DATE_FROM", "LAST_UPDATE",
+        "ADJOIN", "'x:y'", "DUAL", "?",
+    };
+
+    public static void main(String[] args) {
+        int generated = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        List<String> corpus = new ArrayList<>(Arrays.asList(GOLDEN));
+        Random random = new Random(7);
+        for (int i = 0; i < generated; i++) {
+            StringBuilder sql = new StringBuilder();
+            int parts = 3 + random.nextInt(25);
+            for (int p = 0; p < parts; p++) {
+                sql.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                sql.append(random.nextInt(4) == 0 ? "" : " ");
+            }
+            corpus.add(sql.toString());
+        }
+
+        SqlTableExtractor extractor = new SqlTableExtractor();
+        LegacySqlTableExtractor legacy = new LegacySqlTableExtractor();
+        int mismatches = 0;
+        for (String sql : corpus) {
+            if (sql.trim().isEmpty()) {
+                continue;
+            }
+            String expected = legacy.cleanMyBatisDynamicSql(sql);
+            String actual = extractor.cleanMyBatisDynamicSql(sql);
+            if (!expected.equals(actual) && mismatches++ < 10) {
+                System.out.println("MISMATCH: " + sql.replace("\n", "\\n").replace("\r", "\\r"));
+                System.out.println("  legacy : " + expected);
+                System.out.println("  scanner: " + actual);
+            }
+        }
+        for (String[] golden : GOLDEN_USAGE) {
+            Map<String, String> actual = new TreeMap<>();
+            extractor.extractTableUsage(golden[0]).forEach((table, flags) -> actual.put(table, AccessMode.toString(flags)));
+            Map<String, String> expected = new TreeMap<>();
+            for (String entry : golden[1].split(",")) {
+                if (!entry.isEmpty()) {
+                    expected.put(entry.substring(0, entry.indexOf(':')), entry.substring(entry.indexOf(':') + 1));
+                }
+            }
+            if (!expected.equals(actual) && mismatches++ < 10) {
+                System.out.println("MISMATCH: " + golden[0]);
+                System.out.println("  expected: " + expected);
+                System.out.println("  actual  : " + actual);
+            }
+        }
+        for (String[] golden : GOLDEN_COLUMNS) {
+            Set<String> actual = new TreeSet<>();
+            extractor.extractColumnUsage(golden[0]).forEach((table, columns) ->
+                columns.forEach(column -> actual.add(table + "." + column)));
+            Set<String> expected = new TreeSet<>(Arrays.asList(golden[1].split(",")));
+            if (!expected.equals(actual) && mismatches++ < 10) {
+                System.out.println("MISMATCH: " + golden[0]);
+                System.out.println("  expected: " + expected);
+                System.out.println("  actual  : " + actual);
+            }
+        }
+        int columnReferences = 0;
+        for (String sql : corpus) {
+            for (Set<String> columns : extractor.extractColumnUsage(sql).values()) {
+                columnReferences += columns.size();
+            }
+        }
+        System.out.printf("Corpus: %,d statements (%,d column references), %,d golden usages, %,d golden column sets, "
+            + "%,d mismatches%n", corpus.size(), columnReferences, GOLDEN_USAGE.length, GOLDEN_COLUMNS.length, mismatches);
+        if (mismatches > 0) {
+            throw new IllegalStateException("Extractor output differs from the expected output");
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int tables = 0;
+            for (String sql : corpus) {
+                try {
+                    tables += legacy.extractTableNames(sql).size();
+                } catch (ArrayIndexOutOfBoundsException e) {
+                    // Skipped, see above
+                }
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int scannedTables = 0;
+            for (String sql : corpus) {
+                scannedTables += extractor.extractTableNames(sql).size();
+            }
+            long scannerNanos = System.nanoTime() - start;
+            System.out.printf("legacy: %,6d ms (%,d tables)   scanner: %,6d ms (%,d tables)   speedup %.1fx%n",
+                legacyNanos / 1_000_000, tables, scannerNanos / 1_000_000, scannedTables,
+                (double) legacyNanos / scannerNanos);
+        }
+    }
+
+    /**
+     * The previous regex-based implementation, kept as the reference.
+     */
+    private static class LegacySqlTableExtractor {
+
+        private static final Set<String> SQL_KEYWORDS = Set.of(
+            "DUAL", "SELECT", "FROM", "WHERE", "AND", "OR", "ON", "AS", "SET", "JOIN", "LEFT", "RIGHT", "INNER", "OUTER", "CROSS", "VALUES", "UPDATE", "INSERT", "DELETE", "MERGE", "INTO", "USING", "GROUP", "ORDER", "BY", "HAVING", "DISTINCT", "LIMIT", "OFFSET", "CASE", "WHEN", "THEN", "ELSE", "END", "IN", "EXISTS", "NOT", "NULL", "IS", "LIKE", "BETWEEN", "ASC", "DESC", "WITH", "PARTITION"
+        );
+
+        Set<String> extractTableNames(String sql) {
+            Set<String> tables = new HashSet<>();
+            if (sql == null || sql.trim().isEmpty()) {
+                return tables;
+            }
+            String cleanedSql = cleanMyBatisDynamicSql(sql);
+            tables.addAll(tokenBasedTableExtraction(cleanedSql));
+            return tables;
+        }
+
+        String cleanMyBatisDynamicSql(String sql) {
+            String cleaned = sql.replaceAll("#\\{[^}]*\\}", "?");
+            cleaned = cleaned.replaceAll("\\$\\{[^}]*\\}", "?");
+            cleaned = cleaned.replaceAll(":[a-zA-Z0-9_]+", "?");
+            cleaned = cleaned.replaceAll("#", "?");
+            cleaned = cleaned.replaceAll("\\$", "?");
+            cleaned = cleaned.replaceAll("</?if[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?where[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?set[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?choose[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?when[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?otherwise[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?trim[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?foreach[^>]*>", "");
+            cleaned = cleaned.replaceAll("</?bind[^>]*>", "");
+            cleaned = cleaned.replaceAll("<!\\[CDATA\\[", "");
+            cleaned = cleaned.replaceAll("\\]\\]>", "");
+            cleaned = cleaned.replaceAll("--[^\n]*", "");
+            cleaned = cleaned.replaceAll("(?m)^\\s*$\\r?\\n", "");
+            cleaned = cleaned.replaceAll("\\s+", " ");
+            return cleaned.trim();
+        }
+
+        private Set<String> tokenBasedTableExtraction(String sql) {
+            Set<String> tables = new HashSet<>();
+            String[] patterns = {
+                "(?i)FROM\\s+([^\s,;()]+)", "(?i)JOIN\\s+([^\s,;()]+)", "(?i)UPDATE\\s+([^\s,;()]+)",
+                "(?i)INSERT\\s+INTO\\s+([^\s,;()]+)", "(?i)DELETE\\s+FROM\\s+([^\s,;()]+)",
+                "(?i)MERGE\\s+INTO\\s+([^\s,;()]+)", "(?i)USING\\s+([^\s,;()]+)"
+            };
+            for (String pattern : patterns) {
+                Matcher matcher = Pattern.compile(pattern).matcher(sql);
+                while (matcher.find()) {
+                    tables.addAll(splitAndNormalizeTables(matcher.group(1)));
+                }
+            }
+            return tables;
+        }
+
+        private Set<String> splitAndNormalizeTables(String section) {
+            Set<String> tables = new HashSet<>();
+            for (String part : section.split(",")) {
+                String table = part.trim();
+                if (!table.isEmpty()) {
+                    String baseTable = table.split("\\s+")[0];
+                    if (baseTable.contains(".")) {
+                        String[] schemaSplit = baseTable.split("\\.");
+                        baseTable = schemaSplit[schemaSplit.length - 1];
+                    }
+                    baseTable = baseTable.replaceAll("[`'\"]", "");
+                    baseTable = baseTable.toUpperCase();
+                    if (!baseTable.equals("?") && !baseTable.isEmpty() && !SQL_KEYWORDS.contains(baseTable)) {
+                        tables.add(baseTable);
+                    }
+                }
+            }
+            return tables;
+        }
+    }
+}